@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package com.hashvoid.crossbinder.dilm;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Decorates a method on a managed entity for it to be executed asynchronously, on an executor
+ * managed by Crossbinder. The method returns to the caller immediately. It must either be
+ * <tt>void</tt>, in which case the call is fire-and-forget, or return a <tt>CompletableFuture</tt>,
+ * <tt>CompletionStage</tt> or <tt>Future</tt>, in which case the caller receives a
+ * <tt>CompletableFuture</tt> that completes with the outcome of the future returned by the method.
+ * <p>
+ *
+ * The annotation may be placed on the method of the implementation class or on the interface
+ * method. Method interceptors applicable to the method are executed on the executor thread as well.
+ * By default, asynchronous methods run on virtual threads where the Java runtime supports them; a
+ * pool of platform threads can be configured via {@link Crossbinder#asyncPoolSize(int)}. The
+ * executor is shut down when the Crossbinder is stopped.
+ *
+ * @author poroshuram
+ */
+
+@Target({ ElementType.METHOD })
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Async {
+
+}
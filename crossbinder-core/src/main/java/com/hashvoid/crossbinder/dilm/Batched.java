@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package com.hashvoid.crossbinder.dilm;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Decorates a single-item method on a managed entity for its invocations to be aggregated into
+ * invocations of a bulk method on the same implementation. Calls are queued until the batch holds
+ * {@link #maxSize()} items, or until {@link #window()} milliseconds have passed since the first of
+ * them was queued, whichever comes first. Then the bulk method is invoked once, on the executor
+ * managed by Crossbinder, with the list of queued parameter values.
+ * <p>
+ *
+ * The single-item method must take exactly one parameter. If it returns a
+ * <tt>CompletableFuture</tt> or <tt>CompletionStage</tt>, the caller receives a future that
+ * completes with its item of the bulk result; otherwise the caller blocks until the bulk method
+ * returns. The bulk method must take a single <tt>List</tt> (or <tt>Collection</tt>) of parameter
+ * values, and return either a <tt>Map</tt> from parameter value to result, a <tt>List</tt> of
+ * results in the order of the parameter values, or a <tt>CompletionStage</tt> of either. An
+ * exception raised by the bulk method is raised to all callers of the batch.
+ * <p>
+ *
+ * Method interceptors applicable to the single-item method are executed for each call, on the
+ * calling thread; the bulk method is invoked on the managed entity directly. Calls on different
+ * instances of the managed entity are never batched together.
+ *
+ * @author poroshuram
+ */
+
+@Target({ ElementType.METHOD })
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Batched {
+
+/**
+ * @return	the name of the bulk method on the implementation class.
+ */
+
+	String bulkMethod();
+
+/**
+ * @return	the maximum number of calls to be aggregated into one invocation of the bulk method.
+ */
+
+	int maxSize() default 100;
+
+/**
+ * @return	the time in milliseconds for which calls are held back to be aggregated.
+ */
+
+	long window() default 10;
+}
@@ -14,6 +14,7 @@
 
 package com.hashvoid.crossbinder.dilm;
 
+import java.util.List;
 import java.util.logging.Logger;
 
 /**
@@ -58,10 +59,112 @@ public abstract class Crossbinder {
 
 	public abstract Crossbinder configure(ConfigurationProvider provider);
 
+/**
+ * Associates an externally created method interceptor with this Crossbinder. If this Crossbinder
+ * has already been started, the interceptor is configured right away, and the interceptor chains
+ * of all managed entities are recompiled, so that it applies to subsequent invocations through
+ * their proxies. Entities whose proxies were elided are proxied when next looked up, but the
+ * references to them handed out earlier are not intercepted.
+ * <p>
+ *
+ * @param	mi the method interceptor.
+ * @return	this Crossbinder.
+ */
+
 	public abstract Crossbinder addInterceptor(MethodInterceptor mi);
 
+/**
+ * Associates an externally created lifecycle interceptor with this Crossbinder. If this
+ * Crossbinder has already been started, the interceptor is configured right away, and notified of
+ * subsequent lifecycle events.
+ * <p>
+ *
+ * @param	li the lifecycle interceptor.
+ * @return	this Crossbinder.
+ */
+
 	public abstract Crossbinder addInterceptor(LifecycleInterceptor li);
 
+/**
+ * Removes the method and lifecycle interceptors of the given type from this Crossbinder, whether
+ * found on the classpath or added externally. May be called before this Crossbinder is started, in
+ * which case the interceptors of the type found on the classpath are not loaded. If this
+ * Crossbinder has already been started, the interceptor chains are recompiled without them;
+ * invocations in progress complete with the interceptors they started with.
+ * <p>
+ *
+ * @param	type the implementation class of the interceptors.
+ * @return	this Crossbinder.
+ */
+
+	public abstract Crossbinder removeInterceptor(Class<?> type);
+
+/**
+ * Enables or disables the method and lifecycle interceptors of the given type, which are otherwise
+ * enabled. A disabled interceptor is left out of the interceptor chains until enabled again, so
+ * that it adds nothing to the cost of invocations. Invocations through generated proxies are
+ * relinked to the new chains without locking. May be called before or after this Crossbinder is
+ * started.
+ * <p>
+ *
+ * @param	type the implementation class of the interceptors.
+ * @param	flag <tt>true</tt> to enable the interceptors, <tt>false</tt> to disable them.
+ * @return	this Crossbinder.
+ */
+
+	public abstract Crossbinder enableInterceptor(Class<?> type, boolean flag);
+
+/**
+ * Sets the mode in which proxies are created for the managed entities. Must be called prior to
+ * starting this Crossbinder; the default mode is {@link ProxyMode#GENERATED}.
+ * <p>
+ *
+ * @param	mode the proxy creation mode.
+ * @return	this Crossbinder.
+ */
+
+	public abstract Crossbinder proxyMode(ProxyMode mode);
+
+/**
+ * Enables handing out singletons and prototypes without proxies, if no method interceptor applies
+ * to any of their methods. Must be called prior to starting this Crossbinder; by default, proxies
+ * are elided only for entities that request so via their <tt>elideProxy</tt> annotation attribute.
+ * <p>
+ *
+ * @param	flag <tt>true</tt> to elide proxies where possible, <tt>false</tt> otherwise.
+ * @return	this Crossbinder.
+ */
+
+	public abstract Crossbinder elideProxies(boolean flag);
+
+/**
+ * Sets the number of platform threads on which {@link Async} methods are executed. Must be called
+ * prior to starting this Crossbinder. By default, asynchronous methods are executed on virtual
+ * threads, or on a pool of platform threads that grows on demand if virtual threads are not
+ * supported by the Java runtime.
+ * <p>
+ *
+ * @param	threads the size of the thread pool, or zero to use the default executor.
+ * @return	this Crossbinder.
+ */
+
+	public abstract Crossbinder asyncPoolSize(int threads);
+
+/**
+ * Requests a warm-up of the managed singletons during startup. Once all the binders are started,
+ * and before the global lifecycle interceptors are notified, the singleton methods annotated with
+ * {@link WarmUp} are invoked the given number of times through their proxies, spread over the
+ * given number of threads, so that the invocation path is compiled before the application takes
+ * traffic. Must be called prior to starting this Crossbinder; there is no warm-up by default.
+ * <p>
+ *
+ * @param	iterations the number of invocations of each warm-up method, or zero for no warm-up.
+ * @param	threads the number of threads invoking the warm-up methods concurrently.
+ * @return	this Crossbinder.
+ */
+
+	public abstract Crossbinder warmUp(int iterations, int threads);
+
 	public abstract Crossbinder start() throws CrossbinderException;
 
 	public abstract void stop() throws CrossbinderException;
@@ -91,4 +194,24 @@ public abstract class Crossbinder {
 	public abstract Locator locator();
 
 	public abstract void addLocator(Locator locator);
+
+/**
+ * Retrieves the statistics on loading of the singletons managed by this Crossbinder, including the
+ * time threads spent waiting for lazily loaded singletons to be loaded on first use.
+ * <p>
+ *
+ * @return	the load statistics, one entry per singleton.
+ */
+
+	public abstract List<LoadStatistics> loadStatistics();
+
+/**
+ * Retrieves the summary of the warm-up performed when this Crossbinder was started, including the
+ * time it took.
+ * <p>
+ *
+ * @return	the warm-up statistics, or <tt>null</tt> if no warm-up was performed.
+ */
+
+	public abstract WarmUpStatistics warmUpStatistics();
 }
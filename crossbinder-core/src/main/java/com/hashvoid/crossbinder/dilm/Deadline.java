@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package com.hashvoid.crossbinder.dilm;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Point in time by which the processing of a request is to be completed. A deadline is entered on
+ * the thread processing the request, typically where the request enters the application:
+ * <pre>
+ * try(Deadline.Scope scope = Deadline.after(200, TimeUnit.MILLISECONDS).enter()) {
+ *     service.handle(request);
+ * }
+ * </pre>
+ * It then applies to all the methods invoked on managed entities on that thread, including nested
+ * calls, and is carried over to methods annotated with {@link Async}. Once the deadline has passed,
+ * such invocations fail fast with a {@link DeadlineExceededException}, without the method being
+ * executed or method interceptors being called. Long running methods may also check the deadline
+ * themselves via {@link #check()}.
+ * <p>
+ *
+ * Deadlines only tighten: entering a deadline while an earlier one applies keeps the earlier one.
+ * Invocations on entities handed out without a proxy are not checked.
+ *
+ * @author poroshuram
+ */
+
+public final class Deadline {
+
+	private static final ThreadLocal<Deadline> CURRENT = new ThreadLocal<>();
+
+	// set once a deadline is first entered, to spare the thread-local lookup if deadlines are not
+	// in use; a thread entering a deadline always observes its own write
+	private static boolean active;
+
+	private long expiry;
+
+	private Deadline(long expiry) {
+		this.expiry = expiry;
+	}
+
+/**
+ * @param	duration the time from now until the deadline.
+ * @param	unit the unit of the duration.
+ * @return	the deadline.
+ */
+
+	public static Deadline after(long duration, TimeUnit unit) {
+		return new Deadline(System.nanoTime() + unit.toNanos(duration));
+	}
+
+/**
+ * @return	the deadline that applies to the current thread, <tt>null</tt> if none.
+ */
+
+	public static Deadline current() {
+		return active ? CURRENT.get() : null;
+	}
+
+/**
+ * Checks the deadline that applies to the current thread, if any.
+ * <p>
+ *
+ * @throws	DeadlineExceededException if the deadline has passed.
+ */
+
+	public static void check() throws DeadlineExceededException {
+		Deadline deadline = current();
+		if(deadline != null && deadline.isExpired()) {
+			throw new DeadlineExceededException("deadline exceeded");
+		}
+	}
+
+/**
+ * @return	<tt>true</tt> if this deadline has passed, <tt>false</tt> otherwise.
+ */
+
+	public boolean isExpired() {
+		return System.nanoTime() - expiry >= 0;
+	}
+
+/**
+ * @param	unit the unit of the returned time.
+ * @return	the time remaining until this deadline, zero if it has passed.
+ */
+
+	public long remaining(TimeUnit unit) {
+		return unit.convert(Math.max(0, expiry - System.nanoTime()), TimeUnit.NANOSECONDS);
+	}
+
+/**
+ * Applies this deadline to the current thread, unless an earlier deadline applies already.
+ * <p>
+ *
+ * @return	the scope of the deadline, which restores the previous deadline when closed.
+ */
+
+	public Scope enter() {
+		Deadline previous = CURRENT.get();
+		CURRENT.set((previous != null && previous.expiry - expiry < 0) ? previous : this);
+		active = true;
+		return new Scope(previous);
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+	// Methods of base class Object
+
+	@Override
+	public String toString() {
+		return String.format("Deadline [remaining = %dms]", remaining(TimeUnit.MILLISECONDS));
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+	// Inner class for the scope of a deadline
+
+/**
+ * Scope in which a deadline applies to the current thread, to be closed on the same thread.
+ */
+
+	public static final class Scope implements AutoCloseable {
+
+		private Deadline previous;
+
+		private Scope(Deadline previous) {
+			this.previous = previous;
+		}
+
+		@Override
+		public void close() {
+			if(previous != null) {
+				CURRENT.set(previous);
+			}
+			else {
+				CURRENT.remove();
+			}
+		}
+	}
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package com.hashvoid.crossbinder.dilm;
+
+/**
+ * Exception that is thrown when a method on a managed entity is invoked after the deadline of the
+ * calling thread has passed. The method is not executed in that case.
+ *
+ * @see		Deadline
+ * @author poroshuram
+ */
+
+@SuppressWarnings("serial")
+public class DeadlineExceededException extends CrossbinderException {
+
+	public DeadlineExceededException(String message) {
+		super(message);
+	}
+}
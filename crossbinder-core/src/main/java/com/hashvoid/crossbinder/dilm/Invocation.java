@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package com.hashvoid.crossbinder.dilm;
+
+import java.lang.reflect.Method;
+
+/**
+ * Represents the invocation of a method on a singleton, prototype or provided entity, as handed
+ * over to a wrapping {@link MethodInterceptor}. The interceptor executes the actual method on the
+ * managed entity by calling {@link #proceed()}.
+ * <p>
+ *
+ * @author poroshuram
+ */
+
+public interface Invocation {
+
+/**
+ * @return	the method being invoked on the managed entity.
+ */
+
+	Method getMethod();
+
+/**
+ * @return	the managed entity whose method is being invoked.
+ */
+
+	Object getTarget();
+
+/**
+ * Retrieves the parameter values with which the method is being invoked. Changes made to the
+ * returned array are visible to the method executed via {@link #proceed()}.
+ * <p>
+ *
+ * @return	the parameter values, an empty array for methods without parameters.
+ */
+
+	Object[] getArguments();
+
+/**
+ * Hands the invocation over to the next interceptor wrapping the method, or if there are none,
+ * executes the method on the managed entity with the current parameter values. An interceptor may
+ * proceed more than once, for instance to retry a failed call, but an invocation must not be
+ * proceeded concurrently from multiple threads.
+ * <p>
+ *
+ * @return	the value returned by the method, <tt>null</tt> for <tt>void</tt> methods.
+ * @throws	Throwable the exception raised by the method, as is.
+ */
+
+	Object proceed() throws Throwable;
+
+/**
+ * Creates a copy of this invocation, at the same position in the chain of wrapping interceptors
+ * and with a copy of the current parameter values. The copy can be proceeded independently of
+ * this invocation, including concurrently from another thread, for instance to issue a redundant
+ * call. The copy must be created before either invocation is proceeded concurrently.
+ * <p>
+ *
+ * @return	the copy of this invocation.
+ */
+
+	Invocation fork();
+}
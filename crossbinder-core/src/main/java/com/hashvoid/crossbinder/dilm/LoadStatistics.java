@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package com.hashvoid.crossbinder.dilm;
+
+/**
+ * Snapshot of the time spent in loading a singleton, which includes its instantiation, injection
+ * and initialization. For lazily loaded singletons, it also accounts for the time other threads had
+ * to wait while the singleton was being loaded on first use. Such waits typically show up as
+ * stalls during the warm up of an application.
+ * <p>
+ *
+ * @author poroshuram
+ */
+
+public class LoadStatistics {
+
+	private String  name;
+	private boolean lazyLoading;
+	private boolean loaded;
+	private long    loadTime;
+	private long    waitCount;
+	private long    waitTime;
+	private long    maxWaitTime;
+
+	public LoadStatistics(String name, boolean lazy, boolean loaded, long loadTime, long waitCount,
+			long waitTime, long maxWaitTime) {
+		this.name = name;
+		lazyLoading = lazy;
+		this.loaded = loaded;
+		this.loadTime = loadTime;
+		this.waitCount = waitCount;
+		this.waitTime = waitTime;
+		this.maxWaitTime = maxWaitTime;
+	}
+
+/**
+ * @return	the fully qualified name of the singleton class.
+ */
+
+	public String getName() {
+		return name;
+	}
+
+	public boolean isLazyLoading() {
+		return lazyLoading;
+	}
+
+/**
+ * @return	<tt>true</tt> if the singleton has been loaded, <tt>false</tt> otherwise.
+ */
+
+	public boolean isLoaded() {
+		return loaded;
+	}
+
+/**
+ * @return	the time taken to load the singleton, in nanoseconds.
+ */
+
+	public long getLoadTime() {
+		return loadTime;
+	}
+
+/**
+ * @return	the number of times a thread had to wait for the singleton to be loaded by another
+ * 			thread.
+ */
+
+	public long getWaitCount() {
+		return waitCount;
+	}
+
+/**
+ * @return	the total time spent by threads waiting for the singleton to be loaded, in nanoseconds.
+ */
+
+	public long getWaitTime() {
+		return waitTime;
+	}
+
+/**
+ * @return	the longest time spent by a thread waiting for the singleton to be loaded, in
+ * 			nanoseconds.
+ */
+
+	public long getMaxWaitTime() {
+		return maxWaitTime;
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+	// Methods of base class Object
+
+	@Override
+	public String toString() {
+		return String.format("%s [loaded = %s, load_time = %d, wait_count = %d, wait_time = %d, max_wait_time = %d]",
+				name, loaded, loadTime, waitCount, waitTime, maxWaitTime);
+	}
+}
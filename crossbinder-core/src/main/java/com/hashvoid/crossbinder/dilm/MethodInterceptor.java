@@ -22,14 +22,25 @@ import java.lang.reflect.Method;
  * managed entities are being referred from within the calling scope. Invocation of methods may also
  * be wrapped: in such cases, Crossbinder will call the <tt>wrap</tt> method on this interceptor
  * instead of the actual method on the managed entity. It is left to the interceptor to internally
- * invoke the method on the managed entity as it deems fit.
+ * invoke the method on the managed entity as it deems fit, preferably via the {@link Invocation}
+ * handed over to {@link #wrap(Invocation)}.
  * <p>
  *
  * Multiple such interceptors (one instance per type) may be active for a given Crossbinder
  * instance. All interceptors get an equal opportunity to execute their logic on a managed entity
- * against a given lifecycle stage. The order in which these interceptors are invoked is determined
- * by Crossbinder. The ordering is fixed for a given Crossbinder instance, but may vary
- * unpredictably across Crossbinder lifecycles.
+ * against a given lifecycle stage. The order in which these interceptors are invoked can be
+ * controlled by annotating them with {@link Order}; otherwise it is determined by Crossbinder. The
+ * ordering is fixed for a given Crossbinder instance, but may vary unpredictably across Crossbinder
+ * lifecycles.
+ * <p>
+ *
+ * Interceptors wrapping the same method form a chain, in the above order. Calling
+ * {@link Invocation#proceed()} from within {@link #wrap(Invocation)} hands the invocation over to
+ * the next interceptor in the chain, with the last one invoking the method on the managed entity.
+ * <p>
+ *
+ * By default, an interceptor applies to all methods of all managed entities. The methods can be
+ * narrowed down by annotating the interceptor class with a {@link Pointcut}.
  * <p>
  *
  * A method interceptor can be instantiated by Crossbinder after scanning the classpath, in which
@@ -57,7 +68,9 @@ public interface MethodInterceptor {
 
 /**
  * Called by Crossbinder after every invocation of a method on a singleton, prototype or provided
- * entity. Allows for custom operations after every invocation of methods on managed objects.
+ * entity. Allows for custom operations after every invocation of methods on managed objects. For
+ * methods returning a <tt>CompletionStage</tt>, this is called once the returned stage completes
+ * normally, with the result of the stage, possibly on another thread.
  * <p>
  *
  * @param	method the method being invoked on the managed entity.
@@ -85,7 +98,9 @@ public interface MethodInterceptor {
 /**
  * Called by Crossbinder on this interceptor for each method invocation on the managed entity, if
  * the {@link #isWrapped(Method, Object)} returns <tt>true</tt>. In such cases, the actual methods
- * on the managed entity are never invoked directly from the calling context.
+ * on the managed entity are never invoked directly from the calling context. Interceptors that
+ * wrap methods override either this method or {@link #wrap(Invocation)}; the default
+ * implementation throws an <tt>UnsupportedOperationException</tt>.
  * <p>
  *
  * @param	method the method being invoked on the managed entity.
@@ -95,12 +110,33 @@ public interface MethodInterceptor {
  * 			return type of the wrapped method on the managed entity.
  */
 
-	Object wrap(Method method, Object target, Object[] parameters);
+	default Object wrap(Method method, Object target, Object[] parameters) {
+		throw new UnsupportedOperationException("method not wrapped by " + getClass().getName());
+	}
+
+/**
+ * Called by Crossbinder on this interceptor for each method invocation on the managed entity, if
+ * the {@link #isWrapped(Method, Object)} returns <tt>true</tt>. The invocation is passed on to the
+ * next wrapping interceptor, or ultimately to the method on the managed entity, by calling
+ * {@link Invocation#proceed()}. The default implementation delegates to
+ * {@link #wrap(Method, Object, Object[])}, which ends the chain at this interceptor.
+ * <p>
+ *
+ * @param	invocation the invocation of the method on the managed entity.
+ * @return	the value to be returned to the calling context. The type of this value must match the
+ * 			return type of the wrapped method on the managed entity.
+ * @throws	Throwable the exception to be raised in the calling context.
+ */
+
+	default Object wrap(Invocation invocation) throws Throwable {
+		return wrap(invocation.getMethod(), invocation.getTarget(), invocation.getArguments());
+	}
 
 /**
  * Called by Crossbinder if an exception condition is encountered during invocation of a method on
  * a singleton, prototype or provided entity. Allows for custom operations after each exception
- * condition encountered.
+ * condition encountered. For methods returning a <tt>CompletionStage</tt>, this is also called if
+ * the returned stage completes exceptionally, with the exception that caused it.
  * <p>
  *
  * @param	method the method being invoked on the managed entity.
@@ -0,0 +1,42 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package com.hashvoid.crossbinder.dilm;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Determines the position of a {@link MethodInterceptor} relative to other interceptors that apply
+ * to the same method. Interceptors with lower values are invoked first, and hence form the outer
+ * layers of the chain of wrapping interceptors. Their <tt>after</tt> and <tt>onError</tt> callbacks
+ * are called first as well. Interceptors that are not annotated have an order of zero; the
+ * relative order of interceptors having the same value is determined by Crossbinder.
+ *
+ * @author poroshuram
+ */
+
+@Target({ ElementType.TYPE })
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Order {
+
+/**
+ * @return	the position of the interceptor.
+ */
+
+	int value();
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package com.hashvoid.crossbinder.dilm;
+
+import java.lang.annotation.Annotation;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Restricts the methods to which a {@link MethodInterceptor} applies. Crossbinder evaluates the
+ * pointcut once for every method of every singleton, prototype and provided entity, when the
+ * corresponding binder is started, and subsequently invokes the interceptor only for the methods
+ * that match. Interceptors that are not annotated apply to all methods.
+ * <p>
+ *
+ * A method matches if it satisfies every criterion that is specified. Criteria left at their
+ * default values are not checked.
+ *
+ * @author poroshuram
+ */
+
+@Target({ ElementType.TYPE })
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Pointcut {
+
+/**
+ * Annotations, any one of which must be present on the implementation method, the interface
+ * method or the implementation class of the managed entity.
+ *
+ * @return	the annotations to be matched.
+ */
+
+	Class<? extends Annotation>[] annotatedWith() default {};
+
+/**
+ * Types, any one of which must be a supertype of the implementation class of the managed entity.
+ *
+ * @return	the types to be matched.
+ */
+
+	Class<?>[] types() default {};
+
+/**
+ * Regular expression that must match the name of the method being invoked.
+ *
+ * @return	the method name pattern.
+ */
+
+	String methods() default "";
+
+/**
+ * Determines how the interceptor takes part in the chain of wrapping interceptors of the matching
+ * methods. By default, {@link MethodInterceptor#isWrapped(java.lang.reflect.Method, Object)} is
+ * consulted on every invocation.
+ *
+ * @return	the wrapping behavior of the interceptor for the matching methods.
+ */
+
+	Wrapping wrapping() default Wrapping.DYNAMIC;
+
+/**
+ * Wrapping behavior of a method interceptor.
+ */
+
+	enum Wrapping {
+
+/**
+ * The interceptor wraps an invocation if its <tt>isWrapped</tt> method returns <tt>true</tt> for
+ * that invocation.
+ */
+
+		DYNAMIC,
+
+/**
+ * The interceptor wraps every invocation of the matching methods. Its <tt>isWrapped</tt> method is
+ * never called.
+ */
+
+		ALWAYS,
+
+/**
+ * The interceptor never wraps invocations, and only receives the <tt>before</tt>, <tt>after</tt>
+ * and <tt>onError</tt> callbacks. Its <tt>isWrapped</tt> method is never called.
+ */
+
+		NEVER
+	}
+}
@@ -47,4 +47,14 @@ public @interface Prototype {
  */
 
 	String scope() default "";
+
+/**
+ * Determines if the prototype instances may be handed out without a proxy, when no method
+ * interceptor applies to any of their methods. Proxies can also be elided for all singletons and
+ * prototypes via {@link Crossbinder#elideProxies(boolean)}.
+ *
+ * @return	<tt>true</tt> if the proxy may be elided, <tt>false</tt> otherwise.
+ */
+
+	boolean elideProxy() default false;
 }
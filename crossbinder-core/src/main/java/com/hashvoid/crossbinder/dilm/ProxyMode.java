@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package com.hashvoid.crossbinder.dilm;
+
+/**
+ * Determines how Crossbinder creates the proxies through which singletons, prototypes and provided
+ * entities are handed out to the calling scope. The mode is chosen via the
+ * {@link Crossbinder#proxyMode(ProxyMode)} method, prior to starting the Crossbinder.
+ *
+ * @author poroshuram
+ */
+
+public enum ProxyMode {
+
+/**
+ * A proxy class is generated for each bound implementation. Every interface method on the proxy
+ * is linked directly to the managed entity (or to the interceptors, if any), and can be inlined by
+ * the JIT compiler. If a proxy class cannot be generated for an implementation (e.g. when one of
+ * its interfaces is not public), Crossbinder falls back to a JDK proxy for that implementation.
+ * This is the default mode.
+ */
+
+	GENERATED,
+
+/**
+ * Proxies are created via {@link java.lang.reflect.Proxy}, with every method invocation going
+ * through a common invocation handler.
+ */
+
+	JDK
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.hashvoid.crossbinder.dilm;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Restricts the invocations for which Crossbinder calls the <tt>before</tt>, <tt>after</tt> and
+ * <tt>onError</tt> callbacks of a {@link MethodInterceptor} to a sample. Whether an invocation is
+ * sampled is decided once, before the first callback, from a random number drawn per invocation
+ * and shared by all the sampled interceptors of the method, so that interceptors with the same
+ * rate see the same invocations. Invocations that are not sampled skip the callbacks of the
+ * interceptor altogether. Wrapping is not affected by sampling.
+ * <p>
+ *
+ * Besides the fixed rate and the limit per second, an interceptor may ask to also see the
+ * invocations that turn out to be slow or to fail. Since that is only known once the invocation
+ * completes, the interceptor then receives the <tt>before</tt> callback immediately followed by
+ * <tt>after</tt> or <tt>onError</tt>, once the invocation has completed.
+ * <p>
+ *
+ * Interceptors that are not annotated see every invocation.
+ *
+ * @author poroshuram
+ */
+
+@Target({ ElementType.TYPE })
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Sampling {
+
+/**
+ * The rate at which invocations are sampled, as one in so many.
+ *
+ * @return	the sampling interval, 1 to sample every invocation.
+ */
+
+	int oneIn() default 1;
+
+/**
+ * The maximum number of invocations sampled per second, across all the methods to which the
+ * interceptor applies. The limit is approximate, as it is enforced without locking.
+ *
+ * @return	the limit, 0 for no limit.
+ */
+
+	int perSecond() default 0;
+
+/**
+ * The time in milliseconds beyond which invocations that were not sampled are nevertheless passed
+ * on to the interceptor once they complete.
+ *
+ * @return	the threshold, 0 to not keep slow invocations.
+ */
+
+	long slowerThan() default 0;
+
+/**
+ * Determines whether invocations that were not sampled are nevertheless passed on to the
+ * interceptor if they fail.
+ *
+ * @return	<tt>true</tt> to keep failed invocations, <tt>false</tt> otherwise.
+ */
+
+	boolean failures() default false;
+}
@@ -60,4 +60,17 @@ public @interface Singleton {
  */
 
 	boolean lazyLoading() default false;
+
+/**
+ * Determines if the singleton may be handed out without a proxy, when no method interceptor
+ * applies to any of its methods. Callers then invoke methods on the singleton directly. A lazily
+ * loaded singleton is still handed out via a proxy, which creates the singleton on first use.
+ * Proxies can also be elided for all singletons and prototypes via
+ * {@link Crossbinder#elideProxies(boolean)}.
+ * <p>
+ *
+ * @return	<tt>true</tt> if the proxy may be elided, <tt>false</tt> otherwise.
+ */
+
+	boolean elideProxy() default false;
 }
@@ -0,0 +1,51 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package com.hashvoid.crossbinder.dilm;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Decorates a method of a singleton for it to be invoked repeatedly during startup, if a warm-up is
+ * requested via {@link Crossbinder#warmUp(int, int)}. The invocations go through the proxy of the
+ * singleton, including the applicable method interceptors, so that the just-in-time compiler gets
+ * to compile the invocation path before the application takes traffic. The method must implement a
+ * method of an interface the singleton is bound to, and must be free of side effects, since it is
+ * invoked like any other call. The annotation may be placed on the interface method instead.
+ * <p>
+ *
+ * Methods that take parameters require a fixture: a static method on the implementation class,
+ * without parameters, that returns the parameter values of the warm-up invocations as an
+ * <tt>Object[][]</tt>, one row per invocation. The rows are used in turn, so that the compiler
+ * profiles the parameter types the method is actually called with. Lazily loaded singletons are not
+ * warmed up.
+ *
+ * @author poroshuram
+ */
+
+@Target({ ElementType.METHOD })
+@Retention(RetentionPolicy.RUNTIME)
+public @interface WarmUp {
+
+/**
+ * @return	the name of the static fixture method on the implementation class, empty for methods
+ * 			without parameters.
+ */
+
+	String fixture() default "";
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package com.hashvoid.crossbinder.dilm;
+
+/**
+ * Summary of the warm-up of the singletons managed by a Crossbinder, performed during startup
+ * before the global lifecycle interceptors are notified.
+ * <p>
+ *
+ * @author poroshuram
+ */
+
+public class WarmUpStatistics {
+
+	private int  methodCount;
+	private long invocationCount;
+	private long failureCount;
+	private long time;
+
+	public WarmUpStatistics(int methods, long invocations, long failures, long time) {
+		methodCount = methods;
+		invocationCount = invocations;
+		failureCount = failures;
+		this.time = time;
+	}
+
+/**
+ * @return	the number of methods annotated with {@link WarmUp} that were invoked.
+ */
+
+	public int getMethodCount() {
+		return methodCount;
+	}
+
+/**
+ * @return	the number of warm-up invocations, across all methods and threads.
+ */
+
+	public long getInvocationCount() {
+		return invocationCount;
+	}
+
+/**
+ * @return	the number of methods whose warm-up was abandoned because an invocation failed.
+ */
+
+	public long getFailureCount() {
+		return failureCount;
+	}
+
+/**
+ * @return	the time taken by the warm-up, in nanoseconds.
+ */
+
+	public long getTime() {
+		return time;
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+	// Methods of base class Object
+
+	@Override
+	public String toString() {
+		return String.format("warm_up [methods = %d, invocations = %d, failures = %d, time = %d]",
+				methodCount, invocationCount, failureCount, time);
+	}
+}
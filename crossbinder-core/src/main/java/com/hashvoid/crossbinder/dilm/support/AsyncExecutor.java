@@ -0,0 +1,195 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package com.hashvoid.crossbinder.dilm.support;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import com.hashvoid.crossbinder.dilm.CrossbinderException;
+
+/**
+ * Executor on which methods annotated with <tt>Async</tt> are executed. Uses virtual threads if
+ * the Java runtime supports them, unless a fixed size pool of platform threads is requested. The
+ * executor is created when the Crossbinder starts, and shut down when it stops. Delayed tasks are
+ * timed by a single daemon thread, and then handed over to the executor.
+ *
+ * @author poroshuram
+ */
+
+class AsyncExecutor {
+
+	private static final Logger LOGGER = Logger.getLogger(AsyncExecutor.class.getName());
+
+	private static final long SHUTDOWN_TIMEOUT = 10;
+
+	private int                               poolSize;
+	private volatile ExecutorService          executor;
+	private volatile ScheduledExecutorService timer;
+
+	void setPoolSize(int threads) {
+		if(threads < 0) {
+			throw new CrossbinderException("invalid async pool size " + threads);
+		}
+		poolSize = threads;
+	}
+
+	synchronized void start() {
+		if(executor != null) {
+			return;
+		}
+		timer = Executors.newSingleThreadScheduledExecutor(new AsyncThreadFactory("crossbinder-timer-"));
+		if(poolSize > 0) {
+			executor = Executors.newFixedThreadPool(poolSize, new AsyncThreadFactory());
+			LOGGER.fine(String.format("async_executor = platform, pool_size = %d", poolSize));
+			return;
+		}
+		executor = newVirtualThreadExecutor();
+		if(executor != null) {
+			LOGGER.fine("async_executor = virtual");
+			return;
+		}
+		executor = Executors.newCachedThreadPool(new AsyncThreadFactory());
+		LOGGER.fine("async_executor = platform, pool_size = unbounded");
+	}
+
+/**
+ * Submits a task for asynchronous execution.
+ * <p>
+ *
+ * @param	task the task to be executed.
+ * @throws	CrossbinderException if the executor is not running.
+ */
+
+	void execute(Runnable task) throws CrossbinderException {
+		ExecutorService current = executor;
+		if(current == null || current.isShutdown()) {
+			throw new CrossbinderException("async executor not running, crossbinder is not started");
+		}
+		current.execute(task);
+	}
+
+/**
+ * Submits a task for asynchronous execution after a delay.
+ * <p>
+ *
+ * @param	task the task to be executed.
+ * @param	delay the delay in milliseconds, zero to execute the task right away.
+ * @throws	CrossbinderException if the executor is not running.
+ */
+
+	void schedule(Runnable task, long delay) throws CrossbinderException {
+		ScheduledExecutorService currTimer = timer;
+		if(delay <= 0 || currTimer == null) {
+			execute(task);
+			return;
+		}
+		currTimer.schedule(() -> {
+			try {
+				execute(task);
+			}
+			catch(CrossbinderException exep) {
+				// stopped while the task was pending, run it rather than leaving it unexecuted
+				task.run();
+			}
+		}, delay, TimeUnit.MILLISECONDS);
+	}
+
+/**
+ * Shuts down the executor, waiting for a while for running tasks to complete. Tasks still running
+ * after that are interrupted.
+ */
+
+	synchronized void stop() {
+		ExecutorService current = executor;
+		if(current == null) {
+			return;
+		}
+		ScheduledExecutorService currTimer = timer;
+		timer = null;
+		try {
+			// pending delayed tasks still run, and are handed to the executor before it shuts down
+			currTimer.shutdown();
+			currTimer.awaitTermination(SHUTDOWN_TIMEOUT, TimeUnit.SECONDS);
+		}
+		catch(InterruptedException exep) {
+			Thread.currentThread().interrupt();
+		}
+		executor = null;
+		current.shutdown();
+		try {
+			if(!current.awaitTermination(SHUTDOWN_TIMEOUT, TimeUnit.SECONDS)) {
+				LOGGER.warning(String.format("async tasks still running after %d seconds, interrupting",
+						SHUTDOWN_TIMEOUT));
+				current.shutdownNow();
+			}
+		}
+		catch(InterruptedException exep) {
+			current.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+	// Helper methods
+
+	private static ExecutorService newVirtualThreadExecutor() {
+		// available from Java 21 onwards, looked up reflectively to keep running on older runtimes
+		try {
+			Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) factory.invoke(null);
+		}
+		catch(NoSuchMethodException exep) {
+			LOGGER.fine("virtual threads not supported by the java runtime");
+		}
+		catch(ReflectiveOperationException | RuntimeException exep) {
+			LOGGER.fine(String.format("virtual threads not available (%s)", exep));
+		}
+		return null;
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+	// Inner class that creates daemon platform threads for the async executor
+
+	private static class AsyncThreadFactory implements ThreadFactory {
+
+		private static final AtomicInteger POOL_COUNTER = new AtomicInteger();
+
+		private String        prefix;
+		private AtomicInteger threadCounter;
+
+		AsyncThreadFactory() {
+			this("crossbinder-async-");
+		}
+
+		AsyncThreadFactory(String name) {
+			prefix = name + POOL_COUNTER.incrementAndGet() + "-";
+			threadCounter = new AtomicInteger();
+		}
+
+		@Override
+		public Thread newThread(Runnable task) {
+			Thread thread = new Thread(task, prefix + threadCounter.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
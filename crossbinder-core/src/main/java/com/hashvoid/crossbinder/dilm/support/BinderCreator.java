@@ -14,7 +14,9 @@
 
 package com.hashvoid.crossbinder.dilm.support;
 
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.logging.Logger;
 
 import com.hashvoid.crossbinder.dilm.ConfigurationProvider;
@@ -25,6 +27,7 @@ import com.hashvoid.crossbinder.dilm.MethodInterceptor;
 import com.hashvoid.crossbinder.dilm.support.binder.Binder;
 import com.hashvoid.crossbinder.dilm.support.binder.BinderContext;
 import com.hashvoid.crossbinder.dilm.support.binder.EventHandler;
+import com.hashvoid.crossbinder.dilm.support.binder.ProxyFactory;
 import com.hashvoid.crossbinder.dilm.support.binder.types.InterceptorBinderFactory;
 import com.hashvoid.crossbinder.dilm.support.binder.types.PrototypeBinderFactory;
 import com.hashvoid.crossbinder.dilm.support.binder.types.ProviderBinderFactory;
@@ -44,6 +47,13 @@ public class BinderCreator {
 	private EventHandlerImpl            evtHandler;
 	private ScannerImpl                 scanner;
 	private List<ConfigurationProvider> configProviders;
+	private ProxyFactory                proxyFactory;
+	private boolean                     proxyElision;
+	private Set<Class<?>>               removedTypes;
+
+	public BinderCreator() {
+		removedTypes = new HashSet<>();
+	}
 
 	public void setLocator(LocatorImpl locator) {
 		this.locator = locator;
@@ -65,22 +75,44 @@ public class BinderCreator {
 		configProviders = providers;
 	}
 
-	public void addInterceptor(MethodInterceptor mi) {
+	public void setProxyFactory(ProxyFactory factory) {
+		proxyFactory = factory;
+	}
+
+	public void setProxyElision(boolean flag) {
+		proxyElision = flag;
+	}
+
+/**
+ * Leaves the lifecycle and method interceptors of the given type out when the scanned classes are
+ * loaded, for interceptors removed before the classpath is scanned.
+ * <p>
+ *
+ * @param	type the implementation class of the interceptors.
+ */
+
+	public void removeScanned(Class<?> type) {
+		removedTypes.add(type);
+	}
+
+	public Binder addInterceptor(MethodInterceptor mi) {
 		InterceptorBinderFactory iceptBndf = new InterceptorBinderFactory();
-		Binder binder = iceptBndf.createExternalBinder(mi);
+		Binder binder = iceptBndf.createExternalBinder(mi, new BinderContextImpl());
 		if(binder != null) {
 			locator.addMethodInterceptor(binder);
 			LOGGER.fine(String.format("method_interceptor = %s", mi.getClass().getName()));
 		}
+		return binder;
 	}
 
-	public void addInterceptor(LifecycleInterceptor li) {
+	public Binder addInterceptor(LifecycleInterceptor li) {
 		InterceptorBinderFactory iceptBndf = new InterceptorBinderFactory();
-		Binder binder = iceptBndf.createExternalBinder(li);
+		Binder binder = iceptBndf.createExternalBinder(li, new BinderContextImpl());
 		if(binder != null) {
 			locator.addLifecycleInterceptor(binder);
 			LOGGER.fine(String.format("lifecycle_interceptor = %s", li.getClass().getName()));
 		}
+		return binder;
 	}
 
 	public void loadScanned() {
@@ -99,6 +131,10 @@ public class BinderCreator {
 
 		List<Class<?>> lciList = scanner.listLifecycleInterceptors();
 		for(Class<?> lciType : lciList) {
+			if(removedTypes.contains(lciType)) {
+				LOGGER.fine(String.format("lifecycle_interceptor_removed = %s", lciType.getName()));
+				continue;
+			}
 			Binder binder = iceptBndf.createBinder(lciType, binderCtxt);
 			if(binder != null) {
 				locator.addLifecycleInterceptor(binder);
@@ -108,6 +144,10 @@ public class BinderCreator {
 
 		List<Class<?>> miList = scanner.listMethodInterceptors();
 		for(Class<?> miType : miList) {
+			if(removedTypes.contains(miType)) {
+				LOGGER.fine(String.format("method_interceptor_removed = %s", miType.getName()));
+				continue;
+			}
 			Binder binder = iceptBndf.createBinder(miType, binderCtxt);
 			if(binder != null) {
 				locator.addMethodInterceptor(binder);
@@ -169,5 +209,15 @@ public class BinderCreator {
 		public List<ConfigurationProvider> getConfigurationProviders() {
 			return configProviders;
 		}
+
+		@Override
+		public ProxyFactory getProxyFactory() {
+			return proxyFactory;
+		}
+
+		@Override
+		public boolean isProxyElision() {
+			return proxyElision;
+		}
 	}
 }
@@ -24,10 +24,17 @@ import com.hashvoid.crossbinder.dilm.CrossbinderException;
 import com.hashvoid.crossbinder.dilm.GlobalLifecycleInterceptor;
 import com.hashvoid.crossbinder.dilm.Injector;
 import com.hashvoid.crossbinder.dilm.LifecycleInterceptor;
+import com.hashvoid.crossbinder.dilm.LoadStatistics;
 import com.hashvoid.crossbinder.dilm.Locator;
 import com.hashvoid.crossbinder.dilm.MethodInterceptor;
+import com.hashvoid.crossbinder.dilm.ProxyMode;
 import com.hashvoid.crossbinder.dilm.Scanner;
+import com.hashvoid.crossbinder.dilm.WarmUpStatistics;
 import com.hashvoid.crossbinder.dilm.support.binder.Binder;
+import com.hashvoid.crossbinder.dilm.support.binder.types.SingletonBinder;
+import com.hashvoid.crossbinder.dilm.support.jfr.FlightEvents;
+import com.hashvoid.crossbinder.dilm.support.proxy.GeneratedProxyFactory;
+import com.hashvoid.crossbinder.dilm.support.proxy.JdkProxyFactory;
 
 /**
  * @author poroshuram
@@ -45,12 +52,17 @@ public class CrossbinderImpl extends Crossbinder {
 	private EventHandlerImpl            evtHandler;
 	private BinderCreator               bindCreator;
 	private BinderOrdering              bindOrder;
+	private AsyncExecutor               asyncExecutor;
+	private WarmUpDriver                warmUpDriver;
+	private WarmUpStatistics            warmUpStats;
 	private boolean                     startFlag;
 
 	public CrossbinderImpl() {
 		scanner = new ScannerImpl();
 		locator = new LocatorImpl();
-		evtHandler = new EventHandlerImpl(locator);
+		asyncExecutor = new AsyncExecutor();
+		warmUpDriver = new WarmUpDriver();
+		evtHandler = new EventHandlerImpl(locator, asyncExecutor);
 		configProviders = new ArrayList<>();
 		injector = new InjectorImpl(locator, configProviders);
 
@@ -60,6 +72,7 @@ public class CrossbinderImpl extends Crossbinder {
 		bindCreator.setInjector(injector);
 		bindCreator.setEventHandler(evtHandler);
 		bindCreator.setConfigurationProviders(configProviders);
+		bindCreator.setProxyFactory(new GeneratedProxyFactory());
 
 		bindOrder = new BinderOrdering();
 		bindOrder.setLocator(locator);
@@ -77,19 +90,89 @@ public class CrossbinderImpl extends Crossbinder {
 
 	@Override
 	public Crossbinder addInterceptor(MethodInterceptor mi) {
-		bindCreator.addInterceptor(mi);
+		Binder binder = bindCreator.addInterceptor(mi);
+		if(binder != null && startFlag) {
+			// already past stage 1, the interceptor is set up and the chains recompiled here
+			startBinder(binder);
+			evtHandler.interceptorsChanged();
+		}
 		return this;
 	}
 
 	@Override
 	public Crossbinder addInterceptor(LifecycleInterceptor li) {
-		bindCreator.addInterceptor(li);
+		Binder binder = bindCreator.addInterceptor(li);
+		if(binder != null && startFlag) {
+			startBinder(binder);
+			evtHandler.interceptorsChanged();
+		}
+		return this;
+	}
+
+	@Override
+	public Crossbinder removeInterceptor(Class<?> type) {
+		if(!startFlag) {
+			// the classpath is not scanned yet, the interceptors found there are left out on start
+			bindCreator.removeScanned(type);
+			locator.removeInterceptors(type);
+			LOGGER.fine(String.format("interceptor_removed = %s", type.getName()));
+			return this;
+		}
+		if(!locator.removeInterceptors(type)) {
+			LOGGER.warning(String.format("no interceptor to remove, type = %s", type.getName()));
+			return this;
+		}
+		LOGGER.fine(String.format("interceptor_removed = %s", type.getName()));
+		evtHandler.interceptorsChanged();
+		return this;
+	}
+
+	@Override
+	public Crossbinder enableInterceptor(Class<?> type, boolean flag) {
+		evtHandler.enableInterceptors(type, flag);
+		return this;
+	}
+
+	@Override
+	public Crossbinder proxyMode(ProxyMode mode) {
+		if(mode == ProxyMode.JDK) {
+			bindCreator.setProxyFactory(new JdkProxyFactory());
+		}
+		else {
+			bindCreator.setProxyFactory(new GeneratedProxyFactory());
+		}
+		LOGGER.fine(String.format("proxy_mode = %s", mode));
+		return this;
+	}
+
+	@Override
+	public Crossbinder elideProxies(boolean flag) {
+		bindCreator.setProxyElision(flag);
+		LOGGER.fine(String.format("proxy_elision = %s", flag));
+		return this;
+	}
+
+	@Override
+	public Crossbinder asyncPoolSize(int threads) {
+		asyncExecutor.setPoolSize(threads);
+		LOGGER.fine(String.format("async_pool_size = %d", threads));
+		return this;
+	}
+
+	@Override
+	public Crossbinder warmUp(int iterations, int threads) {
+		warmUpDriver.setIterations(iterations, threads);
+		LOGGER.fine(String.format("warm_up_iterations = %d, warm_up_threads = %d", iterations, threads));
 		return this;
 	}
 
 	@Override
 	public Crossbinder start() throws CrossbinderException {
+		Object event = FlightEvents.begin(FlightEvents.Type.SCAN);
 		scanner.scan();
+		FlightEvents.commit(event);
+
+		event = FlightEvents.begin(FlightEvents.Type.BINDER_CREATION);
 		bindCreator.loadScanned();
 		locator.dumpState(); //for debug purposes
 
@@ -98,20 +181,29 @@ public class CrossbinderImpl extends Crossbinder {
 		circDep.check();
 
 		bindOrder.resolve();
+		FlightEvents.commit(event, bindOrder.getStage1Binders().size() + bindOrder.getStage2Binders().size());
 
 		for(Binder binder : bindOrder.getStage1Binders()) {
-			binder.start();
+			startBinder(binder);
 		}
 		LOGGER.fine("stage1 binders started");
 
 		//activate the event handler to start handling events from this point onwards.
 		evtHandler.getReady();
+		asyncExecutor.start();
 
 		for(Binder binder : bindOrder.getStage2Binders()) {
-			binder.start();
+			startBinder(binder);
 		}
 		LOGGER.fine("stage2 binders started");
 
+		if(warmUpDriver.isEnabled()) {
+			// get the invocation paths compiled before the application is told it may take traffic
+			event = FlightEvents.begin(FlightEvents.Type.WARM_UP);
+			warmUpStats = warmUpDriver.run(bindOrder.getStage2Binders());
+			FlightEvents.commit(event, warmUpStats.getMethodCount());
+		}
+
 		for(Binder binder : locator.getGlobalLifecycleInterceptors()) {
 			GlobalLifecycleInterceptor glci = binder.getInstance(GlobalLifecycleInterceptor.class);
 			if(glci != null) {
@@ -132,12 +224,15 @@ public class CrossbinderImpl extends Crossbinder {
 			}
 		}
 
+		//let the in-flight asynchronous calls finish before the binders are stopped
+		asyncExecutor.stop();
+
 		for(Binder binder : bindOrder.getStage2Binders()) {
-			binder.stop();
+			stopBinder(binder);
 		}
 
 		for(Binder binder : bindOrder.getStage1Binders()) {
-			binder.stop();
+			stopBinder(binder);
 		}
 		startFlag = false;
 	}
@@ -166,4 +261,35 @@ public class CrossbinderImpl extends Crossbinder {
 	public void addLocator(Locator locator) {
 		this.locator.chain(locator);
 	}
+
+	@Override
+	public List<LoadStatistics> loadStatistics() {
+		List<LoadStatistics> result = new ArrayList<>();
+		for(Binder binder : bindOrder.getStage2Binders()) {
+			if(binder instanceof SingletonBinder) {
+				result.add(((SingletonBinder) binder).getLoadStatistics());
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public WarmUpStatistics warmUpStatistics() {
+		return warmUpStats;
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+	// Helper methods
+
+	private void startBinder(Binder binder) {
+		Object event = FlightEvents.begin(FlightEvents.Type.BINDER_START);
+		binder.start();
+		FlightEvents.commit(event, binder);
+	}
+
+	private void stopBinder(Binder binder) {
+		Object event = FlightEvents.begin(FlightEvents.Type.BINDER_STOP);
+		binder.stop();
+		FlightEvents.commit(event, binder);
+	}
 }
@@ -14,15 +14,33 @@
 
 package com.hashvoid.crossbinder.dilm.support;
 
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import com.hashvoid.crossbinder.dilm.Deadline;
 import com.hashvoid.crossbinder.dilm.LifecycleInterceptor;
 import com.hashvoid.crossbinder.dilm.MethodInterceptor;
+import com.hashvoid.crossbinder.dilm.Order;
+import com.hashvoid.crossbinder.dilm.Pointcut.Wrapping;
+import com.hashvoid.crossbinder.dilm.Sampling;
 import com.hashvoid.crossbinder.dilm.support.binder.Binder;
+import com.hashvoid.crossbinder.dilm.support.binder.BoundMethod;
 import com.hashvoid.crossbinder.dilm.support.binder.EventHandler;
+import com.hashvoid.crossbinder.dilm.support.binder.InterceptorChain;
+import com.hashvoid.crossbinder.dilm.support.binder.MethodTable;
+import com.hashvoid.crossbinder.dilm.support.binder.SamplingPolicy;
 
 /**
  * @author poroshuram
@@ -33,18 +51,71 @@ public class EventHandlerImpl implements EventHandler {
 
 	private static final Logger LOGGER = Logger.getLogger(EventHandlerImpl.class.getName());
 
-	private LocatorImpl locator;
-	private boolean     readyFlag;
+	private LocatorImpl         locator;
+	private AsyncExecutor       asyncExecutor;
+	private List<MethodTable>   methodTables;
+	private MethodInterceptor[] methodInterceptors;
+	private PointcutMatcher[]   pointcuts;
+	private SamplingPolicy[]    samplingPolicies;
+	private Set<Class<?>>       disabledTypes;
+	private boolean             readyFlag;
 
-	EventHandlerImpl(LocatorImpl locator) {
+	// replaced as a whole when the interceptors change, so that events are dispatched without locking
+	private volatile LifecycleInterceptor[] lifecycleInterceptors;
+
+	EventHandlerImpl(LocatorImpl locator, AsyncExecutor executor) {
 		this.locator = locator;
+		asyncExecutor = executor;
+		methodTables = new ArrayList<>();
+		disabledTypes = new HashSet<>();
+		lifecycleInterceptors = new LifecycleInterceptor[0];
 		readyFlag = false;
 	}
 
-	void getReady() {
+	synchronized void getReady() {
+		resolveInterceptors();
+		// method tables created before this point were not yet intercepted
+		for(MethodTable table : methodTables) {
+			compile(table);
+		}
 		readyFlag = true;
 	}
 
+/**
+ * Recompiles the interceptor chains of all method tables, after the set of interceptors has
+ * changed. The bound methods whose chains differ re-specialize the invokers linked into their
+ * proxies as they are handed the new chains, while calls in progress complete on the previous
+ * ones.
+ */
+
+	synchronized void interceptorsChanged() {
+		if(!readyFlag) {
+			return;
+		}
+		resolveInterceptors();
+		for(MethodTable table : methodTables) {
+			compile(table);
+		}
+	}
+
+/**
+ * Enables or disables the lifecycle and method interceptors of the given type. Disabled
+ * interceptors are left out of the interceptor chains altogether, rather than being skipped on
+ * each call, so that they cost nothing until enabled again.
+ * <p>
+ *
+ * @param	type the implementation class of the interceptors.
+ * @param	flag <tt>true</tt> to enable the interceptors, <tt>false</tt> to disable them.
+ */
+
+	synchronized void enableInterceptors(Class<?> type, boolean flag) {
+		boolean changed = flag ? disabledTypes.remove(type) : disabledTypes.add(type);
+		if(changed) {
+			LOGGER.fine(String.format("interceptor = %s, enabled = %s", type.getName(), flag));
+			interceptorsChanged();
+		}
+	}
+
 	////////////////////////////////////////////////////////////////////////////
 	// Methods of interface EventHandler
 
@@ -54,11 +125,8 @@ public class EventHandlerImpl implements EventHandler {
 			return;
 		}
 
-		for(Binder binder : locator.getLifecycleInterceptors()) {
-			LifecycleInterceptor lci = binder.getInstance(LifecycleInterceptor.class);
-			if(lci != null) {
-				lci.afterCreation(inst);
-			}
+		for(LifecycleInterceptor lci : lifecycleInterceptors) {
+			lci.afterCreation(inst);
 		}
 	}
 
@@ -68,11 +136,8 @@ public class EventHandlerImpl implements EventHandler {
 			return;
 		}
 
-		for(Binder binder : locator.getLifecycleInterceptors()) {
-			LifecycleInterceptor lci = binder.getInstance(LifecycleInterceptor.class);
-			if(lci != null) {
-				lci.afterInjection(inst);
-			}
+		for(LifecycleInterceptor lci : lifecycleInterceptors) {
+			lci.afterInjection(inst);
 		}
 	}
 
@@ -82,11 +147,8 @@ public class EventHandlerImpl implements EventHandler {
 			return;
 		}
 
-		for(Binder binder : locator.getLifecycleInterceptors()) {
-			LifecycleInterceptor lci = binder.getInstance(LifecycleInterceptor.class);
-			if(lci != null) {
-				lci.afterInitialization(inst);
-			}
+		for(LifecycleInterceptor lci : lifecycleInterceptors) {
+			lci.afterInitialization(inst);
 		}
 	}
 
@@ -96,11 +158,8 @@ public class EventHandlerImpl implements EventHandler {
 			return;
 		}
 
-		for(Binder binder : locator.getLifecycleInterceptors()) {
-			LifecycleInterceptor lci = binder.getInstance(LifecycleInterceptor.class);
-			if(lci != null) {
-				lci.beforeDisposal(inst);
-			}
+		for(LifecycleInterceptor lci : lifecycleInterceptors) {
+			lci.beforeDisposal(inst);
 		}
 	}
 
@@ -110,82 +169,192 @@ public class EventHandlerImpl implements EventHandler {
 			return;
 		}
 
-		for(Binder binder : locator.getLifecycleInterceptors()) {
-			LifecycleInterceptor lci = binder.getInstance(LifecycleInterceptor.class);
-			if(lci != null) {
-				lci.afterDisposal(inst);
+		for(LifecycleInterceptor lci : lifecycleInterceptors) {
+			lci.afterDisposal(inst);
+		}
+	}
+
+	@Override
+	public synchronized void methodTableCreated(MethodTable table) {
+		methodTables.add(table);
+		if(readyFlag) {
+			compile(table);
+		}
+	}
+
+	@Override
+	public void beforeMethod(Object inst, BoundMethod method, InterceptorChain chain, Object[] args,
+			long sampled) {
+		Method implMthd = method.getImplementationMethod();
+		MethodInterceptor[] interceptors = chain.getInterceptors();
+		for(int i = 0; i < interceptors.length; i++) {
+			if(InterceptorChain.isSampled(sampled, i)) {
+				interceptors[i].before(implMthd, inst, args);
 			}
 		}
 	}
 
 	@Override
-	public void beforeMethod(Object inst, Method method, Object[] args) {
-		if(!readyFlag) {
-			return;
+	public Object wrapMethod(Object inst, BoundMethod method, InterceptorChain chain, Object[] args)
+			throws Throwable {
+		if(!chain.hasWrappers()) {
+			return method.invokeTarget(inst, args);
 		}
-		for(Binder binder : locator.getMethodInterceptors()) {
-			MethodInterceptor mthdi = binder.getInstance(MethodInterceptor.class);
-			if(mthdi != null) {
-				mthdi.before(method, inst, args);
+		return method.newInvocation(chain, inst, args).proceed();
+	}
+
+	@Override
+	public void afterMethodSuccess(Object inst, BoundMethod method, InterceptorChain chain, Object result,
+			long sampled) {
+		Method implMthd = method.getImplementationMethod();
+		MethodInterceptor[] interceptors = chain.getInterceptors();
+		for(int i = 0; i < interceptors.length; i++) {
+			if(InterceptorChain.isSampled(sampled, i)) {
+				interceptors[i].after(implMthd, inst, result);
 			}
 		}
 	}
 
 	@Override
-	public Object wrapMethod(Object inst, Method method, Object[] args) throws Throwable {
-		if(!readyFlag) {
+	public void afterMethodFail(Object inst, BoundMethod method, InterceptorChain chain, Throwable error,
+			long sampled) {
+		Method implMthd = method.getImplementationMethod();
+		MethodInterceptor[] interceptors = chain.getInterceptors();
+		for(int i = 0; i < interceptors.length; i++) {
+			if(InterceptorChain.isSampled(sampled, i)) {
+				interceptors[i].onError(implMthd, inst, error);
+			}
+		}
+	}
+
+	@Override
+	public Object invokeAsync(Object inst, BoundMethod method, Object[] args) {
+		boolean voidFlag = (method.getInterfaceMethod().getReturnType() == void.class);
+		CompletableFuture<Object> result = new CompletableFuture<>();
+		// the deadline of the caller also applies to the task, which may have been queued past it
+		Deadline deadline = Deadline.current();
+		asyncExecutor.execute(() -> {
+			Deadline.Scope scope = (deadline != null) ? deadline.enter() : null;
 			try {
-				return method.invoke(inst, args);
+				method.checkDeadline();
+				complete(result, method.execute(inst, args));
 			}
-			catch(InvocationTargetException exep) {
-				throw exep.getCause();
+			catch(Throwable exep) {
+				result.completeExceptionally(exep);
 			}
-			catch(Exception exep) {
-				LOGGER.log(Level.SEVERE, "direct method execution failed", exep);
-				return null;
+			finally {
+				if(scope != null) {
+					scope.close();
+				}
 			}
+		});
+		if(!voidFlag) {
+			return result;
 		}
-		for(Binder binder : locator.getMethodInterceptors()) {
-			MethodInterceptor mthdi = binder.getInstance(MethodInterceptor.class);
-			if(mthdi != null && mthdi.isWrapped(method, inst)) {
-				return mthdi.wrap(method, inst, args);
+		// nobody is waiting on the outcome of a void method
+		result.whenComplete((retVal, exep) -> {
+			if(exep != null) {
+				LOGGER.log(Level.WARNING, String.format("async method failed %s", method), exep);
 			}
+		});
+		return null;
+	}
+
+	@Override
+	public void schedule(Runnable task, long delay) {
+		asyncExecutor.schedule(task, delay);
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+	// Helper methods
+
+	private void complete(CompletableFuture<Object> result, Object retVal) throws Exception {
+		if(retVal instanceof CompletionStage) {
+			((CompletionStage<?>) retVal).whenComplete((value, exep) -> {
+				if(exep != null) {
+					result.completeExceptionally(exep instanceof CompletionException && exep.getCause() != null
+							? exep.getCause() : exep);
+				}
+				else {
+					result.complete(value);
+				}
+			});
 		}
-		try {
-			return method.invoke(inst, args);
-		}
-		catch(InvocationTargetException exep) {
-			throw exep.getCause();
+		else if(retVal instanceof Future) {
+			// already off the calling thread, so waiting here does not block the caller
+			try {
+				result.complete(((Future<?>) retVal).get());
+			}
+			catch(ExecutionException exep) {
+				result.completeExceptionally(exep.getCause() != null ? exep.getCause() : exep);
+			}
 		}
-		catch(Exception exep) {
-			LOGGER.log(Level.SEVERE, "direct method execution failed", exep);
-			return null;
+		else {
+			result.complete(retVal);
 		}
 	}
 
-	@Override
-	public void afterMethodSuccess(Object inst, Method method, Object result) {
-		if(!readyFlag) {
-			return;
+	private void resolveInterceptors() {
+		List<LifecycleInterceptor> lcInterceptors = new ArrayList<>();
+		for(Binder binder : locator.getLifecycleInterceptors()) {
+			LifecycleInterceptor lci = binder.getInstance(LifecycleInterceptor.class);
+			if(lci != null && !disabledTypes.contains(lci.getClass())) {
+				lcInterceptors.add(lci);
+			}
 		}
+		lifecycleInterceptors = lcInterceptors.toArray(new LifecycleInterceptor[lcInterceptors.size()]);
+
+		List<MethodInterceptor> interceptors = new ArrayList<>();
 		for(Binder binder : locator.getMethodInterceptors()) {
 			MethodInterceptor mthdi = binder.getInstance(MethodInterceptor.class);
-			if(mthdi != null) {
-				mthdi.after(method, inst, result);
+			if(mthdi != null && !disabledTypes.contains(mthdi.getClass())) {
+				interceptors.add(mthdi);
+			}
+		}
+		// stable sort, interceptors with the same order retain their relative positions
+		Collections.sort(interceptors, Comparator.comparingInt(EventHandlerImpl::getOrder));
+		methodInterceptors = interceptors.toArray(new MethodInterceptor[interceptors.size()]);
+		pointcuts = new PointcutMatcher[methodInterceptors.length];
+		samplingPolicies = new SamplingPolicy[methodInterceptors.length];
+		for(int i = 0; i < methodInterceptors.length; i++) {
+			pointcuts[i] = new PointcutMatcher(methodInterceptors[i].getClass());
+			// one policy per interceptor, so that its rate limit spans all the methods it applies to
+			Sampling sampling = methodInterceptors[i].getClass().getAnnotation(Sampling.class);
+			if(sampling != null) {
+				samplingPolicies[i] = new SamplingPolicy(sampling);
 			}
 		}
 	}
 
-	@Override
-	public void afterMethodFail(Object inst, Method method, Throwable error) {
-		if(!readyFlag) {
-			return;
-		}
-		for(Binder binder : locator.getMethodInterceptors()) {
-			MethodInterceptor mthdi = binder.getInstance(MethodInterceptor.class);
-			if(mthdi != null) {
-				mthdi.onError(method, inst, error);
+	private void compile(MethodTable table) {
+		// resolve the interceptors applicable to each method, as per the interceptor pointcuts
+		Class<?> implCls = table.getImplementationClass();
+		for(BoundMethod method : table.getMethods()) {
+			List<MethodInterceptor> chain = new ArrayList<>();
+			List<Wrapping> wrapping = new ArrayList<>();
+			List<SamplingPolicy> sampling = new ArrayList<>();
+			for(int i = 0; i < methodInterceptors.length; i++) {
+				if(pointcuts[i].matches(implCls, method)) {
+					chain.add(methodInterceptors[i]);
+					wrapping.add(pointcuts[i].getWrapping());
+					sampling.add(samplingPolicies[i]);
+				}
 			}
+			method.setChain(new InterceptorChain(chain.toArray(new MethodInterceptor[chain.size()]),
+					wrapping.toArray(new Wrapping[wrapping.size()]),
+					sampling.toArray(new SamplingPolicy[sampling.size()])));
+		}
+		if(table.isElided() && !table.isDirect()) {
+			// proxies are handed out from here on, references handed out so far bypass the interceptors
+			table.setElided(false);
+			LOGGER.warning(String.format("interceptors bypassed by instances handed out without proxy, class = %s",
+					implCls.getName()));
 		}
+		LOGGER.fine(String.format("method_interceptors_compiled = %s", implCls.getName()));
+	}
+
+	private static int getOrder(MethodInterceptor mthdi) {
+		Order order = mthdi.getClass().getAnnotation(Order.class);
+		return (order != null) ? order.value() : 0;
 	}
 }
@@ -21,6 +21,7 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
 import java.util.logging.Logger;
 
 import com.hashvoid.crossbinder.dilm.CrossbinderException;
@@ -50,8 +51,9 @@ public class LocatorImpl implements Locator {
 	LocatorImpl() {
 		chainedLocators = new HashSet<>();
 		globalInterceptors = new HashSet<>();
-		lifecycleInterceptors = new HashSet<>();
-		methodInterceptors = new HashSet<>();
+		// may change while the container is running, and are read without locking
+		lifecycleInterceptors = new CopyOnWriteArraySet<>();
+		methodInterceptors = new CopyOnWriteArraySet<>();
 		providers = new HashSet<>();
 		externals = new HashSet<>();
 		singleProto = new HashSet<>();
@@ -154,6 +156,20 @@ public class LocatorImpl implements Locator {
 		}
 	}
 
+/**
+ * Removes the lifecycle and method interceptors of the given type.
+ * <p>
+ *
+ * @param	type the implementation class of the interceptors.
+ * @return	<tt>true</tt> if any interceptor was removed, <tt>false</tt> otherwise.
+ */
+
+	boolean removeInterceptors(Class<?> type) {
+		boolean result = lifecycleInterceptors.removeIf(binder -> binder.getImplementationClass() == type);
+		result |= methodInterceptors.removeIf(binder -> binder.getImplementationClass() == type);
+		return result;
+	}
+
 	void addProvider(Binder binder) {
 		if(binder.getName().length() > 0 && nameToBinderMap.containsKey(binder.getName())) {
 			LOGGER.warning(String.format("a binder already exists with the name = %s", binder.getName()));
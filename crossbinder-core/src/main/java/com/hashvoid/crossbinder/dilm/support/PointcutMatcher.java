@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package com.hashvoid.crossbinder.dilm.support;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.regex.Pattern;
+
+import com.hashvoid.crossbinder.dilm.Pointcut;
+import com.hashvoid.crossbinder.dilm.Pointcut.Wrapping;
+import com.hashvoid.crossbinder.dilm.support.binder.BoundMethod;
+
+/**
+ * Evaluates the {@link Pointcut} of a method interceptor against the bound methods of managed
+ * entities.
+ *
+ * @author poroshuram
+ */
+
+class PointcutMatcher {
+
+	private Pointcut pointcut;
+	private Pattern  methodPattern;
+
+	PointcutMatcher(Class<?> interceptorCls) {
+		pointcut = interceptorCls.getAnnotation(Pointcut.class);
+		if(pointcut != null && pointcut.methods().length() > 0) {
+			methodPattern = Pattern.compile(pointcut.methods());
+		}
+	}
+
+	boolean matches(Class<?> implCls, BoundMethod method) {
+		if(pointcut == null) {
+			return true;
+		}
+		if(pointcut.annotatedWith().length > 0 && !isAnnotated(implCls, method)) {
+			return false;
+		}
+		if(pointcut.types().length > 0 && !isSubtype(implCls)) {
+			return false;
+		}
+		if(methodPattern != null
+				&& !methodPattern.matcher(method.getInterfaceMethod().getName()).matches()) {
+			return false;
+		}
+		return true;
+	}
+
+	Wrapping getWrapping() {
+		return (pointcut != null) ? pointcut.wrapping() : Wrapping.DYNAMIC;
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+	// Helper methods
+
+	private boolean isAnnotated(Class<?> implCls, BoundMethod method) {
+		Method implMthd = method.getImplementationMethod();
+		Method ifaceMthd = method.getInterfaceMethod();
+		for(Class<? extends Annotation> ann : pointcut.annotatedWith()) {
+			if(implMthd.isAnnotationPresent(ann) || ifaceMthd.isAnnotationPresent(ann)
+					|| implCls.isAnnotationPresent(ann)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private boolean isSubtype(Class<?> implCls) {
+		for(Class<?> type : pointcut.types()) {
+			if(type.isAssignableFrom(implCls)) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,265 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package com.hashvoid.crossbinder.dilm.support;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.hashvoid.crossbinder.dilm.CrossbinderException;
+import com.hashvoid.crossbinder.dilm.Singleton;
+import com.hashvoid.crossbinder.dilm.WarmUp;
+import com.hashvoid.crossbinder.dilm.WarmUpStatistics;
+import com.hashvoid.crossbinder.dilm.support.binder.Binder;
+import com.hashvoid.crossbinder.dilm.support.binder.types.SingletonBinder;
+
+/**
+ * Drives the methods of singletons annotated with {@link WarmUp} through their proxies, from a
+ * number of worker threads, before the Crossbinder reports that it has started. Each worker
+ * invokes every warm-up method in turn, so that all the methods are compiled at about the same
+ * time. A method whose invocation fails is not invoked again.
+ *
+ * @author poroshuram
+ */
+
+class WarmUpDriver {
+
+	private static final Logger LOGGER = Logger.getLogger(WarmUpDriver.class.getName());
+
+	private static final Object[][] NO_FIXTURES = { new Object[0] };
+
+	private int        iterations;
+	private int        threads;
+	private AtomicLong invocationCount;
+
+	void setIterations(int iterations, int threads) {
+		if(iterations < 0 || threads < 0) {
+			throw new CrossbinderException(String.format("invalid warm-up %d iterations, %d threads",
+					iterations, threads));
+		}
+		this.iterations = iterations;
+		this.threads = Math.max(threads, 1);
+	}
+
+	boolean isEnabled() {
+		return iterations > 0;
+	}
+
+/**
+ * Warms up the singletons of the given binders, returning once all the workers are done.
+ * <p>
+ *
+ * @param	binders the binders of the managed entities, of which singletons are warmed up.
+ * @return	a summary of the warm-up.
+ */
+
+	WarmUpStatistics run(List<Binder> binders) {
+		long start = System.nanoTime();
+		List<WarmUpCall> calls = new ArrayList<>();
+		for(Binder binder : binders) {
+			if(binder instanceof SingletonBinder) {
+				collectCalls(binder, calls);
+			}
+		}
+		invocationCount = new AtomicLong();
+		if(!calls.isEmpty()) {
+			Thread[] workers = new Thread[threads];
+			for(int i = 0; i < workers.length; i++) {
+				// the iterations are spread over the workers, the first ones taking the remainder
+				int count = iterations / threads + (i < iterations % threads ? 1 : 0);
+				workers[i] = new Thread(() -> drive(calls, count), "crossbinder-warmup-" + (i + 1));
+				workers[i].setDaemon(true);
+				workers[i].start();
+			}
+			for(Thread worker : workers) {
+				try {
+					worker.join();
+				}
+				catch(InterruptedException exep) {
+					Thread.currentThread().interrupt();
+					LOGGER.warning("interrupted while waiting for warm-up to finish");
+					break;
+				}
+			}
+		}
+
+		long failures = calls.stream().filter(call -> call.failed).count();
+		WarmUpStatistics result = new WarmUpStatistics(calls.size(), invocationCount.get(), failures,
+				System.nanoTime() - start);
+		LOGGER.info(String.format("warm-up completed, methods = %d, invocations = %d, failures = %d, "
+				+ "time_ms = %d", result.getMethodCount(), result.getInvocationCount(), failures,
+				result.getTime() / 1000000));
+		return result;
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+	// Helper methods
+
+	private void collectCalls(Binder binder, List<WarmUpCall> calls) {
+		Class<?> implCls = binder.getImplementationClass();
+		Singleton ann = implCls.getAnnotation(Singleton.class);
+		if(ann == null || ann.lazyLoading()) {
+			return;
+		}
+		for(Class<?> iface : binder.getInterfaceTypes()) {
+			for(Method ifaceMthd : iface.getMethods()) {
+				Method implMthd = null;
+				try {
+					implMthd = implCls.getMethod(ifaceMthd.getName(), ifaceMthd.getParameterTypes());
+				}
+				catch(NoSuchMethodException exep) {
+					continue;
+				}
+				WarmUp warmUp = implMthd.getAnnotation(WarmUp.class);
+				if(warmUp == null) {
+					warmUp = ifaceMthd.getAnnotation(WarmUp.class);
+				}
+				if(warmUp == null || containsMethod(calls, binder, implMthd)) {
+					continue;
+				}
+				Object[][] fixtures = resolveFixtures(implCls, implMthd, warmUp);
+				if(fixtures != null) {
+					Object proxy = binder.getInstance(iface);
+					calls.add(new WarmUpCall(binder, implMthd, ifaceMthd, proxy, fixtures));
+					LOGGER.fine(String.format("warm_up_method = %s#%s", implCls.getName(),
+							implMthd.getName()));
+				}
+			}
+		}
+	}
+
+	private boolean containsMethod(List<WarmUpCall> calls, Binder binder, Method implMthd) {
+		// a method may be declared by more than one of the interfaces of the singleton
+		for(WarmUpCall call : calls) {
+			if(call.binder == binder && call.implMthd.equals(implMthd)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private Object[][] resolveFixtures(Class<?> implCls, Method implMthd, WarmUp warmUp) {
+		String name = warmUp.fixture().trim();
+		if(name.isEmpty()) {
+			if(implMthd.getParameterCount() == 0) {
+				return NO_FIXTURES;
+			}
+			LOGGER.warning(String.format("warm-up method without fixture takes parameters, method = %s",
+					implMthd));
+			return null;
+		}
+		try {
+			Method fixture = implCls.getDeclaredMethod(name);
+			if(!Modifier.isStatic(fixture.getModifiers()) || fixture.getReturnType() != Object[][].class) {
+				LOGGER.warning(String.format("warm-up fixture not static or not returning Object[][], "
+						+ "method = %s", fixture));
+				return null;
+			}
+			fixture.setAccessible(true);
+			Object[][] result = (Object[][]) fixture.invoke(null);
+			if(result == null || result.length == 0) {
+				LOGGER.warning(String.format("warm-up fixture returned no invocations, method = %s",
+						fixture));
+				return null;
+			}
+			return result;
+		}
+		catch(NoSuchMethodException exep) {
+			LOGGER.warning(String.format("warm-up fixture not found, class = %s, fixture = %s",
+					implCls.getName(), name));
+		}
+		catch(ReflectiveOperationException | RuntimeException exep) {
+			LOGGER.log(Level.WARNING, String.format("warm-up fixture failed, class = %s, fixture = %s",
+					implCls.getName(), name), exep);
+		}
+		return null;
+	}
+
+	private void drive(List<WarmUpCall> calls, int count) {
+		long done = 0;
+		for(int i = 0; i < count; i++) {
+			for(WarmUpCall call : calls) {
+				if(!call.failed && call.invoke(i)) {
+					done++;
+				}
+			}
+		}
+		invocationCount.addAndGet(done);
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+	// Inner class for a warm-up method of a singleton
+
+	private static class WarmUpCall {
+
+		private Binder           binder;
+		private Method           implMthd;
+		private Method           ifaceMthd;
+		private Object           proxy;
+		private Object[][]       fixtures;
+		private volatile boolean failed;
+
+		WarmUpCall(Binder binder, Method implMthd, Method ifaceMthd, Object proxy, Object[][] fixtures) {
+			this.binder = binder;
+			this.implMthd = implMthd;
+			this.ifaceMthd = ifaceMthd;
+			this.proxy = proxy;
+			this.fixtures = fixtures;
+		}
+
+		boolean invoke(int iteration) {
+			try {
+				Object retVal = ifaceMthd.invoke(proxy, fixtures[iteration % fixtures.length]);
+				// wait for asynchronous results, so that the warm-up does not outrun the executor
+				if(retVal instanceof Future) {
+					((Future<?>) retVal).get();
+				}
+				else if(retVal instanceof CompletionStage) {
+					((CompletionStage<?>) retVal).toCompletableFuture().get();
+				}
+				return true;
+			}
+			catch(InterruptedException exep) {
+				Thread.currentThread().interrupt();
+				failed = true;
+			}
+			catch(InvocationTargetException | ExecutionException exep) {
+				fail(exep.getCause() != null ? exep.getCause() : exep);
+			}
+			catch(ReflectiveOperationException | RuntimeException exep) {
+				fail(exep);
+			}
+			return false;
+		}
+
+		private void fail(Throwable exep) {
+			if(!failed) {
+				failed = true;
+				LOGGER.log(Level.WARNING, String.format("warm-up invocation failed, not retried, "
+						+ "method = %s#%s", binder.getImplementationClass().getName(), implMthd.getName()),
+						exep);
+			}
+		}
+	}
+}
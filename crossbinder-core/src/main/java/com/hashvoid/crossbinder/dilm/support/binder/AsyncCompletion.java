@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+
+package com.hashvoid.crossbinder.dilm.support.binder;
+
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Helpers for deferring the <tt>after</tt> and <tt>onError</tt> callbacks of methods that return a
+ * <tt>CompletionStage</tt>, until the returned stage completes.
+ *
+ * @author poroshuram
+ */
+
+final class AsyncCompletion {
+
+	private static final Logger LOGGER = Logger.getLogger(AsyncCompletion.class.getName());
+
+	private AsyncCompletion() {
+		//NOOP
+	}
+
+/**
+ * Retrieves the exception that caused a stage to complete exceptionally, as raised by the
+ * asynchronous computation rather than the wrapper added by the dependent stages.
+ * <p>
+ *
+ * @param	exep the exception with which the stage completed.
+ * @return	the underlying exception.
+ */
+
+	static Throwable unwrap(Throwable exep) {
+		Throwable result = exep;
+		while((result instanceof CompletionException || result instanceof ExecutionException)
+				&& result.getCause() != null) {
+			result = result.getCause();
+		}
+		return result;
+	}
+
+	static void callbackFailed(Object target, Throwable exep) {
+		// there is no caller to propagate the exception to once the stage has completed
+		LOGGER.log(Level.WARNING, String.format("interceptor failed on async completion, target = %s",
+				target.getClass().getName()), exep);
+	}
+}
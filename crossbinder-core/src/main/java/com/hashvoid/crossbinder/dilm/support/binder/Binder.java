@@ -25,6 +25,12 @@ public interface Binder {
 
 	String getName();
 
+/**
+ * @return	the class of the managed entity, or of the provider for provided entities.
+ */
+
+	Class<?> getImplementationClass();
+
 	Set<Class<?>> getInterfaceTypes();
 
 	Set<Dependency> getDependencies();
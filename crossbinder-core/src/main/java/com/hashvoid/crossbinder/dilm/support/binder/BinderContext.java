@@ -34,4 +34,13 @@ public interface BinderContext {
 	EventHandler getEventHandler();
 
 	List<ConfigurationProvider> getConfigurationProviders();
+
+	ProxyFactory getProxyFactory();
+
+/**
+ * @return	<tt>true</tt> if singletons and prototypes are to be handed out without proxies when no
+ * 			method interceptor applies to them, <tt>false</tt> otherwise.
+ */
+
+	boolean isProxyElision();
 }
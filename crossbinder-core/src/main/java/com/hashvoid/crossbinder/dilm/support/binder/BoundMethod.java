@@ -0,0 +1,531 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package com.hashvoid.crossbinder.dilm.support.binder;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.MutableCallSite;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.logging.Logger;
+
+import com.hashvoid.crossbinder.dilm.Async;
+import com.hashvoid.crossbinder.dilm.Batched;
+import com.hashvoid.crossbinder.dilm.CrossbinderException;
+import com.hashvoid.crossbinder.dilm.Deadline;
+import com.hashvoid.crossbinder.dilm.DeadlineExceededException;
+import com.hashvoid.crossbinder.dilm.Invocation;
+import com.hashvoid.crossbinder.dilm.support.jfr.FlightEvents;
+
+/**
+ * Binds a method declared on an interface of a managed entity to the corresponding method on the
+ * implementation class. The implementation method is resolved once, when the owning binder builds
+ * its {@link MethodTable}, so that no reflective lookups are needed when the method is invoked.
+ * At the same time, the method is unreflected into a method handle that is adapted to the shapes
+ * needed by the proxies and interceptors. Invocations on the managed entity go through these
+ * handles, rather than via {@link Method#invoke(Object, Object...)}.
+ * <p>
+ *
+ * The chain of method interceptors that apply to a bound method is assembled by the event handler,
+ * once it is ready, and is held by the bound method for the event handler to use on every
+ * invocation.
+ * Methods to which no interceptor applies are invoked on the managed entity directly.
+ * <p>
+ *
+ * Methods returning a <tt>CompletionStage</tt> are treated as asynchronous: the event handler is
+ * notified of their success or failure once the returned stage completes, without waiting for it.
+ * Other futures are treated as plain return values, since their completion cannot be observed
+ * without blocking.
+ * <p>
+ *
+ * Methods annotated with {@link Async} are handed over to the event handler, to be executed on the
+ * container executor; they are never linked directly into a proxy. Likewise, the invocations of
+ * methods annotated with {@link Batched} are handed over to a batcher once the interceptors have
+ * been run, to be aggregated into invocations of the bulk method.
+ * <p>
+ *
+ * Every path through which a proxy invokes a method first checks the {@link Deadline} of the
+ * calling thread, and fails fast if it has passed.
+ * <p>
+ *
+ * Generated proxies are linked to a call site of the bound method, rather than to a fixed handle,
+ * so that the invoker behind the proxy can be specialized to the current shape of the interceptor
+ * chain, and re-specialized whenever the chain changes. Methods whose wrapping interceptors all
+ * decide per invocation are profiled first, and only specialized to skip the wrapping when it is
+ * mostly declined.
+ * <p>
+ *
+ * While a flight recording has slow invocations enabled, the handles linked into the proxies
+ * divert to {@link #invoke(Object, Object[])}, where the execution of the method is timed and
+ * reported via {@link FlightEvents} if it exceeds the threshold of the recording.
+ * <p>
+ *
+ * @author poroshuram
+ */
+
+public class BoundMethod {
+
+	private static final Logger LOGGER = Logger.getLogger(BoundMethod.class.getName());
+
+	// invocations profiled before deciding on the specialization of a conditionally wrapped method
+	private static final int PROFILE_CALLS = 1000;
+	// percentage of the profiled invocations beyond which a method is considered to be wrapped
+	private static final int WRAPPED_PERCENT = 10;
+
+	private static final MethodHandle DISPATCH;
+	private static final MethodHandle TARGET;
+	private static final MethodHandle CHECK;
+	private static final MethodHandle RECORDING;
+	private static final MethodHandle CONDITIONAL;
+
+	static {
+		try {
+			MethodHandles.Lookup lookup = MethodHandles.lookup();
+			DISPATCH = lookup.findVirtual(BoundMethod.class, "dispatch",
+					MethodType.methodType(Object.class, ProxyTarget.class, Object[].class));
+			TARGET = lookup.findVirtual(ProxyTarget.class, "get", MethodType.methodType(Object.class));
+			CHECK = lookup.findVirtual(BoundMethod.class, "checkDeadline", MethodType.methodType(void.class));
+			RECORDING = lookup.findStatic(FlightEvents.class, "isInvocationEnabled",
+					MethodType.methodType(boolean.class));
+			CONDITIONAL = lookup.findVirtual(BoundMethod.class, "invokeConditional",
+					MethodType.methodType(Object.class, MethodHandle.class, InterceptorChain.class,
+							Object.class, Object[].class));
+		}
+		catch(NoSuchMethodException | IllegalAccessException exep) {
+			throw new CrossbinderException("unable to resolve method dispatch handles", exep);
+		}
+	}
+
+	private Method       ifaceMthd;
+	private Method       implMthd;
+	private EventHandler evtHandler;
+	private boolean      stageReturn;
+	private boolean      asyncExec;
+	private CallBatcher  batcher;
+
+	// (Object target, params...) -> return type of the method
+	private MethodHandle targetHandle;
+	// (Object target, Object[] params) -> Object
+	private MethodHandle spreadHandle;
+
+	// null until the interceptor chain is assembled by the event handler
+	private volatile InterceptorChain chain;
+
+	// null until a generated proxy is linked to this method
+	private MutableCallSite proxySite;
+	// true once profiling shows that the wrapping interceptors mostly decline
+	private boolean         conditional;
+	// racy counts of the profiled invocations, -1 while not profiling
+	private int             profileCalls = -1;
+	private int             profileWraps;
+
+	BoundMethod(Method ifaceMthd, Method implMthd, EventHandler handler) {
+		this.ifaceMthd = ifaceMthd;
+		this.implMthd = implMthd;
+		evtHandler = handler;
+		stageReturn = CompletionStage.class.isAssignableFrom(ifaceMthd.getReturnType());
+		asyncExec = implMthd.isAnnotationPresent(Async.class) || ifaceMthd.isAnnotationPresent(Async.class);
+		if(asyncExec) {
+			Class<?> retType = ifaceMthd.getReturnType();
+			if(retType != void.class && (retType == Object.class || !retType.isAssignableFrom(CompletableFuture.class))) {
+				throw new CrossbinderException("asynchronous method must return void or a future " + implMthd);
+			}
+		}
+
+		Batched batched = implMthd.getAnnotation(Batched.class);
+		if(batched == null) {
+			batched = ifaceMthd.getAnnotation(Batched.class);
+		}
+		if(batched != null) {
+			batcher = new CallBatcher(this, batched, handler);
+		}
+
+		int paramCount = ifaceMthd.getParameterCount();
+		MethodHandle handle = unreflect();
+		targetHandle = handle.asType(handle.type().changeParameterType(0, Object.class));
+		spreadHandle = targetHandle.asType(MethodType.genericMethodType(paramCount + 1))
+				.asSpreader(Object[].class, paramCount);
+	}
+
+	public Method getInterfaceMethod() {
+		return ifaceMthd;
+	}
+
+	public Method getImplementationMethod() {
+		return implMthd;
+	}
+
+/**
+ * @return	<tt>true</tt> if the method returns a <tt>CompletionStage</tt>, <tt>false</tt>
+ * 			otherwise.
+ */
+
+	public boolean returnsStage() {
+		return stageReturn;
+	}
+
+/**
+ * @return	<tt>true</tt> if the method is executed on the container executor, <tt>false</tt> if it
+ * 			is executed on the calling thread.
+ */
+
+	public boolean isExecutedAsync() {
+		return asyncExec;
+	}
+
+/**
+ * @return	the chain of method interceptors that apply to this method.
+ */
+
+	public InterceptorChain getChain() {
+		InterceptorChain result = chain;
+		return (result != null) ? result : InterceptorChain.EMPTY;
+	}
+
+/**
+ * Sets the chain of method interceptors that apply to this method, re-specializing the invoker
+ * linked into the generated proxy, if any, to the new chain. A chain with the same interceptors as
+ * the current one is ignored, so that the invoker is kept along with the code compiled against it.
+ * <p>
+ *
+ * @param	chain the chain of method interceptors.
+ */
+
+	public synchronized void setChain(InterceptorChain chain) {
+		InterceptorChain current = this.chain;
+		if(current != null && Arrays.equals(current.getInterceptors(), chain.getInterceptors())) {
+			return;
+		}
+		this.chain = chain;
+		conditional = false;
+		relink();
+	}
+
+/**
+ * @return	<tt>true</tt> if it is known that no method interceptor applies to this method,
+ * 			<tt>false</tt> otherwise.
+ */
+
+	public boolean isDirect() {
+		InterceptorChain current = chain;
+		return !asyncExec && batcher == null && current != null && current.isEmpty();
+	}
+
+/**
+ * Invokes the implementation method on the given target, as called through the proxy of the
+ * managed entity. Asynchronous methods are handed over to the event handler for execution on the
+ * container executor, others are executed on the calling thread.
+ * <p>
+ *
+ * @param	target the managed entity on which the method is to be invoked.
+ * @param	args the parameter values with which the method is being invoked.
+ * @return	the value returned by the implementation method (or by a wrapping interceptor), or the
+ * 			future of an asynchronous method.
+ * @throws	Throwable the exception raised by the implementation method.
+ */
+
+	public Object invoke(Object target, Object[] args) throws Throwable {
+		checkDeadline();
+		if(asyncExec) {
+			return evtHandler.invokeAsync(target, this, args);
+		}
+		return execute(target, args);
+	}
+
+/**
+ * Checks the deadline that applies to the current thread, before invoking this method.
+ * <p>
+ *
+ * @throws	DeadlineExceededException if the deadline has passed.
+ */
+
+	public void checkDeadline() throws DeadlineExceededException {
+		Deadline deadline = Deadline.current();
+		if(deadline != null && deadline.isExpired()) {
+			throw new DeadlineExceededException("deadline exceeded, not invoking " + this);
+		}
+	}
+
+/**
+ * Executes the implementation method on the given target on the current thread, notifying the
+ * event handler before and after the invocation. The event handler is bypassed if no interceptors
+ * apply to this method.
+ * <p>
+ *
+ * @param	target the managed entity on which the method is to be invoked.
+ * @param	args the parameter values with which the method is being invoked.
+ * @return	the value returned by the implementation method (or by a wrapping interceptor).
+ * @throws	Throwable the exception raised by the implementation method.
+ */
+
+	public Object execute(Object target, Object[] args) throws Throwable {
+		if(FlightEvents.isInvocationEnabled()) {
+			return executeRecorded(target, args);
+		}
+		return executeChain(target, args);
+	}
+
+/**
+ * Invokes the implementation method on the given target, without notifying the event handler.
+ * Exceptions raised by the implementation method are propagated as is. Invocations of batched
+ * methods are queued, and complete once the batch is executed.
+ * <p>
+ *
+ * @param	target the managed entity on which the method is to be invoked.
+ * @param	args the parameter values with which the method is being invoked.
+ * @return	the value returned by the implementation method, <tt>null</tt> for <tt>void</tt>
+ * 			methods.
+ * @throws	Throwable the exception raised by the implementation method.
+ */
+
+	public Object invokeTarget(Object target, Object[] args) throws Throwable {
+		if(batcher != null) {
+			return batcher.submit(target, args[0]);
+		}
+		return (Object) spreadHandle.invokeExact(target, args);
+	}
+
+/**
+ * Creates an invocation of this method on the given target, positioned at the start of the given
+ * interceptor chain.
+ * <p>
+ *
+ * @param	chain the interceptor chain with which the invocation started.
+ * @param	target the managed entity on which the method is to be invoked.
+ * @param	args the parameter values with which the method is being invoked.
+ * @return	the invocation, which runs through the wrapping interceptors when proceeded.
+ */
+
+	public Invocation newInvocation(InterceptorChain chain, Object target, Object[] args) {
+		return new MethodInvocation(this, chain, target, args);
+	}
+
+/**
+ * Returns the method handle to which a generated proxy links the interface method. The handle
+ * takes the proxy target followed by the method parameters, and has the exact return type of the
+ * interface method. It invokes the target of a call site that is re-specialized each time the
+ * interceptor chain of this method changes, which the JIT compiler treats as a constant until it
+ * does.
+ * <p>
+ *
+ * @return	the method handle for the generated proxy.
+ */
+
+	public synchronized MethodHandle getProxyHandle() {
+		if(proxySite == null) {
+			proxySite = new MutableCallSite(MethodType.methodType(ifaceMthd.getReturnType(),
+					ifaceMthd.getParameterTypes()).insertParameterTypes(0, ProxyTarget.class));
+			relink();
+		}
+		return proxySite.dynamicInvoker();
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+	// Methods of base class Object
+
+	@Override
+	public String toString() {
+		return implMthd.getDeclaringClass().getName() + "#" + implMthd.getName();
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+	// Helper methods
+
+	private Object dispatch(ProxyTarget target, Object[] args) throws Throwable {
+		return invoke(target.get(), args);
+	}
+
+/**
+ * Invokes the method on the given target via the wrapping interceptors of the given chain that
+ * wrap this invocation, or directly via the given invoker if none does. Bound into the specialized
+ * invoker of a method whose wrapping interceptors mostly decline, which leaves the wrapped path
+ * cold. The invoker is passed in, rather than read from a field, so that it is a constant to the
+ * JIT compiler.
+ */
+
+	private Object invokeConditional(MethodHandle invoker, InterceptorChain current, Object target,
+			Object[] args) throws Throwable {
+		int next = current.nextWrapper(-1, implMthd, target);
+		if(next < 0) {
+			return (Object) invoker.invokeExact(target, args);
+		}
+		return new MethodInvocation(this, current, target, args).proceed(next);
+	}
+
+/**
+ * Records whether an invocation through the full interceptor chain was wrapped, while this method
+ * is being profiled. The counts are not synchronized, an approximate profile being good enough.
+ */
+
+	void profile(boolean wrapped) {
+		if(profileCalls < 0) {
+			return;
+		}
+		if(wrapped) {
+			profileWraps++;
+		}
+		if(++profileCalls >= PROFILE_CALLS) {
+			adapt();
+		}
+	}
+
+	private synchronized void adapt() {
+		if(profileCalls < PROFILE_CALLS) {
+			return;
+		}
+		boolean wrapped = profileWraps * 100L > profileCalls * (long) WRAPPED_PERCENT;
+		LOGGER.fine(String.format("method_profiled = %s, calls = %d, wrapped = %d",
+				this, profileCalls, profileWraps));
+		profileCalls = -1;
+		if(!wrapped) {
+			conditional = true;
+			relink();
+		}
+	}
+
+/**
+ * Links the call site of the generated proxy, if any, to the invoker specialized to the current
+ * interceptor chain, and restarts the profiling of the method if its specialization depends on it.
+ * Must be called while holding the lock on this bound method.
+ */
+
+	private void relink() {
+		if(proxySite == null) {
+			return;
+		}
+		InterceptorChain current = chain;
+		boolean linkable = !asyncExec && batcher == null && current != null;
+		if(linkable && !conditional && current.hasWrappers() && current.isConditional()) {
+			profileWraps = 0;
+			profileCalls = 0;
+		}
+		else {
+			profileCalls = -1;
+		}
+		proxySite.setTarget(specialize(linkable ? current : null));
+		MutableCallSite.syncAll(new MutableCallSite[] {proxySite});
+	}
+
+/**
+ * Creates the invoker of the generated proxy for the given chain. If no method interceptor applies
+ * to this method, the invoker calls the method on the resolved target directly. If none of the
+ * applicable interceptors wraps the method, or the wrapping ones mostly decline, their callbacks
+ * are bound into the invoker, which allows the JIT compiler to eliminate the argument array and
+ * the boxing of primitive values where the interceptors do not retain them. Otherwise the invoker
+ * goes through {@link #invoke(Object, Object[])}, as do the specialized ones while slow
+ * invocations are being recorded.
+ */
+
+	private MethodHandle specialize(InterceptorChain current) {
+		MethodType type = proxySite.type();
+		int paramCount = ifaceMthd.getParameterCount();
+		MethodHandle dispatch = DISPATCH.bindTo(this).asCollector(Object[].class, paramCount).asType(type);
+		MethodHandle handle;
+		if(current != null && current.isEmpty()) {
+			handle = MethodHandles.foldArguments(MethodHandles.filterArguments(targetHandle, 0, TARGET),
+					CHECK.bindTo(this));
+		}
+		else if(current != null && (!current.hasWrappers() || conditional)) {
+			MethodHandle invoker = current.hasWrappers()
+					? MethodHandles.insertArguments(CONDITIONAL, 0, this, spreadHandle, current) : spreadHandle;
+			handle = MethodHandles.filterArguments(current.bind(implMthd, invoker, stageReturn), 0, TARGET)
+					.asCollector(Object[].class, paramCount);
+			handle = MethodHandles.foldArguments(handle, CHECK.bindTo(this));
+		}
+		else {
+			return dispatch;
+		}
+		return MethodHandles.guardWithTest(RECORDING, dispatch, handle.asType(type));
+	}
+
+	private Object executeChain(Object target, Object[] args) throws Throwable {
+		InterceptorChain current = chain;
+		if(current == null || current.isEmpty()) {
+			return invokeTarget(target, args);
+		}
+		long sampled = current.sample();
+		long start = current.startTime();
+		evtHandler.beforeMethod(target, this, current, args, sampled);
+		Object retVal = null;
+		try {
+			retVal = evtHandler.wrapMethod(target, this, current, args);
+		}
+		catch(Throwable exep) {
+			evtHandler.afterMethodFail(target, this, current, exep, sampled);
+			current.sampleTail(sampled, start, implMthd, target, args, null, exep);
+			throw exep;
+		}
+		if(stageReturn && retVal != null) {
+			((CompletionStage<?>) retVal).whenComplete(
+					(result, exep) -> complete(current, sampled, start, target, args, result, exep));
+			return retVal;
+		}
+		evtHandler.afterMethodSuccess(target, this, current, retVal, sampled);
+		current.sampleTail(sampled, start, implMthd, target, args, retVal, null);
+		return retVal;
+	}
+
+	private Object executeRecorded(Object target, Object[] args) throws Throwable {
+		Object event = FlightEvents.beginInvocation();
+		boolean failed = true;
+		try {
+			Object retVal = executeChain(target, args);
+			failed = false;
+			return retVal;
+		}
+		finally {
+			FlightEvents.commitInvocation(event, target.getClass(), implMthd, failed);
+		}
+	}
+
+	private void complete(InterceptorChain current, long sampled, long start, Object target, Object[] args,
+			Object result, Throwable exep) {
+		try {
+			if(exep != null) {
+				Throwable cause = AsyncCompletion.unwrap(exep);
+				evtHandler.afterMethodFail(target, this, current, cause, sampled);
+				current.sampleTail(sampled, start, implMthd, target, args, null, cause);
+			}
+			else {
+				evtHandler.afterMethodSuccess(target, this, current, result, sampled);
+				current.sampleTail(sampled, start, implMthd, target, args, result, null);
+			}
+		}
+		catch(RuntimeException cbExep) {
+			AsyncCompletion.callbackFailed(target, cbExep);
+		}
+	}
+
+	private MethodHandle unreflect() {
+		// prefer the implementation method, so that the call binds to the implementation class
+		try {
+			implMthd.setAccessible(true);
+			return MethodHandles.lookup().unreflect(implMthd);
+		}
+		catch(IllegalAccessException | RuntimeException exep) {
+			LOGGER.fine(String.format("implementation method not accessible %s (%s)", implMthd, exep));
+		}
+		try {
+			return MethodHandles.publicLookup().unreflect(ifaceMthd);
+		}
+		catch(IllegalAccessException exep) {
+			throw new CrossbinderException("unable to access method " + ifaceMthd, exep);
+		}
+	}
+}
@@ -0,0 +1,262 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package com.hashvoid.crossbinder.dilm.support.binder;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import com.hashvoid.crossbinder.dilm.Batched;
+import com.hashvoid.crossbinder.dilm.CrossbinderException;
+
+/**
+ * Aggregates the invocations of a {@link Batched} method into invocations of its bulk method.
+ * Calls are queued on a lock-free queue; the call that fills a batch, or the first call of a
+ * batch, schedules a flush on the container executor, right away or after the batch window
+ * respectively. A flush drains the queue in batches of up to the maximum size, so that calls
+ * queued while a flush is in progress are never left behind.
+ *
+ * @author poroshuram
+ */
+
+class CallBatcher {
+
+	private static final Logger LOGGER = Logger.getLogger(CallBatcher.class.getName());
+
+	private BoundMethod                  method;
+	private EventHandler                 evtHandler;
+	private int                          maxSize;
+	private long                         window;
+	private boolean                      futureReturn;
+
+	// (Object target, Object keys) -> Object
+	private MethodHandle                 bulkHandle;
+
+	private ConcurrentLinkedQueue<Call>  queue;
+	private AtomicInteger                pending;
+
+	CallBatcher(BoundMethod method, Batched batched, EventHandler handler) {
+		this.method = method;
+		evtHandler = handler;
+		maxSize = batched.maxSize();
+		window = batched.window();
+		if(maxSize < 1 || window < 0) {
+			throw new CrossbinderException("invalid batch size or window on " + method);
+		}
+
+		Method itemMthd = method.getInterfaceMethod();
+		if(itemMthd.getParameterCount() != 1) {
+			throw new CrossbinderException("batched method must take exactly one parameter " + itemMthd);
+		}
+		Class<?> retType = itemMthd.getReturnType();
+		if(retType == void.class) {
+			throw new CrossbinderException("batched method must return a value " + itemMthd);
+		}
+		futureReturn = retType != Object.class && retType.isAssignableFrom(CompletableFuture.class);
+		bulkHandle = findBulkMethod(method.getImplementationMethod().getDeclaringClass(), batched.bulkMethod());
+
+		queue = new ConcurrentLinkedQueue<>();
+		pending = new AtomicInteger();
+	}
+
+/**
+ * Queues a call to be executed as part of a batch.
+ * <p>
+ *
+ * @param	target the managed entity on which the method is invoked.
+ * @param	key the parameter value of the call.
+ * @return	the future of the result for methods returning a future, otherwise the result itself,
+ * 			once available.
+ * @throws	Throwable the exception raised by the bulk method.
+ */
+
+	Object submit(Object target, Object key) throws Throwable {
+		Call call = new Call(target, key);
+		queue.offer(call);
+		int count = pending.incrementAndGet();
+		if(count % maxSize == 0) {
+			schedule(0);
+		}
+		else if(count == 1) {
+			schedule(window);
+		}
+		if(futureReturn) {
+			return call.result;
+		}
+		try {
+			return call.result.join();
+		}
+		catch(CompletionException exep) {
+			throw exep.getCause();
+		}
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+	// Helper methods
+
+	private void schedule(long delay) {
+		try {
+			evtHandler.schedule(this::flush, delay);
+		}
+		catch(CrossbinderException exep) {
+			// the container executor is not running, execute on the calling thread
+			flush();
+		}
+	}
+
+	private void flush() {
+		List<Call> batch = new ArrayList<>();
+		Call call;
+		while((call = queue.poll()) != null) {
+			pending.decrementAndGet();
+			batch.add(call);
+			if(batch.size() == maxSize) {
+				dispatch(batch);
+				batch = new ArrayList<>();
+			}
+		}
+		if(!batch.isEmpty()) {
+			dispatch(batch);
+		}
+	}
+
+	private void dispatch(List<Call> batch) {
+		Object target = batch.get(0).target;
+		boolean sameTarget = true;
+		for(Call call : batch) {
+			sameTarget &= (call.target == target);
+		}
+		if(sameTarget) {
+			invokeBulk(target, batch);
+			return;
+		}
+		Map<Object, List<Call>> groups = new IdentityHashMap<>();
+		for(Call call : batch) {
+			groups.computeIfAbsent(call.target, tgt -> new ArrayList<>()).add(call);
+		}
+		for(Map.Entry<Object, List<Call>> entry : groups.entrySet()) {
+			invokeBulk(entry.getKey(), entry.getValue());
+		}
+	}
+
+	private void invokeBulk(Object target, List<Call> calls) {
+		List<Object> keys = new ArrayList<>(calls.size());
+		for(Call call : calls) {
+			keys.add(call.key);
+		}
+		LOGGER.fine(String.format("batched_method = %s, batch_size = %d", method, keys.size()));
+		Object result;
+		try {
+			result = (Object) bulkHandle.invokeExact(target, (Object) keys);
+		}
+		catch(Throwable exep) {
+			fail(calls, exep);
+			return;
+		}
+		if(result instanceof CompletionStage) {
+			((CompletionStage<?>) result).whenComplete((value, exep) -> {
+				if(exep != null) {
+					fail(calls, AsyncCompletion.unwrap(exep));
+				}
+				else {
+					distribute(calls, value);
+				}
+			});
+			return;
+		}
+		distribute(calls, result);
+	}
+
+	private void distribute(List<Call> calls, Object result) {
+		if(result instanceof Map) {
+			Map<?, ?> values = (Map<?, ?>) result;
+			for(Call call : calls) {
+				call.result.complete(values.get(call.key));
+			}
+		}
+		else if(result instanceof List && ((List<?>) result).size() == calls.size()) {
+			List<?> values = (List<?>) result;
+			for(int i = 0; i < calls.size(); i++) {
+				calls.get(i).result.complete(values.get(i));
+			}
+		}
+		else {
+			fail(calls, new CrossbinderException(String.format(
+					"bulk method of %s returned %s for %d parameter values", method,
+					(result == null) ? "null" : result.getClass().getName(), calls.size())));
+		}
+	}
+
+	private static void fail(List<Call> calls, Throwable exep) {
+		for(Call call : calls) {
+			call.result.completeExceptionally(exep);
+		}
+	}
+
+	private static MethodHandle findBulkMethod(Class<?> implCls, String name) {
+		for(Class<?> cls = implCls; cls != null && cls != Object.class; cls = cls.getSuperclass()) {
+			for(Method bulkMthd : cls.getDeclaredMethods()) {
+				if(!bulkMthd.getName().equals(name) || bulkMthd.getParameterCount() != 1
+						|| Modifier.isStatic(bulkMthd.getModifiers())) {
+					continue;
+				}
+				Class<?> paramType = bulkMthd.getParameterTypes()[0];
+				if(!paramType.isAssignableFrom(ArrayList.class) || !Collection.class.isAssignableFrom(paramType)) {
+					continue;
+				}
+				try {
+					bulkMthd.setAccessible(true);
+					MethodHandle handle = MethodHandles.lookup().unreflect(bulkMthd);
+					return handle.asType(MethodType.genericMethodType(2));
+				}
+				catch(IllegalAccessException | RuntimeException exep) {
+					throw new CrossbinderException("unable to access bulk method " + bulkMthd, exep);
+				}
+			}
+		}
+		throw new CrossbinderException(String.format("bulk method %s(List) not found on %s",
+				name, implCls.getName()));
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+	// Inner class for a queued call
+
+	private static final class Call {
+
+		private Object                    target;
+		private Object                    key;
+		private CompletableFuture<Object> result;
+
+		Call(Object target, Object key) {
+			this.target = target;
+			this.key = key;
+			result = new CompletableFuture<>();
+		}
+	}
+}
@@ -14,7 +14,7 @@
 
 package com.hashvoid.crossbinder.dilm.support.binder;
 
-import java.lang.reflect.Method;
+import com.hashvoid.crossbinder.dilm.CrossbinderException;
 
 /**
  * @author poroshuram
@@ -33,11 +33,57 @@ public interface EventHandler {
 
 	void instanceDisposed(Object inst);
 
-	void beforeMethod(Object inst, Method method, Object[] args);
+	void methodTableCreated(MethodTable table);
 
-	Object wrapMethod(Object inst, Method method, Object[] args) throws Throwable;
+/**
+ * Notifies the method interceptors of the given chain before a method is invoked. The chain is
+ * the one with which the invocation started, and is passed to every callback of the invocation,
+ * so that it completes with the same interceptors even if the chain of the method is replaced
+ * meanwhile.
+ * <p>
+ *
+ * @param	inst the managed entity on which the method is invoked.
+ * @param	method the method being invoked.
+ * @param	chain the interceptor chain with which the invocation started.
+ * @param	args the parameter values with which the method is being invoked.
+ * @param	sampled the interceptors of the chain that sampled the invocation.
+ */
+
+	void beforeMethod(Object inst, BoundMethod method, InterceptorChain chain, Object[] args,
+			long sampled);
 
-	void afterMethodSuccess(Object inst, Method method, Object result);
+	Object wrapMethod(Object inst, BoundMethod method, InterceptorChain chain, Object[] args)
+			throws Throwable;
+
+	void afterMethodSuccess(Object inst, BoundMethod method, InterceptorChain chain, Object result,
+			long sampled);
+
+	void afterMethodFail(Object inst, BoundMethod method, InterceptorChain chain, Throwable error,
+			long sampled);
+
+/**
+ * Executes an asynchronous method on the executor managed by the container. The invocation,
+ * including its interception, takes place via {@link BoundMethod#execute(Object, Object[])} on the
+ * executor thread, under the deadline of the calling thread, if any.
+ * <p>
+ *
+ * @param	inst the managed entity on which the method is to be invoked.
+ * @param	method the asynchronous method.
+ * @param	args the parameter values with which the method is being invoked.
+ * @return	the future that completes with the outcome of the invocation, <tt>null</tt> for
+ * 			<tt>void</tt> methods.
+ */
+
+	Object invokeAsync(Object inst, BoundMethod method, Object[] args);
+
+/**
+ * Executes a task on the executor managed by the container, after a delay.
+ * <p>
+ *
+ * @param	task the task to be executed.
+ * @param	delay the delay in milliseconds, zero to execute the task right away.
+ * @throws	CrossbinderException if the container executor is not running.
+ */
 
-	void afterMethodFail(Object inst, Method method, Throwable error);
+	void schedule(Runnable task, long delay) throws CrossbinderException;
 }
@@ -0,0 +1,434 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+
+package com.hashvoid.crossbinder.dilm.support.binder;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ThreadLocalRandom;
+
+import com.hashvoid.crossbinder.dilm.CrossbinderException;
+import com.hashvoid.crossbinder.dilm.MethodInterceptor;
+import com.hashvoid.crossbinder.dilm.Pointcut.Wrapping;
+
+/**
+ * The method interceptors that apply to a bound method, as assembled by the event handler. All the
+ * interceptors receive the <tt>before</tt>, <tt>after</tt> and <tt>onError</tt> callbacks, in the
+ * order of the chain. The ones that may wrap the method are additionally held as a separate array,
+ * which is walked by the {@link MethodInvocation} each time an interceptor proceeds. Interceptors
+ * that wrap the method unconditionally are not asked if they wrap a given invocation.
+ * <p>
+ *
+ * Interceptors with a {@link SamplingPolicy} only receive their callbacks for the invocations they
+ * sample. The decision is made once per invocation, as a mask with one bit per position in the
+ * chain, which is handed to every callback of that invocation. Interceptors beyond the 64th
+ * position are never sampled out.
+ * <p>
+ *
+ * A chain is immutable once assembled. Changes to the interceptors result in a new chain, which
+ * replaces the previous one on the bound method.
+ *
+ * @author poroshuram
+ */
+
+public class InterceptorChain {
+
+	public static final InterceptorChain EMPTY =
+			new InterceptorChain(new MethodInterceptor[0], new Wrapping[0]);
+
+	// the mask of an invocation for which all interceptors are sampled
+	public static final long ALL_SAMPLED = -1L;
+
+	private static final MethodHandle BEFORE;
+	private static final MethodHandle AFTER;
+	private static final MethodHandle ON_ERROR;
+	private static final MethodHandle CALL;
+	private static final MethodHandle CALL_ASYNC;
+	private static final MethodHandle SAMPLED;
+	private static final MethodHandle KEEP_TAIL;
+	private static final MethodHandle SAMPLE;
+	private static final MethodHandle NANO_TIME;
+	private static final MethodHandle NOOP;
+
+	static {
+		try {
+			MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+			BEFORE = lookup.findVirtual(MethodInterceptor.class, "before",
+					MethodType.methodType(void.class, Method.class, Object.class, Object[].class));
+			AFTER = lookup.findVirtual(MethodInterceptor.class, "after",
+					MethodType.methodType(void.class, Method.class, Object.class, Object.class));
+			ON_ERROR = lookup.findVirtual(MethodInterceptor.class, "onError",
+					MethodType.methodType(void.class, Method.class, Object.class, Throwable.class));
+			MethodType callType = MethodType.methodType(Object.class, MethodHandle.class, MethodHandle.class,
+					MethodHandle.class, MethodHandle.class, MethodHandle.class, MethodHandle.class,
+					MethodHandle.class, Object.class, Object[].class);
+			CALL = MethodHandles.lookup().findStatic(InterceptorChain.class, "call", callType);
+			CALL_ASYNC = MethodHandles.lookup().findStatic(InterceptorChain.class, "callAsync", callType);
+			SAMPLED = MethodHandles.lookup().findStatic(InterceptorChain.class, "isSampled",
+					MethodType.methodType(boolean.class, long.class, int.class));
+			KEEP_TAIL = MethodHandles.lookup().findVirtual(InterceptorChain.class, "keepTail",
+					MethodType.methodType(void.class, Method.class, long.class, long.class, Object.class,
+							Object[].class, Object.class, Throwable.class));
+			SAMPLE = MethodHandles.lookup().findVirtual(InterceptorChain.class, "sample",
+					MethodType.methodType(long.class));
+			NANO_TIME = MethodHandles.lookup().findStatic(System.class, "nanoTime",
+					MethodType.methodType(long.class));
+			NOOP = MethodHandles.lookup().findStatic(InterceptorChain.class, "noop",
+					MethodType.methodType(void.class));
+		}
+		catch(NoSuchMethodException | IllegalAccessException exep) {
+			throw new CrossbinderException("unable to resolve method interceptor handles", exep);
+		}
+	}
+
+	private MethodInterceptor[] interceptors;
+	private MethodInterceptor[] wrappers;
+	private boolean[]           conditional;
+	// null if none of the interceptors is sampled
+	private SamplingPolicy[]    sampling;
+	private boolean             tail;
+	private boolean             timed;
+
+	public InterceptorChain(MethodInterceptor[] interceptors, Wrapping[] wrapping) {
+		this(interceptors, wrapping, new SamplingPolicy[interceptors.length]);
+	}
+
+/**
+ * @param	interceptors the method interceptors, in the order of invocation.
+ * @param	wrapping the wrapping behavior of each interceptor.
+ * @param	sampling the sampling policy of each interceptor, <tt>null</tt> for those that see
+ * 			every invocation.
+ */
+
+	public InterceptorChain(MethodInterceptor[] interceptors, Wrapping[] wrapping, SamplingPolicy[] sampling) {
+		this.interceptors = interceptors;
+		for(int i = 0; i < sampling.length && i < Long.SIZE; i++) {
+			if(sampling[i] != null) {
+				this.sampling = sampling;
+				tail |= sampling[i].hasTail();
+				timed |= sampling[i].isTimed();
+			}
+		}
+
+		int count = 0;
+		for(Wrapping entry : wrapping) {
+			if(entry != Wrapping.NEVER) {
+				count++;
+			}
+		}
+		wrappers = new MethodInterceptor[count];
+		conditional = new boolean[count];
+		count = 0;
+		for(int i = 0; i < interceptors.length; i++) {
+			if(wrapping[i] != Wrapping.NEVER) {
+				wrappers[count] = interceptors[i];
+				conditional[count] = (wrapping[i] == Wrapping.DYNAMIC);
+				count++;
+			}
+		}
+	}
+
+/**
+ * @return	the method interceptors in this chain, in the order of invocation.
+ */
+
+	public MethodInterceptor[] getInterceptors() {
+		return interceptors;
+	}
+
+	public boolean isEmpty() {
+		return interceptors.length == 0;
+	}
+
+	public boolean hasWrappers() {
+		return wrappers.length > 0;
+	}
+
+/**
+ * @return	<tt>true</tt> if every wrapping interceptor in this chain decides per invocation whether
+ * 			it wraps, <tt>false</tt> if any wraps unconditionally.
+ */
+
+	public boolean isConditional() {
+		for(boolean entry : conditional) {
+			if(!entry) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+/**
+ * Decides which of the interceptors in this chain are sampled for an invocation about to start.
+ * <p>
+ *
+ * @return	the mask of the sampled positions in this chain, {@link #ALL_SAMPLED} if all are.
+ */
+
+	public long sample() {
+		SamplingPolicy[] policies = sampling;
+		if(policies == null) {
+			return ALL_SAMPLED;
+		}
+		// a single draw per invocation, shared by all the policies
+		int random = ThreadLocalRandom.current().nextInt();
+		long result = ALL_SAMPLED;
+		for(int i = 0; i < policies.length && i < Long.SIZE; i++) {
+			if(policies[i] != null && !policies[i].sample(random)) {
+				result &= ~(1L << i);
+			}
+		}
+		return result;
+	}
+
+/**
+ * @return	the start time of an invocation about to start, if needed to decide on keeping it
+ * 			once it completes, 0 otherwise.
+ */
+
+	public long startTime() {
+		return timed ? System.nanoTime() : 0;
+	}
+
+/**
+ * Checks to see if the interceptor at the given position is sampled for an invocation.
+ * <p>
+ *
+ * @param	sampled the mask of the invocation, as returned by {@link #sample()}.
+ * @param	position the position of the interceptor in this chain.
+ * @return	<tt>true</tt> if the callbacks of the interceptor are to be called, <tt>false</tt>
+ * 			otherwise.
+ */
+
+	public static boolean isSampled(long sampled, int position) {
+		return position >= Long.SIZE || (sampled & (1L << position)) != 0;
+	}
+
+/**
+ * Passes a completed invocation on to the interceptors that did not sample it, but whose policy
+ * keeps it after all for being slow or failed. Each of them receives the <tt>before</tt> callback,
+ * followed by <tt>after</tt> or <tt>onError</tt>.
+ * <p>
+ *
+ * @param	sampled the mask of the invocation, as returned by {@link #sample()}.
+ * @param	start the start time of the invocation, as returned by {@link #startTime()}.
+ * @param	method the method being invoked, as passed to the interceptors.
+ * @param	target the managed entity on which the method was invoked.
+ * @param	args the parameter values with which the method was invoked.
+ * @param	retVal the value returned by the method.
+ * @param	error the exception raised by the method, <tt>null</tt> if none.
+ */
+
+	public void sampleTail(long sampled, long start, Method method, Object target, Object[] args,
+			Object retVal, Throwable error) {
+		if(sampled == ALL_SAMPLED || !tail) {
+			return;
+		}
+		keepTail(method, sampled, start, target, args, retVal, error);
+	}
+
+/**
+ * Combines the callbacks of the interceptors in this chain with the given invoker of a method,
+ * into a single method handle. The interceptors are bound into the handle as constants, so that
+ * the callbacks can be inlined into the calling proxy and the argument array and boxed values
+ * need not be allocated if the interceptors do not retain them. The callbacks of sampled
+ * interceptors are guarded by their bit in the mask of the invocation. Only applicable to chains
+ * without wrapping interceptors.
+ * <p>
+ *
+ * @param	method the method being invoked, as passed to the interceptors.
+ * @param	invoker the method handle of type <tt>(Object, Object[])Object</tt> that invokes the
+ * 			method on the target.
+ * @param	async <tt>true</tt> if the method returns a <tt>CompletionStage</tt>, in which case the
+ * 			<tt>after</tt> and <tt>onError</tt> callbacks are deferred until the stage completes.
+ * @return	the method handle of the same type as the invoker, that also calls the interceptors.
+ */
+
+	MethodHandle bind(Method method, MethodHandle invoker, boolean async) {
+		// (long sampled, Object target, Object[] args) -> void, calling before()
+		MethodHandle before = noop(long.class, Object.class, Object[].class);
+		// (long sampled, Object target, Object retVal) -> void, calling after()
+		MethodHandle after = noop(long.class, Object.class, Object.class);
+		// (long sampled, Object target, Throwable error) -> void, calling onError()
+		MethodHandle error = noop(long.class, Object.class, Throwable.class);
+
+		// fold in reverse, so that the first interceptor is called first
+		for(int i = interceptors.length - 1; i >= 0; i--) {
+			before = MethodHandles.foldArguments(before,
+					callback(MethodHandles.insertArguments(BEFORE, 0, interceptors[i], method), i));
+			after = MethodHandles.foldArguments(after,
+					callback(MethodHandles.insertArguments(AFTER, 0, interceptors[i], method), i));
+			error = MethodHandles.foldArguments(error,
+					callback(MethodHandles.insertArguments(ON_ERROR, 0, interceptors[i], method), i));
+		}
+
+		// constant unless needed, so that chains without sampling pay nothing for it
+		// () -> long, the mask of the invocation
+		MethodHandle sample = MethodHandles.constant(long.class, ALL_SAMPLED);
+		if(sampling != null) {
+			sample = SAMPLE.bindTo(this);
+		}
+		// () -> long, the start time of the invocation
+		MethodHandle clock = timed ? NANO_TIME : MethodHandles.constant(long.class, 0L);
+		// (long sampled, long start, Object target, Object[] args, Object retVal, Throwable error) -> void,
+		// empty unless needed, so that the arguments need not escape into it
+		MethodHandle keep = noop(long.class, long.class, Object.class, Object[].class, Object.class,
+				Throwable.class);
+		if(tail) {
+			keep = MethodHandles.insertArguments(KEEP_TAIL, 0, this, method);
+		}
+
+		return MethodHandles.insertArguments(async ? CALL_ASYNC : CALL, 0, invoker, sample, clock, before,
+				after, error, keep);
+	}
+
+/**
+ * Finds the next interceptor in this chain that wraps the given invocation.
+ * <p>
+ *
+ * @param	from the position in the chain after which to look for a wrapping interceptor.
+ * @param	method the method being invoked.
+ * @param	target the managed entity on which the method is being invoked.
+ * @return	the position of the wrapping interceptor, or -1 if there are no more wrapping
+ * 			interceptors.
+ */
+
+	int nextWrapper(int from, Method method, Object target) {
+		for(int i = from + 1; i < wrappers.length; i++) {
+			if(!conditional[i] || wrappers[i].isWrapped(method, target)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	MethodInterceptor getWrapper(int position) {
+		return wrappers[position];
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+	// Helper methods
+
+/**
+ * Creates a handle that takes arguments of the given types and does nothing, for lack of
+ * <tt>MethodHandles.empty</tt> on Java 8.
+ */
+
+	private static MethodHandle noop(Class<?>... paramTypes) {
+		return MethodHandles.dropArguments(NOOP, 0, paramTypes);
+	}
+
+	private static void noop() {
+		// NOOP
+	}
+
+/**
+ * Adapts the given callback of the interceptor at the given position to take the mask of the
+ * invocation, guarding it by the bit of the interceptor if sampled.
+ */
+
+	private MethodHandle callback(MethodHandle handle, int position) {
+		MethodHandle result = MethodHandles.dropArguments(handle, 0, long.class);
+		if(sampling == null || position >= Long.SIZE || sampling[position] == null) {
+			return result;
+		}
+		MethodHandle test = MethodHandles.insertArguments(SAMPLED, 1, position);
+		return MethodHandles.guardWithTest(test, result, noop(result.type().parameterArray()));
+	}
+
+	private void keepTail(Method method, long sampled, long start, Object target, Object[] args,
+			Object retVal, Throwable error) {
+		if(sampled == ALL_SAMPLED) {
+			return;
+		}
+		long elapsed = timed ? System.nanoTime() - start : 0;
+		for(int i = 0; i < interceptors.length && i < Long.SIZE; i++) {
+			if(sampling[i] == null || isSampled(sampled, i) || !sampling[i].keep(elapsed, error != null)) {
+				continue;
+			}
+			interceptors[i].before(method, target, args);
+			if(error != null) {
+				interceptors[i].onError(method, target, error);
+			}
+			else {
+				interceptors[i].after(method, target, retVal);
+			}
+		}
+	}
+
+	private static Object call(MethodHandle invoker, MethodHandle sample, MethodHandle clock,
+			MethodHandle before, MethodHandle after, MethodHandle error, MethodHandle keep, Object target,
+			Object[] args) throws Throwable {
+		long sampled = (long) sample.invokeExact();
+		long start = (long) clock.invokeExact();
+		before.invokeExact(sampled, target, args);
+		// unlike MethodHandles.catchException, keeps the arguments from escaping into the handler
+		Object retVal = null;
+		try {
+			retVal = (Object) invoker.invokeExact(target, args);
+		}
+		catch(Throwable exep) {
+			error.invokeExact(sampled, target, exep);
+			keep.invokeExact(sampled, start, target, args, (Object) null, exep);
+			throw exep;
+		}
+		after.invokeExact(sampled, target, retVal);
+		keep.invokeExact(sampled, start, target, args, retVal, (Throwable) null);
+		return retVal;
+	}
+
+	private static Object callAsync(MethodHandle invoker, MethodHandle sample, MethodHandle clock,
+			MethodHandle before, MethodHandle after, MethodHandle error, MethodHandle keep, Object target,
+			Object[] args) throws Throwable {
+		long sampled = (long) sample.invokeExact();
+		long start = (long) clock.invokeExact();
+		before.invokeExact(sampled, target, args);
+		Object retVal = null;
+		try {
+			retVal = (Object) invoker.invokeExact(target, args);
+		}
+		catch(Throwable exep) {
+			error.invokeExact(sampled, target, exep);
+			keep.invokeExact(sampled, start, target, args, (Object) null, exep);
+			throw exep;
+		}
+		if(retVal == null) {
+			after.invokeExact(sampled, target, retVal);
+			keep.invokeExact(sampled, start, target, args, (Object) null, (Throwable) null);
+			return retVal;
+		}
+		((CompletionStage<?>) retVal).whenComplete((result, exep) -> {
+			try {
+				if(exep != null) {
+					Throwable cause = AsyncCompletion.unwrap(exep);
+					error.invokeExact(sampled, target, cause);
+					keep.invokeExact(sampled, start, target, args, (Object) null, cause);
+				}
+				else {
+					after.invokeExact(sampled, target, (Object) result);
+					keep.invokeExact(sampled, start, target, args, (Object) result, (Throwable) null);
+				}
+			}
+			catch(Throwable cbExep) {
+				AsyncCompletion.callbackFailed(target, cbExep);
+			}
+		});
+		return retVal;
+	}
+}
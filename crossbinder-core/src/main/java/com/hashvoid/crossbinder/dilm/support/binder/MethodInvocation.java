@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package com.hashvoid.crossbinder.dilm.support.binder;
+
+import java.lang.reflect.Method;
+
+import com.hashvoid.crossbinder.dilm.Invocation;
+
+/**
+ * Invocation of a bound method on a managed entity. Each time it is proceeded, the invocation is
+ * handed over to the next wrapping interceptor in the chain of the method, or when there are no
+ * more, the implementation method is executed via its method handle. The position in the chain is
+ * restored once the call returns, so that an interceptor may proceed more than once. Forked
+ * invocations have their own position and parameter values, and share nothing else that changes.
+ *
+ * @author poroshuram
+ */
+
+class MethodInvocation implements Invocation {
+
+	private static final Object[] NO_ARGS = new Object[0];
+
+	private BoundMethod      method;
+	private InterceptorChain chain;
+	private Object           target;
+	private Object[]         args;
+	private int              position;
+
+	MethodInvocation(BoundMethod method, InterceptorChain chain, Object target, Object[] args) {
+		this.method = method;
+		this.chain = chain;
+		this.target = target;
+		this.args = (args != null) ? args : NO_ARGS;
+		position = -1;
+	}
+
+/**
+ * Hands this invocation over to the wrapping interceptor at the given position in the chain, which
+ * is known to wrap it.
+ */
+
+	Object proceed(int next) throws Throwable {
+		int current = position;
+		position = next;
+		try {
+			return chain.getWrapper(next).wrap(this);
+		}
+		finally {
+			position = current;
+		}
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+	// Methods of interface Invocation
+
+	@Override
+	public Method getMethod() {
+		return method.getImplementationMethod();
+	}
+
+	@Override
+	public Object getTarget() {
+		return target;
+	}
+
+	@Override
+	public Object[] getArguments() {
+		return args;
+	}
+
+	@Override
+	public Object proceed() throws Throwable {
+		int next = chain.nextWrapper(position, method.getImplementationMethod(), target);
+		if(position < 0) {
+			method.profile(next >= 0);
+		}
+		if(next < 0) {
+			return method.invokeTarget(target, args);
+		}
+		return proceed(next);
+	}
+
+	@Override
+	public Invocation fork() {
+		MethodInvocation result = new MethodInvocation(method, chain, target, args.clone());
+		result.position = position;
+		return result;
+	}
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package com.hashvoid.crossbinder.dilm.support.binder;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import com.hashvoid.crossbinder.dilm.CrossbinderException;
+
+/**
+ * Dispatch table of a binder, mapping each method that can be invoked through the proxy of a
+ * managed entity to its {@link BoundMethod}. The table is built once, when the binder is started,
+ * and is read-only thereafter.
+ * <p>
+ *
+ * @author poroshuram
+ */
+
+public class MethodTable {
+
+	private static final Logger LOGGER = Logger.getLogger(MethodTable.class.getName());
+
+	private static final String[] OBJECT_METHODS = {"hashCode", "equals", "toString"};
+
+	private Class<?>                 implCls;
+	private Class<?>[]               interfaces;
+	private EventHandler             evtHandler;
+	private Map<Method, BoundMethod> methods;
+
+	// true while the managed entity is being handed out without a proxy
+	private volatile boolean elided;
+
+/**
+ * @param	implCls the implementation class of the managed entity.
+ * @param	ifaces the interfaces through which the managed entity is being proxied.
+ * @param	handler the event handler to be notified on every method invocation.
+ */
+
+	public MethodTable(Class<?> implCls, Collection<Class<?>> ifaces, EventHandler handler) {
+		this.implCls = implCls;
+		interfaces = ifaces.toArray(new Class<?>[ifaces.size()]);
+		evtHandler = handler;
+		Map<Method, BoundMethod> table = new HashMap<>();
+		for(Class<?> iface : ifaces) {
+			for(Method method : iface.getMethods()) {
+				if(Modifier.isStatic(method.getModifiers())) {
+					continue;
+				}
+				table.put(method, bind(method));
+			}
+		}
+		for(String name : OBJECT_METHODS) {
+			Method method = (name.equals("equals"))
+					? lookup(Object.class, name, Object.class) : lookup(Object.class, name);
+			table.put(method, bind(method));
+		}
+		methods = Collections.unmodifiableMap(table);
+		evtHandler.methodTableCreated(this);
+	}
+
+	public Class<?> getImplementationClass() {
+		return implCls;
+	}
+
+	public Class<?>[] getInterfaces() {
+		return interfaces.clone();
+	}
+
+/**
+ * Retrieves the bound method for a method invoked through the proxy of the managed entity.
+ * <p>
+ *
+ * @param	method the method that is being invoked on the proxy.
+ * @return	the bound method.
+ */
+
+	public BoundMethod get(Method method) {
+		BoundMethod result = methods.get(method);
+		if(result == null) {
+			LOGGER.fine(String.format("method not in dispatch table %s, class = %s",
+					method, implCls.getName()));
+			result = bind(method);
+		}
+		return result;
+	}
+
+/**
+ * Checks to see if the methods of the managed entity can be invoked without going through its
+ * proxy, which is the case when it is known that no method interceptor applies to any of them.
+ * <p>
+ *
+ * @return	<tt>true</tt> if none of the methods are intercepted, <tt>false</tt> if any method is
+ * 			intercepted or if the interceptors are yet to be determined.
+ */
+
+	public boolean isDirect() {
+		for(BoundMethod method : methods.values()) {
+			if(!method.isDirect()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+/**
+ * @return	<tt>true</tt> if the managed entity is being handed out without a proxy, <tt>false</tt>
+ * 			otherwise.
+ */
+
+	public boolean isElided() {
+		return elided;
+	}
+
+/**
+ * Marks the managed entity as being handed out without a proxy, or no longer so once method
+ * interceptors apply to it.
+ * <p>
+ *
+ * @param	flag <tt>true</tt> if the proxy is elided, <tt>false</tt> otherwise.
+ */
+
+	public void setElided(boolean flag) {
+		elided = flag;
+	}
+
+	public Collection<BoundMethod> getMethods() {
+		return methods.values();
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+	// Helper methods
+
+	private BoundMethod bind(Method method) {
+		Method implMthd = lookup(implCls, method.getName(), method.getParameterTypes());
+		return new BoundMethod(method, implMthd, evtHandler);
+	}
+
+	private static Method lookup(Class<?> cls, String name, Class<?>... paramTypes) {
+		try {
+			return cls.getMethod(name, paramTypes);
+		}
+		catch(NoSuchMethodException exep) {
+			throw new CrossbinderException("unable to resolve method " + name + " on " + cls.getName(), exep);
+		}
+	}
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package com.hashvoid.crossbinder.dilm.support.binder;
+
+/**
+ * Creates the proxies through which managed entities are handed out to the calling scope.
+ *
+ * @author poroshuram
+ */
+
+public interface ProxyFactory {
+
+/**
+ * Creates a proxy implementing all interfaces of the given dispatch table. Methods invoked on the
+ * proxy are dispatched to the resolved target via the bound methods of the table.
+ * <p>
+ *
+ * @param	table the dispatch table of the binder that owns the managed entity.
+ * @param	target resolves the managed entity on each method invocation.
+ * @return	the proxy instance.
+ */
+
+	Object createProxy(MethodTable table, ProxyTarget target);
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package com.hashvoid.crossbinder.dilm.support.binder;
+
+/**
+ * Resolves the managed entity behind a proxy at the time of method invocation. This allows for a
+ * proxy to be handed out before the managed entity is created, as is the case with lazily loaded
+ * singletons.
+ * <p>
+ *
+ * @author poroshuram
+ */
+
+public abstract class ProxyTarget {
+
+/**
+ * Retrieves the managed entity on which methods invoked on the proxy are to be executed.
+ * <p>
+ *
+ * @return	the managed entity.
+ */
+
+	public abstract Object get();
+
+/**
+ * Creates a proxy target for an already available managed entity.
+ * <p>
+ *
+ * @param	target the managed entity.
+ * @return	the proxy target that always resolves to the given entity.
+ */
+
+	public static ProxyTarget of(Object target) {
+		return new FixedTarget(target);
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+	// Inner class for targets that are known at the time of proxy creation
+
+	private static final class FixedTarget extends ProxyTarget {
+
+		private final Object target;
+
+		FixedTarget(Object target) {
+			this.target = target;
+		}
+
+		@Override
+		public Object get() {
+			return target;
+		}
+	}
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.hashvoid.crossbinder.dilm.support.binder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.hashvoid.crossbinder.dilm.Sampling;
+
+/**
+ * The {@link Sampling} policy of a method interceptor, shared by all the chains the interceptor
+ * takes part in, so that the limit per second applies across methods.
+ *
+ * @author poroshuram
+ */
+
+public class SamplingPolicy {
+
+	// sampled if the random number, taken as unsigned, is below this
+	private long          threshold;
+	private int           perSecond;
+	private long          slowNanos;
+	private boolean       failures;
+
+	// the second for which invocations are being counted against the limit
+	private volatile long window;
+	private AtomicInteger admitted;
+
+	public SamplingPolicy(Sampling sampling) {
+		threshold = (1L << 32) / Math.max(sampling.oneIn(), 1);
+		perSecond = sampling.perSecond();
+		slowNanos = TimeUnit.MILLISECONDS.toNanos(sampling.slowerThan());
+		failures = sampling.failures();
+		admitted = new AtomicInteger();
+	}
+
+/**
+ * @return	<tt>true</tt> if invocations that were not sampled may still be kept once they
+ * 			complete, <tt>false</tt> otherwise.
+ */
+
+	boolean hasTail() {
+		return slowNanos > 0 || failures;
+	}
+
+/**
+ * @return	<tt>true</tt> if invocations must be timed to decide whether to keep them.
+ */
+
+	boolean isTimed() {
+		return slowNanos > 0;
+	}
+
+/**
+ * Decides whether an invocation is sampled.
+ * <p>
+ *
+ * @param	random the random number drawn for the invocation.
+ * @return	<tt>true</tt> if sampled, <tt>false</tt> otherwise.
+ */
+
+	boolean sample(int random) {
+		if((random & 0xFFFFFFFFL) >= threshold) {
+			return false;
+		}
+		return perSecond <= 0 || admit();
+	}
+
+/**
+ * Decides whether an invocation that was not sampled is kept after all, once it has completed.
+ * <p>
+ *
+ * @param	elapsed the time taken by the invocation in nanoseconds.
+ * @param	failed <tt>true</tt> if the invocation failed, <tt>false</tt> otherwise.
+ * @return	<tt>true</tt> if kept, <tt>false</tt> otherwise.
+ */
+
+	boolean keep(long elapsed, boolean failed) {
+		return (failed && failures) || (slowNanos > 0 && elapsed >= slowNanos);
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+	// Helper methods
+
+	private boolean admit() {
+		long current = System.currentTimeMillis() / 1000;
+		if(current != window) {
+			// racing threads may each reset the count, admitting a few extra invocations
+			window = current;
+			admitted.set(0);
+		}
+		if(admitted.get() >= perSecond) {
+			return false;
+		}
+		return admitted.incrementAndGet() <= perSecond;
+	}
+}
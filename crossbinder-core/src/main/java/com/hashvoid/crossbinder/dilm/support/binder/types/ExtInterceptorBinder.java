@@ -23,6 +23,7 @@ import com.hashvoid.crossbinder.dilm.GlobalLifecycleInterceptor;
 import com.hashvoid.crossbinder.dilm.LifecycleInterceptor;
 import com.hashvoid.crossbinder.dilm.MethodInterceptor;
 import com.hashvoid.crossbinder.dilm.support.binder.Binder;
+import com.hashvoid.crossbinder.dilm.support.binder.BinderContext;
 import com.hashvoid.crossbinder.dilm.support.binder.Dependency;
 
 /**
@@ -35,11 +36,13 @@ public class ExtInterceptorBinder implements Binder {
 	private static final Logger LOGGER = Logger.getLogger(ExtInterceptorBinder.class.getName());
 
 	private Class<?>        implCls;
+	private BinderContext   binderCtxt;
 	private Set<Class<?>>   ifaceTypes;
 	private Object          external;
 
-	ExtInterceptorBinder(Object external) {
+	ExtInterceptorBinder(Object external, BinderContext ctxt) {
 		this.external = external;
+		binderCtxt = ctxt;
 		implCls = external.getClass();
 		ifaceTypes = new HashSet<>();
 		if(GlobalLifecycleInterceptor.class.isAssignableFrom(implCls)) {
@@ -62,6 +65,11 @@ public class ExtInterceptorBinder implements Binder {
 		return null;
 	}
 
+	@Override
+	public Class<?> getImplementationClass() {
+		return implCls;
+	}
+
 	@Override
 	public Set<Class<?>> getInterfaceTypes() {
 		return ifaceTypes;
@@ -94,7 +102,8 @@ public class ExtInterceptorBinder implements Binder {
 
 	@Override
 	public void start() {
-		// NOOP
+		// Process annotations and inject configuration, the instance is otherwise set up externally.
+		new ConfigProcessor(binderCtxt.getConfigurationProviders()).configure(external);
 	}
 
 	@Override
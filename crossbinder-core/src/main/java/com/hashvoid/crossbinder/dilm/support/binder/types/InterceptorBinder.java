@@ -69,6 +69,11 @@ public class InterceptorBinder implements Binder {
 		return null;
 	}
 
+	@Override
+	public Class<?> getImplementationClass() {
+		return implCls;
+	}
+
 	@Override
 	public Set<Class<?>> getInterfaceTypes() {
 		return ifaceTypes;
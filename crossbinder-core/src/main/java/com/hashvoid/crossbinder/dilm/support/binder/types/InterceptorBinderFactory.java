@@ -54,7 +54,7 @@ public class InterceptorBinderFactory {
 		return binder;
 	}
 
-	public Binder createExternalBinder(Object external) {
+	public Binder createExternalBinder(Object external, BinderContext ctxt) {
 		if(!BinderValidations.checkNotAnnotatedWith(external.getClass(),
 				Provider.class, Singleton.class, Prototype.class)) {
 			return null;
@@ -64,7 +64,7 @@ public class InterceptorBinderFactory {
 		if(oldBinder != null) {
 			return oldBinder;
 		}
-		ExtInterceptorBinder binder = new ExtInterceptorBinder(external);
+		ExtInterceptorBinder binder = new ExtInterceptorBinder(external, ctxt);
 		interceptors.put(external.getClass(), binder);
 		return binder;
 	}
@@ -14,10 +14,6 @@
 
 package com.hashvoid.crossbinder.dilm.support.binder.types;
 
-import java.lang.reflect.InvocationHandler;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.lang.reflect.Proxy;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.logging.Logger;
@@ -31,6 +27,9 @@ import com.hashvoid.crossbinder.dilm.Prototype;
 import com.hashvoid.crossbinder.dilm.support.binder.Binder;
 import com.hashvoid.crossbinder.dilm.support.binder.BinderContext;
 import com.hashvoid.crossbinder.dilm.support.binder.Dependency;
+import com.hashvoid.crossbinder.dilm.support.binder.MethodTable;
+import com.hashvoid.crossbinder.dilm.support.binder.ProxyTarget;
+import com.hashvoid.crossbinder.dilm.support.jfr.FlightEvents;
 
 /**
  * @author poroshuram
@@ -45,6 +44,7 @@ public class PrototypeBinder implements Binder {
 	private BinderContext   binderCtxt;
 	private Set<Dependency> dependencies;
 	private Set<Class<?>>   bindToList;
+	private MethodTable     methodTable;
 
 	PrototypeBinder(Class<?> implCls, BinderContext ctxt) {
 		binderCtxt = ctxt;
@@ -71,6 +71,11 @@ public class PrototypeBinder implements Binder {
 		return ann.name().trim();
 	}
 
+	@Override
+	public Class<?> getImplementationClass() {
+		return implCls;
+	}
+
 	@Override
 	public Set<Class<?>> getInterfaceTypes() {
 		return bindToList;
@@ -93,6 +98,7 @@ public class PrototypeBinder implements Binder {
 		}
 
 		Object prototype = null;
+		Object event = FlightEvents.begin(FlightEvents.Type.INSTANTIATION);
 		try {
 			prototype = implCls.newInstance();
 		}
@@ -100,10 +106,13 @@ public class PrototypeBinder implements Binder {
 			throw new CrossbinderException("unable to instantiate prototype " + this, exep);
 		}
 
+		FlightEvents.commit(event, this);
+
 		// Notify event processors that object has been created.
 		binderCtxt.getEventHandler().instanceCreated(prototype);
 
 		// Process annotations and inject configuration.
+		event = FlightEvents.begin(FlightEvents.Type.INJECTION);
 		new ConfigProcessor(binderCtxt.getConfigurationProviders()).configure(prototype);
 
 		// Do injection
@@ -114,23 +123,36 @@ public class PrototypeBinder implements Binder {
 			((InjectorAware) prototype).setInjector(binderCtxt.getInjector());
 		}
 		new InjectProcessor().injectDependencies(prototype, binderCtxt.getLocator());
+		FlightEvents.commit(event, this);
 
 		// Notify event processors that object has been injected.
 		binderCtxt.getEventHandler().instanceInjected(prototype);
 
 		// Invoke init method on target instance
+		event = FlightEvents.begin(FlightEvents.Type.INITIALIZATION);
 		new InitProcessor().execute(prototype);
+		FlightEvents.commit(event, this);
 
 		// Notify event processors that object has been initialized.
 		binderCtxt.getEventHandler().instanceInitialized(prototype);
 
+		if(methodTable.isElided()) {
+			return type.cast(prototype);
+		}
 		Object protoProxy = createProxyInstance(prototype);
 		return type.cast(protoProxy);
 	}
 
 	@Override
 	public void start() {
-		// NOOP
+		// resolve the implementation methods once, to be shared by all prototype proxies
+		methodTable = new MethodTable(implCls, bindToList, binderCtxt.getEventHandler());
+		// prototypes are handed out as is, if so desired and there is nothing to intercept
+		Prototype ann = implCls.getAnnotation(Prototype.class);
+		if((ann.elideProxy() || binderCtxt.isProxyElision()) && methodTable.isDirect()) {
+			methodTable.setElided(true);
+			LOGGER.fine(String.format("proxy elided prototype = {%s}", implCls.getName()));
+		}
 	}
 
 	@Override
@@ -201,40 +223,6 @@ public class PrototypeBinder implements Binder {
 	}
 
 	private Object createProxyInstance(Object prototype) {
-		ClassLoader cl = Thread.currentThread().getContextClassLoader();
-		if(cl == null) {
-			cl = getClass().getClassLoader();
-		}
-		Class<?>[] ifaces = bindToList.toArray(new Class[bindToList.size()]);
-		return Proxy.newProxyInstance(cl, ifaces, new PrototypeInvocationHandler(prototype));
-	}
-
-	////////////////////////////////////////////////////////////////////////////
-	// Inner class that implements the InvocationHandler
-
-	private class PrototypeInvocationHandler implements InvocationHandler {
-
-		private Object prototype;
-
-		public PrototypeInvocationHandler(Object proto) {
-			prototype = proto;
-		}
-
-		@Override
-		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
-			Method outMthd = implCls.getMethod(method.getName(), method.getParameterTypes());
-
-			binderCtxt.getEventHandler().beforeMethod(prototype, outMthd, args);
-			Object retVal = null;
-			try {
-				retVal = binderCtxt.getEventHandler().wrapMethod(prototype, outMthd, args);
-			}
-			catch(InvocationTargetException exep) {
-				binderCtxt.getEventHandler().afterMethodFail(prototype, outMthd, exep.getCause());
-				throw exep.getCause();
-			}
-			binderCtxt.getEventHandler().afterMethodSuccess(prototype, outMthd, retVal);
-			return retVal;
-		}
+		return binderCtxt.getProxyFactory().createProxy(methodTable, ProxyTarget.of(prototype));
 	}
 }
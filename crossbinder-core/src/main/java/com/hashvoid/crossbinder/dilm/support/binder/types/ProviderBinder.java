@@ -14,17 +14,20 @@
 
 package com.hashvoid.crossbinder.dilm.support.binder.types;
 
-import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.lang.reflect.Proxy;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.logging.Logger;
 
 import com.hashvoid.crossbinder.dilm.CrossbinderException;
 import com.hashvoid.crossbinder.dilm.support.binder.Binder;
 import com.hashvoid.crossbinder.dilm.support.binder.Dependency;
+import com.hashvoid.crossbinder.dilm.support.binder.MethodTable;
+import com.hashvoid.crossbinder.dilm.support.binder.ProxyTarget;
 
 /**
  * @author poroshuram
@@ -39,10 +42,14 @@ public class ProviderBinder implements Binder {
 	private ProviderBinderGroup binderGroup;
 	private Method              provMthd;
 
+	// dispatch tables for each concrete class returned by the provider method
+	private ConcurrentMap<Class<?>, MethodTable> methodTables;
+
 	ProviderBinder(ProviderBinderGroup group, String name, Method mthd) {
 		this.name = name;
 		binderGroup = group;
 		provMthd = mthd;
+		methodTables = new ConcurrentHashMap<>();
 	}
 
 	////////////////////////////////////////////////////////////////////////////
@@ -53,6 +60,11 @@ public class ProviderBinder implements Binder {
 		return name;
 	}
 
+	@Override
+	public Class<?> getImplementationClass() {
+		return binderGroup.getImplementationClass();
+	}
+
 	@Override
 	public Set<Class<?>> getInterfaceTypes() {
 		HashSet<Class<?>> reset = new HashSet<>();
@@ -118,45 +130,21 @@ public class ProviderBinder implements Binder {
 		return false;
 	}
 
-	private Object createProxyInstance(Object prototype) {
-		ClassLoader cl = Thread.currentThread().getContextClassLoader();
-		if(cl == null) {
-			cl = getClass().getClassLoader();
+	private MethodTable getMethodTable(Class<?> providedCls) {
+		MethodTable result = methodTables.get(providedCls);
+		if(result == null) {
+			result = new MethodTable(providedCls, Collections.<Class<?>>singleton(provMthd.getReturnType()),
+					binderGroup.getBinderContext().getEventHandler());
+			MethodTable prev = methodTables.putIfAbsent(providedCls, result);
+			if(prev != null) {
+				result = prev;
+			}
 		}
-		return Proxy.newProxyInstance(cl, new Class[]{provMthd.getReturnType()},
-				new ProvidedInvocationHandler(prototype));
+		return result;
 	}
 
-	////////////////////////////////////////////////////////////////////////////
-	// Inner class that implements the InvocationHandler
-
-	private class ProvidedInvocationHandler implements InvocationHandler {
-
-		private Object provided;
-
-		public ProvidedInvocationHandler(Object provided) {
-			this.provided = provided;
-		}
-
-		@Override
-		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
-			Method outMthd = provided.getClass().getMethod(method.getName(), method.getParameterTypes());
-
-			binderGroup.getBinderContext().getEventHandler()
-					.beforeMethod(provided, outMthd, args);
-			Object retVal = null;
-			try {
-				retVal = binderGroup.getBinderContext().getEventHandler()
-						.wrapMethod(provided, outMthd, args);
-			}
-			catch(InvocationTargetException exep) {
-				binderGroup.getBinderContext().getEventHandler()
-						.afterMethodFail(provided, outMthd, exep.getCause());
-				throw exep.getCause();
-			}
-			binderGroup.getBinderContext()
-					.getEventHandler().afterMethodSuccess(provided, outMthd, retVal);
-			return retVal;
-		}
+	private Object createProxyInstance(Object provided) {
+		return binderGroup.getBinderContext().getProxyFactory()
+				.createProxy(getMethodTable(provided.getClass()), ProxyTarget.of(provided));
 	}
 }
@@ -84,6 +84,10 @@ class ProviderBinderGroup {
 		started = true;
 	}
 
+	public Class<?> getImplementationClass() {
+		return implCls;
+	}
+
 	public Object getProvider() {
 		return provider;
 	}
@@ -14,27 +14,33 @@
 
 package com.hashvoid.crossbinder.dilm.support.binder.types;
 
-import java.lang.reflect.InvocationHandler;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.lang.reflect.Proxy;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.logging.Logger;
 
 import com.hashvoid.crossbinder.dilm.Bindable;
 import com.hashvoid.crossbinder.dilm.CrossbinderException;
 import com.hashvoid.crossbinder.dilm.InjectorAware;
+import com.hashvoid.crossbinder.dilm.LoadStatistics;
 import com.hashvoid.crossbinder.dilm.LocatorAware;
 import com.hashvoid.crossbinder.dilm.NonBindable;
 import com.hashvoid.crossbinder.dilm.Singleton;
 import com.hashvoid.crossbinder.dilm.support.binder.Binder;
 import com.hashvoid.crossbinder.dilm.support.binder.BinderContext;
 import com.hashvoid.crossbinder.dilm.support.binder.Dependency;
+import com.hashvoid.crossbinder.dilm.support.binder.MethodTable;
+import com.hashvoid.crossbinder.dilm.support.binder.ProxyTarget;
+import com.hashvoid.crossbinder.dilm.support.jfr.FlightEvents;
 
 /**
- * @author poroshuram
+ * Binder for singletons. The singleton is loaded exactly once, either at startup or, if lazily
+ * loaded, on first use through its proxy. Threads that invoke the proxy while the singleton is
+ * being loaded block on a lock specific to this binder, and the time they spend waiting is
+ * recorded in the load statistics of the binder.
  *
+ * @author poroshuram
  */
 
 public class SingletonBinder implements Binder {
@@ -45,9 +51,19 @@ public class SingletonBinder implements Binder {
 	private BinderContext   binderCtxt;
 	private Set<Dependency> dependencies;
 	private Set<Class<?>>   bindToList;
-	private Object          singleton;
+	private MethodTable     methodTable;
+	private volatile Object singleton;
 	private Object          proxySingleton;
 
+	// guards loading of the singleton, and the instance that is being loaded
+	private Object          loadLock;
+	private Object          loading;
+
+	private volatile long   loadTime;
+	private LongAdder       waitCount;
+	private LongAdder       waitTime;
+	private AtomicLong      maxWaitTime;
+
 	SingletonBinder(Class<?> implCls, BinderContext ctxt) {
 		this.implCls = implCls;
 		binderCtxt = ctxt;
@@ -62,6 +78,11 @@ public class SingletonBinder implements Binder {
 		}
 		dependencies = new InjectProcessor().extractDependencies(implCls);
 		new InitProcessor().resolve(implCls);
+
+		loadLock = new Object();
+		waitCount = new LongAdder();
+		waitTime = new LongAdder();
+		maxWaitTime = new AtomicLong();
 	}
 
 	////////////////////////////////////////////////////////////////////////////
@@ -73,6 +94,11 @@ public class SingletonBinder implements Binder {
 		return ann.name().trim();
 	}
 
+	@Override
+	public Class<?> getImplementationClass() {
+		return implCls;
+	}
+
 	@Override
 	public Set<Class<?>> getInterfaceTypes() {
 		return bindToList;
@@ -93,6 +119,10 @@ public class SingletonBinder implements Binder {
 			LOGGER.fine(String.format("instance not found type = %s", type.getName()));
 			return null;
 		}
+		if(proxySingleton != null && proxySingleton == singleton && !methodTable.isElided()) {
+			// intercepted since the proxy was elided, references handed out so far remain direct
+			createProxyInstance();
+		}
 		return type.cast(proxySingleton);
 	}
 
@@ -102,10 +132,19 @@ public class SingletonBinder implements Binder {
 		Singleton ann = implCls.getAnnotation(Singleton.class);
 		if(!ann.lazyLoading()) {
 			// keep the instance ready in case lazy loading is not true
-			createInstance();
+			loadInstance();
+		}
+		//resolve the implementation methods once, rather than on every invocation
+		methodTable = new MethodTable(implCls, bindToList, binderCtxt.getEventHandler());
+		//and create the proxy instance for the real instance, unless it can be handed out as is
+		if(singleton != null && isProxyElided(ann)) {
+			proxySingleton = singleton;
+			methodTable.setElided(true);
+			LOGGER.fine(String.format("proxy elided singleton = {%s}", implCls.getName()));
+		}
+		else {
+			createProxyInstance();
 		}
-		//and create the proxy instance for the real instance
-		createProxyInstance();
 	}
 
 	@Override
@@ -113,6 +152,16 @@ public class SingletonBinder implements Binder {
 		// TODO Auto-generated method stub
 	}
 
+/**
+ * @return	a snapshot of the time spent in loading the singleton of this binder.
+ */
+
+	public LoadStatistics getLoadStatistics() {
+		Singleton ann = implCls.getAnnotation(Singleton.class);
+		return new LoadStatistics(implCls.getName(), ann.lazyLoading(), singleton != null, loadTime,
+				waitCount.sum(), waitTime.sum(), maxWaitTime.get());
+	}
+
 	@Override
 	public String toString() {
 		StringBuilder builder = new StringBuilder("singleton: ")
@@ -175,71 +224,107 @@ public class SingletonBinder implements Binder {
 		return result;
 	}
 
-	private void createInstance() throws CrossbinderException {
+	private Object loadInstance() throws CrossbinderException {
+		long startTime = System.nanoTime();
+		synchronized(loadLock) {
+			Object result = singleton;
+			if(result != null) {
+				// loaded by another thread while this one was waiting
+				recordWait(System.nanoTime() - startTime);
+				return result;
+			}
+			if(loading != null) {
+				// re-entrant call from within the injection or initialization of the singleton
+				return loading;
+			}
+			try {
+				result = createInstance();
+			}
+			finally {
+				loading = null;
+			}
+			singleton = result;
+			loadTime = System.nanoTime() - startTime;
+			LOGGER.fine(String.format("singleton loaded = {%s}, load_time = %d", implCls.getName(), loadTime));
+			return result;
+		}
+	}
+
+	private void recordWait(long nanos) {
+		waitCount.increment();
+		waitTime.add(nanos);
+		long max = maxWaitTime.get();
+		while(nanos > max && !maxWaitTime.compareAndSet(max, nanos)) {
+			max = maxWaitTime.get();
+		}
+		LOGGER.fine(String.format("singleton load wait = {%s}, wait_time = %d", implCls.getName(), nanos));
+	}
+
+	private Object createInstance() throws CrossbinderException {
+		Object instance = null;
+		Object event = FlightEvents.begin(FlightEvents.Type.INSTANTIATION);
 		try {
-			singleton = implCls.newInstance();
+			instance = implCls.newInstance();
 		}
 		catch (InstantiationException | IllegalAccessException exep) {
 			throw new CrossbinderException("unable to instantiate singeton " + this, exep);
 		}
 
+		// Make the instance available to re-entrant calls on the proxy from this thread.
+		loading = instance;
+
+		FlightEvents.commit(event, this);
+
 		// Notify event processors that object has been created.
-		binderCtxt.getEventHandler().instanceCreated(singleton);
+		binderCtxt.getEventHandler().instanceCreated(instance);
 
 		// Process annotations and inject configuration.
-		new ConfigProcessor(binderCtxt.getConfigurationProviders()).configure(singleton);
+		event = FlightEvents.begin(FlightEvents.Type.INJECTION);
+		new ConfigProcessor(binderCtxt.getConfigurationProviders()).configure(instance);
 
 		// Do injection
-		if(singleton instanceof LocatorAware) {
-			((LocatorAware) singleton).setLocator(binderCtxt.getLocator());
+		if(instance instanceof LocatorAware) {
+			((LocatorAware) instance).setLocator(binderCtxt.getLocator());
 		}
-		if(singleton instanceof InjectorAware) {
-			((InjectorAware) singleton).setInjector(binderCtxt.getInjector());
+		if(instance instanceof InjectorAware) {
+			((InjectorAware) instance).setInjector(binderCtxt.getInjector());
 		}
-		new InjectProcessor().injectDependencies(singleton, binderCtxt.getLocator());
+		new InjectProcessor().injectDependencies(instance, binderCtxt.getLocator());
+		FlightEvents.commit(event, this);
 
 		// Notify event processors that object has been injected.
-		binderCtxt.getEventHandler().instanceInjected(singleton);
+		binderCtxt.getEventHandler().instanceInjected(instance);
 
 		// Invoke init method on target instance
-		new InitProcessor().execute(singleton);
+		event = FlightEvents.begin(FlightEvents.Type.INITIALIZATION);
+		new InitProcessor().execute(instance);
+		FlightEvents.commit(event, this);
 
 		// Notify event processors that object has been initialized.
-		binderCtxt.getEventHandler().instanceInitialized(singleton);
+		binderCtxt.getEventHandler().instanceInitialized(instance);
+		return instance;
+	}
+
+	private boolean isProxyElided(Singleton ann) {
+		return (ann.elideProxy() || binderCtxt.isProxyElision()) && methodTable.isDirect();
 	}
 
 	private void createProxyInstance() {
-		ClassLoader cl = Thread.currentThread().getContextClassLoader();
-		if(cl == null) {
-			cl = getClass().getClassLoader();
-		}
-		Class<?>[] ifaces = bindToList.toArray(new Class[bindToList.size()]);
-		proxySingleton = Proxy.newProxyInstance(cl, ifaces, new SingletonInvocationHandler());
+		proxySingleton = binderCtxt.getProxyFactory().createProxy(methodTable, new SingletonTarget());
 	}
 
 	////////////////////////////////////////////////////////////////////////////
-	// Inner class that implements the InvocationHandler
+	// Inner class that resolves the singleton behind the proxy
 
-	private class SingletonInvocationHandler implements InvocationHandler {
+	private class SingletonTarget extends ProxyTarget {
 
 		@Override
-		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
-			if(singleton == null) {
-				createInstance();
-			}
-			Method outMthd = implCls.getMethod(method.getName(), method.getParameterTypes());
-
-			binderCtxt.getEventHandler().beforeMethod(singleton, outMthd, args);
-			Object retVal = null;
-			try {
-				retVal = binderCtxt.getEventHandler().wrapMethod(singleton, outMthd, args);
-			}
-			catch(InvocationTargetException exep) {
-				binderCtxt.getEventHandler().afterMethodFail(singleton, outMthd, exep.getCause());
-				throw exep.getCause();
+		public Object get() {
+			Object result = singleton;
+			if(result == null) {
+				result = loadInstance();
 			}
-			binderCtxt.getEventHandler().afterMethodSuccess(singleton, outMthd, retVal);
-			return retVal;
+			return result;
 		}
 	}
 }
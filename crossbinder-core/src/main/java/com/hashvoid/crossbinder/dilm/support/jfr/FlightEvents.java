@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.hashvoid.crossbinder.dilm.support.jfr;
+
+import java.lang.reflect.Method;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.hashvoid.crossbinder.dilm.support.binder.Binder;
+
+/**
+ * Emits the events of the container to the JDK Flight Recorder: scanning of the class path,
+ * creation of the binders, start and stop of each binder, and the instantiation, injection and
+ * initialization of managed entities, as well as slow invocations of their methods. The events
+ * appear in recordings under the category <tt>Crossbinder</tt>, and the threshold above which an
+ * invocation counts as slow (10 ms by default) is set in the recording settings, like that of
+ * any other JDK event.
+ * <p>
+ *
+ * The event classes are only loaded if the running JDK has a flight recorder; otherwise, and
+ * while no recording has enabled an event, the methods of this class do nothing. Lifecycle events
+ * are started via {@link #begin(Type)} and committed via one of the <tt>commit</tt> methods,
+ * passing along the object returned by <tt>begin</tt>, which is <tt>null</tt> if the event is not
+ * recorded. Invocations are only timed while {@link #isInvocationEnabled()} returns
+ * <tt>true</tt>.
+ *
+ * @author poroshuram
+ */
+
+public final class FlightEvents {
+
+	private static final Logger LOGGER = Logger.getLogger(FlightEvents.class.getName());
+
+/**
+ * Types of lifecycle events.
+ */
+
+	public enum Type {
+		SCAN,
+		BINDER_CREATION,
+		BINDER_START,
+		BINDER_STOP,
+		INSTANTIATION,
+		INJECTION,
+		INITIALIZATION,
+		WARM_UP
+	}
+
+	private static final boolean AVAILABLE = initialize();
+
+	// tracks whether a recording has the slow invocation event enabled, updated on every change
+	// in the state of a recording
+	private static volatile boolean invocationEnabled;
+
+	private FlightEvents() {
+		// NOOP
+	}
+
+/**
+ * @param	type the type of the event.
+ * @return	the event in progress, or <tt>null</tt> if events of the given type are not recorded.
+ */
+
+	public static Object begin(Type type) {
+		return AVAILABLE ? JfrEvents.begin(type) : null;
+	}
+
+/**
+ * Commits an event about a binder, recording its name and implementation class.
+ * <p>
+ *
+ * @param	event the event returned by {@link #begin(Type)}, possibly <tt>null</tt>.
+ * @param	binder the binder.
+ */
+
+	public static void commit(Object event, Binder binder) {
+		if(event != null) {
+			JfrEvents.commit(event, binder.getName(), binder.getImplementationClass());
+		}
+	}
+
+/**
+ * Commits an event about the container as a whole.
+ * <p>
+ *
+ * @param	event the event returned by {@link #begin(Type)}, possibly <tt>null</tt>.
+ */
+
+	public static void commit(Object event) {
+		if(event != null) {
+			JfrEvents.commit(event, 0);
+		}
+	}
+
+/**
+ * Commits an event about the container as a whole.
+ * <p>
+ *
+ * @param	event the event returned by {@link #begin(Type)}, possibly <tt>null</tt>.
+ * @param	count the number of binders created, or of methods warmed up, ignored for other events.
+ */
+
+	public static void commit(Object event, int count) {
+		if(event != null) {
+			JfrEvents.commit(event, count);
+		}
+	}
+
+/**
+ * @return	<tt>true</tt> if a recording in progress has slow invocations enabled, <tt>false</tt>
+ * 			otherwise.
+ */
+
+	public static boolean isInvocationEnabled() {
+		return invocationEnabled;
+	}
+
+/**
+ * @return	the invocation event in progress, or <tt>null</tt> if invocations are not recorded.
+ */
+
+	public static Object beginInvocation() {
+		return invocationEnabled ? JfrEvents.beginInvocation() : null;
+	}
+
+/**
+ * Commits an invocation event, provided that the invocation took longer than the threshold.
+ * <p>
+ *
+ * @param	event the event returned by {@link #beginInvocation()}, possibly <tt>null</tt>.
+ * @param	implCls the implementation class of the managed entity.
+ * @param	method the method invoked.
+ * @param	failed <tt>true</tt> if the method raised an exception, <tt>false</tt> otherwise.
+ */
+
+	public static void commitInvocation(Object event, Class<?> implCls, Method method, boolean failed) {
+		if(event != null) {
+			JfrEvents.commitInvocation(event, implCls, method, failed);
+		}
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+	// Helper methods
+
+	static void recordingChanged(boolean invocations) {
+		invocationEnabled = invocations;
+		LOGGER.fine(String.format("jfr_invocation_events = %s", invocations));
+	}
+
+	private static boolean initialize() {
+		try {
+			Class.forName("jdk.jfr.FlightRecorder", false, FlightEvents.class.getClassLoader());
+		}
+		catch(ClassNotFoundException | LinkageError exep) {
+			LOGGER.fine("flight recorder not available");
+			return false;
+		}
+		try {
+			return JfrEvents.register();
+		}
+		catch(RuntimeException | LinkageError exep) {
+			LOGGER.log(Level.FINE, "unable to register flight recorder events", exep);
+			return false;
+		}
+	}
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.hashvoid.crossbinder.dilm.support.jfr;
+
+import java.lang.reflect.Method;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.FlightRecorderListener;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Recording;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Bridge to the JDK Flight Recorder, holding the event classes of the container. This class is
+ * only loaded by {@link FlightEvents} once it is known that the flight recorder is available.
+ *
+ * @author poroshuram
+ */
+
+final class JfrEvents {
+
+	private static EventType invocationType;
+
+	private JfrEvents() {
+		// NOOP
+	}
+
+	static boolean register() {
+		if(!FlightRecorder.isAvailable()) {
+			return false;
+		}
+		FlightRecorder.register(ScanEvent.class);
+		FlightRecorder.register(BinderCreationEvent.class);
+		FlightRecorder.register(BinderStartEvent.class);
+		FlightRecorder.register(BinderStopEvent.class);
+		FlightRecorder.register(InstantiationEvent.class);
+		FlightRecorder.register(InjectionEvent.class);
+		FlightRecorder.register(InitializationEvent.class);
+		FlightRecorder.register(WarmUpEvent.class);
+		FlightRecorder.register(SlowInvocationEvent.class);
+		invocationType = EventType.getEventType(SlowInvocationEvent.class);
+		// recordings may already be running, e.g. if started from the command line
+		FlightEvents.recordingChanged(invocationType.isEnabled());
+		FlightRecorder.addListener(new RecordingListener());
+		return true;
+	}
+
+	static Object begin(FlightEvents.Type type) {
+		Event event;
+		switch(type) {
+		case SCAN:
+			event = new ScanEvent();
+			break;
+		case BINDER_CREATION:
+			event = new BinderCreationEvent();
+			break;
+		case BINDER_START:
+			event = new BinderStartEvent();
+			break;
+		case BINDER_STOP:
+			event = new BinderStopEvent();
+			break;
+		case INSTANTIATION:
+			event = new InstantiationEvent();
+			break;
+		case INJECTION:
+			event = new InjectionEvent();
+			break;
+		case WARM_UP:
+			event = new WarmUpEvent();
+			break;
+		default:
+			event = new InitializationEvent();
+			break;
+		}
+		if(!event.isEnabled()) {
+			return null;
+		}
+		event.begin();
+		return event;
+	}
+
+	static void commit(Object event, String binderName, Class<?> implCls) {
+		BinderEvent binderEvent = (BinderEvent) event;
+		binderEvent.end();
+		if(binderEvent.shouldCommit()) {
+			binderEvent.binderName = binderName;
+			binderEvent.implementationClass = implCls;
+			binderEvent.commit();
+		}
+	}
+
+	static void commit(Object event, int count) {
+		Event cntrEvent = (Event) event;
+		cntrEvent.end();
+		if(cntrEvent.shouldCommit()) {
+			if(cntrEvent instanceof BinderCreationEvent) {
+				((BinderCreationEvent) cntrEvent).binderCount = count;
+			}
+			else if(cntrEvent instanceof WarmUpEvent) {
+				((WarmUpEvent) cntrEvent).methodCount = count;
+			}
+			cntrEvent.commit();
+		}
+	}
+
+	static Object beginInvocation() {
+		SlowInvocationEvent event = new SlowInvocationEvent();
+		event.begin();
+		return event;
+	}
+
+	static void commitInvocation(Object event, Class<?> implCls, Method method, boolean failed) {
+		SlowInvocationEvent invEvent = (SlowInvocationEvent) event;
+		invEvent.end();
+		if(invEvent.shouldCommit()) {
+			invEvent.implementationClass = implCls;
+			invEvent.methodName = method.getName();
+			invEvent.failed = failed;
+			invEvent.commit();
+		}
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+	// Inner class that tracks whether slow invocations are being recorded
+
+	private static class RecordingListener implements FlightRecorderListener {
+
+		@Override
+		public void recordingStateChanged(Recording recording) {
+			FlightEvents.recordingChanged(invocationType.isEnabled());
+		}
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+	// Inner classes for the events
+
+	@Category("Crossbinder")
+	@StackTrace(false)
+	private abstract static class BinderEvent extends Event {
+
+		@Label("Binder Name")
+		String binderName;
+
+		@Label("Implementation Class")
+		Class<?> implementationClass;
+	}
+
+	@Name("crossbinder.Scan")
+	@Label("Class Path Scan")
+	@Description("Scanning of the class path for managed entities and interceptors")
+	@Category("Crossbinder")
+	@StackTrace(false)
+	private static class ScanEvent extends Event {
+		// NOOP
+	}
+
+	@Name("crossbinder.BinderCreation")
+	@Label("Binder Creation")
+	@Description("Creation of the binders for the scanned classes, and their ordering by dependency")
+	@Category("Crossbinder")
+	@StackTrace(false)
+	private static class BinderCreationEvent extends Event {
+
+		@Label("Binder Count")
+		int binderCount;
+	}
+
+	@Name("crossbinder.WarmUp")
+	@Label("Warm-Up")
+	@Description("Repeated invocation of the @WarmUp methods of singletons during startup")
+	@Category("Crossbinder")
+	@StackTrace(false)
+	private static class WarmUpEvent extends Event {
+
+		@Label("Method Count")
+		int methodCount;
+	}
+
+	@Name("crossbinder.BinderStart")
+	@Label("Binder Start")
+	private static class BinderStartEvent extends BinderEvent {
+		// NOOP
+	}
+
+	@Name("crossbinder.BinderStop")
+	@Label("Binder Stop")
+	private static class BinderStopEvent extends BinderEvent {
+		// NOOP
+	}
+
+	@Name("crossbinder.Instantiation")
+	@Label("Instantiation")
+	@Description("Construction of a singleton or prototype")
+	private static class InstantiationEvent extends BinderEvent {
+		// NOOP
+	}
+
+	@Name("crossbinder.Injection")
+	@Label("Injection")
+	@Description("Injection of configuration and dependencies into a singleton or prototype")
+	private static class InjectionEvent extends BinderEvent {
+		// NOOP
+	}
+
+	@Name("crossbinder.Initialization")
+	@Label("Initialization")
+	@Description("Execution of the @Initialize method of a singleton or prototype")
+	private static class InitializationEvent extends BinderEvent {
+		// NOOP
+	}
+
+	@Name("crossbinder.SlowInvocation")
+	@Label("Slow Invocation")
+	@Description("Invocation of a method through the proxy of a managed entity, including its "
+			+ "interceptors, that took longer than the threshold")
+	@Category("Crossbinder")
+	@Threshold("10 ms")
+	private static class SlowInvocationEvent extends Event {
+
+		@Label("Implementation Class")
+		Class<?> implementationClass;
+
+		@Label("Method")
+		String methodName;
+
+		@Label("Failed")
+		boolean failed;
+	}
+}
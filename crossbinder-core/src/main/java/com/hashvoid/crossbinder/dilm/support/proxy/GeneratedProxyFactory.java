@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package com.hashvoid.crossbinder.dilm.support.proxy;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.hashvoid.crossbinder.dilm.CrossbinderException;
+import com.hashvoid.crossbinder.dilm.support.binder.BoundMethod;
+import com.hashvoid.crossbinder.dilm.support.binder.MethodTable;
+import com.hashvoid.crossbinder.dilm.support.binder.ProxyFactory;
+import com.hashvoid.crossbinder.dilm.support.binder.ProxyTarget;
+
+/**
+ * Creates proxies from classes generated at runtime, one class per dispatch table (i.e. per bound
+ * implementation). Each method of a generated class invokes the method handle of its
+ * {@link BoundMethod} via a constant <tt>static final</tt> field, so that the JIT compiler can
+ * inline through the proxy into the managed entity.
+ * <p>
+ *
+ * Implementations whose interfaces cannot be accessed from a generated class are proxied via the
+ * {@link JdkProxyFactory} instead.
+ *
+ * @author poroshuram
+ */
+
+public class GeneratedProxyFactory implements ProxyFactory {
+
+	private static final Logger LOGGER = Logger.getLogger(GeneratedProxyFactory.class.getName());
+
+	private static final String CLASS_PREFIX = GeneratedProxyFactory.class.getPackage().getName()
+			+ ".$CrossbinderProxy";
+
+	// method handles of generated classes, awaiting the initialization of the class
+	private static final ConcurrentMap<String, MethodHandle[]> LINKAGE = new ConcurrentHashMap<>();
+	private static final AtomicInteger                         COUNTER = new AtomicInteger();
+
+	private ProxyFactory                         fallback;
+	private ConcurrentMap<MethodTable, ProxyCls> proxyClasses;
+	private Map<ClassLoader, ProxyClassLoader>   classLoaders;
+
+	public GeneratedProxyFactory() {
+		fallback = new JdkProxyFactory();
+		proxyClasses = new ConcurrentHashMap<>();
+		classLoaders = new HashMap<>();
+	}
+
+/**
+ * Called from the static initializer of a generated class to obtain the method handles to which
+ * its methods are linked. Not meant to be called from application code.
+ * <p>
+ *
+ * @param	className the name of the generated class being initialized.
+ * @return	the method handles, in the order of the methods of the generated class.
+ */
+
+	public static MethodHandle[] linkage(String className) {
+		MethodHandle[] result = LINKAGE.remove(className);
+		if(result == null) {
+			throw new CrossbinderException("no linkage available for proxy class " + className);
+		}
+		return result;
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+	// Methods of interface ProxyFactory
+
+	@Override
+	public Object createProxy(MethodTable table, ProxyTarget target) {
+		ProxyCls proxyCls = proxyClasses.get(table);
+		if(proxyCls == null) {
+			proxyCls = generate(table);
+			ProxyCls prev = proxyClasses.putIfAbsent(table, proxyCls);
+			if(prev != null) {
+				proxyCls = prev;
+			}
+		}
+		if(proxyCls.ctor == null) {
+			return fallback.createProxy(table, target);
+		}
+		try {
+			return proxyCls.ctor.newInstance(target);
+		}
+		catch(InstantiationException | IllegalAccessException | InvocationTargetException exep) {
+			throw new CrossbinderException("unable to instantiate proxy for "
+					+ table.getImplementationClass().getName(), exep);
+		}
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+	// Helper methods
+
+	private ProxyCls generate(MethodTable table) {
+		Class<?> implCls = table.getImplementationClass();
+		Class<?>[] ifaces = table.getInterfaces();
+		for(Class<?> iface : ifaces) {
+			if(!Modifier.isPublic(iface.getModifiers())) {
+				LOGGER.fine(String.format("proxy_fallback = %s (non-public interface %s)",
+						implCls.getName(), iface.getName()));
+				return new ProxyCls(null);
+			}
+		}
+
+		// one proxy method per distinct signature across all interfaces
+		Map<String, BoundMethod> signatures = new LinkedHashMap<>();
+		for(BoundMethod bm : table.getMethods()) {
+			Method method = bm.getInterfaceMethod();
+			String sig = method.getName() + Arrays.toString(method.getParameterTypes());
+			BoundMethod prev = signatures.get(sig);
+			if(prev == null) {
+				signatures.put(sig, bm);
+			}
+			else if(prev.getInterfaceMethod().getReturnType() != method.getReturnType()) {
+				LOGGER.fine(String.format("proxy_fallback = %s (conflicting return types for %s)",
+						implCls.getName(), method.getName()));
+				return new ProxyCls(null);
+			}
+		}
+
+		String className = CLASS_PREFIX + COUNTER.incrementAndGet();
+		List<Method> methods = new ArrayList<>(signatures.size());
+		MethodHandle[] handles = new MethodHandle[signatures.size()];
+		for(BoundMethod bm : signatures.values()) {
+			handles[methods.size()] = bm.getProxyHandle();
+			methods.add(bm.getInterfaceMethod());
+		}
+
+		try {
+			byte[] bytes = new ProxyClassWriter(className).generate(ifaces, methods);
+			LINKAGE.put(className, handles);
+			Class<?> cls = getClassLoader(implCls).define(className, bytes);
+			Class.forName(className, true, cls.getClassLoader());
+			LOGGER.fine(String.format("proxy_class = %s, class = %s", className, implCls.getName()));
+			return new ProxyCls(cls.getConstructor(ProxyTarget.class));
+		}
+		catch(Exception | LinkageError exep) {
+			LOGGER.log(Level.WARNING, String.format("proxy_fallback = %s (class generation failed)",
+					implCls.getName()), exep);
+			return new ProxyCls(null);
+		}
+		finally {
+			LINKAGE.remove(className);
+		}
+	}
+
+	private ProxyClassLoader getClassLoader(Class<?> implCls) {
+		ClassLoader parent = implCls.getClassLoader();
+		if(parent == null) {
+			parent = Thread.currentThread().getContextClassLoader();
+		}
+		synchronized(classLoaders) {
+			ProxyClassLoader result = classLoaders.get(parent);
+			if(result == null) {
+				result = new ProxyClassLoader(parent);
+				classLoaders.put(parent, result);
+			}
+			return result;
+		}
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+	// Inner class holding the constructor of a generated class
+
+	private static class ProxyCls {
+
+		// null if the implementation is to be proxied by the fallback factory
+		private final Constructor<?> ctor;
+
+		ProxyCls(Constructor<?> ctor) {
+			this.ctor = ctor;
+		}
+	}
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package com.hashvoid.crossbinder.dilm.support.proxy;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import com.hashvoid.crossbinder.dilm.support.binder.MethodTable;
+import com.hashvoid.crossbinder.dilm.support.binder.ProxyFactory;
+import com.hashvoid.crossbinder.dilm.support.binder.ProxyTarget;
+
+/**
+ * Creates proxies via {@link Proxy}, dispatching every method invocation through a common
+ * invocation handler.
+ *
+ * @author poroshuram
+ */
+
+public class JdkProxyFactory implements ProxyFactory {
+
+	////////////////////////////////////////////////////////////////////////////
+	// Methods of interface ProxyFactory
+
+	@Override
+	public Object createProxy(MethodTable table, ProxyTarget target) {
+		ClassLoader cl = Thread.currentThread().getContextClassLoader();
+		if(cl == null) {
+			cl = getClass().getClassLoader();
+		}
+		return Proxy.newProxyInstance(cl, table.getInterfaces(), new TableInvocationHandler(table, target));
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+	// Inner class that implements the InvocationHandler
+
+	private static class TableInvocationHandler implements InvocationHandler {
+
+		private MethodTable methodTable;
+		private ProxyTarget target;
+
+		public TableInvocationHandler(MethodTable table, ProxyTarget target) {
+			methodTable = table;
+			this.target = target;
+		}
+
+		@Override
+		public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+			return methodTable.get(method).invoke(target.get(), args);
+		}
+	}
+}
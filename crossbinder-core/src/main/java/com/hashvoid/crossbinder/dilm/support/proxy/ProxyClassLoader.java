@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package com.hashvoid.crossbinder.dilm.support.proxy;
+
+/**
+ * Class loader in which generated proxy classes are defined. Types referred to by the proxied
+ * interfaces are resolved via the parent class loader (the loader of the implementation class),
+ * while Crossbinder types are always resolved via the loader of Crossbinder itself.
+ *
+ * @author poroshuram
+ */
+
+class ProxyClassLoader extends ClassLoader {
+
+	private static final String CROSSBINDER_PKG = "com.hashvoid.crossbinder.dilm.";
+
+	private ClassLoader crossbinderCl;
+
+	ProxyClassLoader(ClassLoader parent) {
+		super(parent);
+		crossbinderCl = ProxyClassLoader.class.getClassLoader();
+	}
+
+	Class<?> define(String name, byte[] bytes) {
+		return defineClass(name, bytes, 0, bytes.length);
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+	// Methods of base class ClassLoader
+
+	@Override
+	protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+		if(name.startsWith(CROSSBINDER_PKG)) {
+			synchronized(getClassLoadingLock(name)) {
+				Class<?> result = findLoadedClass(name);
+				if(result == null) {
+					result = Class.forName(name, false, crossbinderCl);
+				}
+				if(resolve) {
+					resolveClass(result);
+				}
+				return result;
+			}
+		}
+		return super.loadClass(name, resolve);
+	}
+}
@@ -0,0 +1,419 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package com.hashvoid.crossbinder.dilm.support.proxy;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.hashvoid.crossbinder.dilm.support.binder.ProxyTarget;
+
+/**
+ * Minimal class file emitter for generated proxies. A generated proxy class implements the given
+ * interfaces and holds a single {@link ProxyTarget}. Each interface method is linked to a
+ * <tt>static final</tt> method handle, obtained from {@link GeneratedProxyFactory#linkage(String)}
+ * when the class is initialized, and is implemented as a single <tt>invokeExact</tt> on that handle
+ * with the proxy target and the method parameters.
+ * <p>
+ *
+ * The emitted code is straight-line, hence the class file does not need stack map frames.
+ *
+ * @author poroshuram
+ */
+
+class ProxyClassWriter {
+
+	private static final int CLASS_VERSION = 52; // Java 8
+
+	private static final int ACC_PUBLIC  = 0x0001;
+	private static final int ACC_PRIVATE = 0x0002;
+	private static final int ACC_STATIC  = 0x0008;
+	private static final int ACC_FINAL   = 0x0010;
+	private static final int ACC_SUPER   = 0x0020;
+
+	private static final int CONST_UTF8         = 1;
+	private static final int CONST_CLASS        = 7;
+	private static final int CONST_STRING       = 8;
+	private static final int CONST_FIELDREF     = 9;
+	private static final int CONST_METHODREF    = 10;
+	private static final int CONST_NAMEANDTYPE  = 12;
+
+	private static final int ILOAD         = 0x15;
+	private static final int LLOAD         = 0x16;
+	private static final int FLOAD         = 0x17;
+	private static final int DLOAD         = 0x18;
+	private static final int ALOAD         = 0x19;
+	private static final int ALOAD_0       = 0x2a;
+	private static final int ALOAD_1       = 0x2b;
+	private static final int ICONST_0      = 0x03;
+	private static final int BIPUSH        = 0x10;
+	private static final int SIPUSH        = 0x11;
+	private static final int LDC_W         = 0x13;
+	private static final int AALOAD        = 0x32;
+	private static final int POP           = 0x57;
+	private static final int DUP           = 0x59;
+	private static final int IRETURN       = 0xac;
+	private static final int LRETURN       = 0xad;
+	private static final int FRETURN       = 0xae;
+	private static final int DRETURN       = 0xaf;
+	private static final int ARETURN       = 0xb0;
+	private static final int RETURN        = 0xb1;
+	private static final int GETSTATIC     = 0xb2;
+	private static final int PUTSTATIC     = 0xb3;
+	private static final int GETFIELD      = 0xb4;
+	private static final int PUTFIELD      = 0xb5;
+	private static final int INVOKEVIRTUAL = 0xb6;
+	private static final int INVOKESPECIAL = 0xb7;
+	private static final int INVOKESTATIC  = 0xb8;
+
+	private static final String OBJECT_TYPE  = "java/lang/Object";
+	private static final String HANDLE_TYPE  = "java/lang/invoke/MethodHandle";
+	private static final String HANDLE_DESC  = "Ljava/lang/invoke/MethodHandle;";
+	private static final String TARGET_DESC  = descriptor(ProxyTarget.class);
+	private static final String FACTORY_TYPE = internalName(GeneratedProxyFactory.class);
+	private static final String TARGET_FIELD = "target";
+	private static final String HANDLE_FIELD = "handle";
+
+	private String                thisCls;
+	private ByteArrayOutputStream poolBytes;
+	private DataOutputStream      pool;
+	private Map<String, Integer>  poolEntries;
+	private int                   poolCount;
+
+	ProxyClassWriter(String className) {
+		thisCls = className.replace('.', '/');
+		poolBytes = new ByteArrayOutputStream();
+		pool = new DataOutputStream(poolBytes);
+		poolEntries = new HashMap<>();
+		poolCount = 1;
+	}
+
+/**
+ * Generates the class file of the proxy class.
+ * <p>
+ *
+ * @param	ifaces the interfaces to be implemented by the proxy class.
+ * @param	methods the methods to be implemented, in the order of the method handles returned by
+ * 			{@link GeneratedProxyFactory#linkage(String)} for this class.
+ * @return	the class file bytes.
+ * @throws	IOException never, since all output is written to memory.
+ */
+
+	byte[] generate(Class<?>[] ifaces, List<Method> methods) throws IOException {
+		ByteArrayOutputStream bodyBytes = new ByteArrayOutputStream();
+		DataOutputStream body = new DataOutputStream(bodyBytes);
+
+		body.writeShort(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+		body.writeShort(classRef(thisCls));
+		body.writeShort(classRef(OBJECT_TYPE));
+		body.writeShort(ifaces.length);
+		for(Class<?> iface : ifaces) {
+			body.writeShort(classRef(internalName(iface)));
+		}
+
+		body.writeShort(methods.size() + 1);
+		body.writeShort(ACC_PRIVATE | ACC_FINAL);
+		body.writeShort(utf8(TARGET_FIELD));
+		body.writeShort(utf8(TARGET_DESC));
+		body.writeShort(0);
+		for(int i = 0; i < methods.size(); i++) {
+			body.writeShort(ACC_PRIVATE | ACC_STATIC | ACC_FINAL);
+			body.writeShort(utf8(HANDLE_FIELD + i));
+			body.writeShort(utf8(HANDLE_DESC));
+			body.writeShort(0);
+		}
+
+		body.writeShort(methods.size() + 2);
+		writeConstructor(body);
+		writeInitializer(body, methods.size());
+		for(int i = 0; i < methods.size(); i++) {
+			writeMethod(body, methods.get(i), i);
+		}
+		body.writeShort(0);
+
+		ByteArrayOutputStream result = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(result);
+		out.writeInt(0xcafebabe);
+		out.writeShort(0);
+		out.writeShort(CLASS_VERSION);
+		out.writeShort(poolCount);
+		poolBytes.writeTo(out);
+		bodyBytes.writeTo(out);
+		out.flush();
+		return result.toByteArray();
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+	// Helper methods
+
+	private void writeConstructor(DataOutputStream out) throws IOException {
+		ByteArrayOutputStream code = new ByteArrayOutputStream();
+		code.write(ALOAD_0);
+		code.write(INVOKESPECIAL);
+		writeShort(code, methodRef(OBJECT_TYPE, "<init>", "()V"));
+		code.write(ALOAD_0);
+		code.write(ALOAD_1);
+		code.write(PUTFIELD);
+		writeShort(code, fieldRef(thisCls, TARGET_FIELD, TARGET_DESC));
+		code.write(RETURN);
+		writeMethodInfo(out, ACC_PUBLIC, "<init>", "(" + TARGET_DESC + ")V", code, 2, 2);
+	}
+
+	private void writeInitializer(DataOutputStream out, int handleCount) throws IOException {
+		ByteArrayOutputStream code = new ByteArrayOutputStream();
+		code.write(LDC_W);
+		writeShort(code, string(thisCls.replace('/', '.')));
+		code.write(INVOKESTATIC);
+		writeShort(code, methodRef(FACTORY_TYPE, "linkage", "(Ljava/lang/String;)[" + HANDLE_DESC));
+		for(int i = 0; i < handleCount; i++) {
+			code.write(DUP);
+			pushInt(code, i);
+			code.write(AALOAD);
+			code.write(PUTSTATIC);
+			writeShort(code, fieldRef(thisCls, HANDLE_FIELD + i, HANDLE_DESC));
+		}
+		code.write(POP);
+		code.write(RETURN);
+		writeMethodInfo(out, ACC_STATIC, "<clinit>", "()V", code, 3, 0);
+	}
+
+	private void writeMethod(DataOutputStream out, Method method, int handleIndex) throws IOException {
+		ByteArrayOutputStream code = new ByteArrayOutputStream();
+		code.write(GETSTATIC);
+		writeShort(code, fieldRef(thisCls, HANDLE_FIELD + handleIndex, HANDLE_DESC));
+		code.write(ALOAD_0);
+		code.write(GETFIELD);
+		writeShort(code, fieldRef(thisCls, TARGET_FIELD, TARGET_DESC));
+
+		StringBuilder handleDesc = new StringBuilder("(").append(TARGET_DESC);
+		int slot = 1;
+		for(Class<?> paramType : method.getParameterTypes()) {
+			code.write(loadOpcode(paramType));
+			code.write(slot);
+			slot += slotSize(paramType);
+			handleDesc.append(descriptor(paramType));
+		}
+		handleDesc.append(')').append(descriptor(method.getReturnType()));
+		code.write(INVOKEVIRTUAL);
+		writeShort(code, methodRef(HANDLE_TYPE, "invokeExact", handleDesc.toString()));
+		code.write(returnOpcode(method.getReturnType()));
+
+		int maxStack = Math.max(slot + 1, slotSize(method.getReturnType()));
+		writeMethodInfo(out, ACC_PUBLIC | ACC_FINAL, method.getName(), methodDescriptor(method),
+				code, maxStack, slot);
+	}
+
+	private void writeMethodInfo(DataOutputStream out, int access, String name, String desc,
+			ByteArrayOutputStream code, int maxStack, int maxLocals) throws IOException {
+		out.writeShort(access);
+		out.writeShort(utf8(name));
+		out.writeShort(utf8(desc));
+		out.writeShort(1);
+		out.writeShort(utf8("Code"));
+		out.writeInt(12 + code.size());
+		out.writeShort(maxStack);
+		out.writeShort(maxLocals);
+		out.writeInt(code.size());
+		code.writeTo(out);
+		out.writeShort(0); // exception table
+		out.writeShort(0); // code attributes
+	}
+
+	private static void pushInt(ByteArrayOutputStream code, int value) {
+		if(value <= 5) {
+			code.write(ICONST_0 + value);
+		}
+		else if(value <= Byte.MAX_VALUE) {
+			code.write(BIPUSH);
+			code.write(value);
+		}
+		else {
+			code.write(SIPUSH);
+			writeShort(code, value);
+		}
+	}
+
+	private static void writeShort(ByteArrayOutputStream code, int value) {
+		code.write((value >>> 8) & 0xff);
+		code.write(value & 0xff);
+	}
+
+	private static int loadOpcode(Class<?> type) {
+		if(!type.isPrimitive()) {
+			return ALOAD;
+		}
+		if(type == long.class) {
+			return LLOAD;
+		}
+		if(type == float.class) {
+			return FLOAD;
+		}
+		if(type == double.class) {
+			return DLOAD;
+		}
+		return ILOAD;
+	}
+
+	private static int returnOpcode(Class<?> type) {
+		if(type == void.class) {
+			return RETURN;
+		}
+		if(!type.isPrimitive()) {
+			return ARETURN;
+		}
+		if(type == long.class) {
+			return LRETURN;
+		}
+		if(type == float.class) {
+			return FRETURN;
+		}
+		if(type == double.class) {
+			return DRETURN;
+		}
+		return IRETURN;
+	}
+
+	private static int slotSize(Class<?> type) {
+		if(type == void.class) {
+			return 0;
+		}
+		return (type == long.class || type == double.class) ? 2 : 1;
+	}
+
+	private static String internalName(Class<?> cls) {
+		return cls.getName().replace('.', '/');
+	}
+
+	private static String methodDescriptor(Method method) {
+		StringBuilder result = new StringBuilder("(");
+		for(Class<?> paramType : method.getParameterTypes()) {
+			result.append(descriptor(paramType));
+		}
+		return result.append(')').append(descriptor(method.getReturnType())).toString();
+	}
+
+	static String descriptor(Class<?> type) {
+		if(type.isArray()) {
+			return type.getName().replace('.', '/');
+		}
+		if(!type.isPrimitive()) {
+			return "L" + internalName(type) + ";";
+		}
+		if(type == void.class) {
+			return "V";
+		}
+		if(type == boolean.class) {
+			return "Z";
+		}
+		if(type == byte.class) {
+			return "B";
+		}
+		if(type == char.class) {
+			return "C";
+		}
+		if(type == short.class) {
+			return "S";
+		}
+		if(type == int.class) {
+			return "I";
+		}
+		if(type == long.class) {
+			return "J";
+		}
+		if(type == float.class) {
+			return "F";
+		}
+		return "D";
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+	// Constant pool
+
+	private int utf8(String value) throws IOException {
+		String key = "U" + value;
+		Integer index = poolEntries.get(key);
+		if(index != null) {
+			return index;
+		}
+		pool.writeByte(CONST_UTF8);
+		pool.writeUTF(value);
+		return addEntry(key);
+	}
+
+	private int classRef(String internalName) throws IOException {
+		return indexedEntry(CONST_CLASS, "C" + internalName, utf8(internalName));
+	}
+
+	private int string(String value) throws IOException {
+		return indexedEntry(CONST_STRING, "S" + value, utf8(value));
+	}
+
+	private int fieldRef(String owner, String name, String desc) throws IOException {
+		return memberRef(CONST_FIELDREF, owner, name, desc);
+	}
+
+	private int methodRef(String owner, String name, String desc) throws IOException {
+		return memberRef(CONST_METHODREF, owner, name, desc);
+	}
+
+	private int memberRef(int tag, String owner, String name, String desc) throws IOException {
+		String key = tag + owner + "." + name + ":" + desc;
+		Integer index = poolEntries.get(key);
+		if(index != null) {
+			return index;
+		}
+		int ownerIndex = classRef(owner);
+		int natIndex = nameAndType(name, desc);
+		pool.writeByte(tag);
+		pool.writeShort(ownerIndex);
+		pool.writeShort(natIndex);
+		return addEntry(key);
+	}
+
+	private int nameAndType(String name, String desc) throws IOException {
+		String key = "N" + name + ":" + desc;
+		Integer index = poolEntries.get(key);
+		if(index != null) {
+			return index;
+		}
+		int nameIndex = utf8(name);
+		int descIndex = utf8(desc);
+		pool.writeByte(CONST_NAMEANDTYPE);
+		pool.writeShort(nameIndex);
+		pool.writeShort(descIndex);
+		return addEntry(key);
+	}
+
+	private int indexedEntry(int tag, String key, int refIndex) throws IOException {
+		Integer index = poolEntries.get(key);
+		if(index != null) {
+			return index;
+		}
+		pool.writeByte(tag);
+		pool.writeShort(refIndex);
+		return addEntry(key);
+	}
+
+	private int addEntry(String key) {
+		int index = poolCount++;
+		poolEntries.put(key, index);
+		return index;
+	}
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package com.hashvoid.crossbinder.interceptors.bulkhead;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.hashvoid.crossbinder.dilm.Deadline;
+
+/**
+ * Concurrency limit of a method, adapted to its latency by additive increase and multiplicative
+ * decrease. The latency of each invocation is compared with a baseline, the lowest latency
+ * observed, which slowly drifts towards the observed latency so that it follows lasting changes
+ * downstream. While invocations complete within a tolerance of the baseline, and the limit is
+ * at least half used, the limit grows by one for every limit's worth of invocations. Once an
+ * invocation exceeds the tolerance, the limit is cut by 10%, at most once per observed latency,
+ * so that a burst of slow invocations does not collapse the limit.
+ * <p>
+ *
+ * Admission is lock-free. Invocations beyond the limit either are rejected right away, or wait for
+ * a bounded time in a bounded queue. Latency samples are recorded only if no other thread is
+ * recording one at the same time; under contention some samples are skipped, which only slows
+ * down the adaptation.
+ *
+ * @author poroshuram
+ */
+
+final class AdaptiveLimiter {
+
+	private static final double BACKOFF = 0.9;
+	private static final int    DRIFT   = 1024;
+
+	private String        name;
+	private int           minLimit;
+	private int           maxLimit;
+	private double        tolerance;
+	private long          maxWait;
+	private int           maxQueue;
+
+	private volatile int  limit;
+	private AtomicInteger inflight;
+	private AtomicInteger queued;
+
+	// guarded by the sample lock
+	private ReentrantLock sampleLock;
+	private double        exactLimit;
+	private volatile long baseline;
+	private long          lastDecrease;
+
+	// for invocations waiting to be admitted
+	private ReentrantLock waitLock;
+	private Condition     released;
+
+	private LongAdder     acceptedCount;
+	private LongAdder     rejectedCount;
+
+/**
+ * @param	name the name of the method.
+ * @param	initialLimit the limit until adapted.
+ * @param	minLimit the lowest limit.
+ * @param	maxLimit the highest limit.
+ * @param	tolerance the factor by which the latency may exceed the baseline without the method
+ * 			being considered congested.
+ * @param	maxQueue the maximum number of invocations waiting to be admitted.
+ * @param	maxWaitMillis the time for which invocations may wait to be admitted, zero for
+ * 			invocations beyond the limit to be rejected right away.
+ */
+
+	AdaptiveLimiter(String name, int initialLimit, int minLimit, int maxLimit, double tolerance,
+			int maxQueue, long maxWaitMillis) {
+		this.name = name;
+		this.minLimit = Math.max(1, minLimit);
+		this.maxLimit = Math.max(this.minLimit, maxLimit);
+		this.tolerance = Math.max(1, tolerance);
+		this.maxQueue = Math.max(0, maxQueue);
+		maxWait = TimeUnit.MILLISECONDS.toNanos(Math.max(0, maxWaitMillis));
+
+		exactLimit = Math.max(this.minLimit, Math.min(this.maxLimit, initialLimit));
+		limit = (int) exactLimit;
+		inflight = new AtomicInteger();
+		queued = new AtomicInteger();
+		sampleLock = new ReentrantLock();
+		waitLock = new ReentrantLock();
+		released = waitLock.newCondition();
+		acceptedCount = new LongAdder();
+		rejectedCount = new LongAdder();
+	}
+
+/**
+ * Admits an invocation, waiting for it to be admitted if so configured. The wait is cut short by
+ * the deadline of the calling thread, if any.
+ * <p>
+ *
+ * @throws	BulkheadRejectedException if the invocation is not admitted.
+ */
+
+	void acquire() throws BulkheadRejectedException {
+		if(tryAcquire()) {
+			acceptedCount.increment();
+			return;
+		}
+		if(maxWait == 0 || queued.incrementAndGet() > maxQueue) {
+			if(maxWait > 0) {
+				queued.decrementAndGet();
+			}
+			reject("concurrency limit reached");
+		}
+		try {
+			await();
+		}
+		finally {
+			queued.decrementAndGet();
+		}
+		acceptedCount.increment();
+	}
+
+/**
+ * Releases an admitted invocation once it completes.
+ * <p>
+ *
+ * @param	latency the latency of the invocation, in nanoseconds.
+ */
+
+	void release(long latency) {
+		int current = inflight.getAndDecrement();
+		if(queued.get() > 0) {
+			waitLock.lock();
+			try {
+				released.signal();
+			}
+			finally {
+				waitLock.unlock();
+			}
+		}
+		if(sampleLock.tryLock()) {
+			try {
+				adapt(latency, current);
+			}
+			finally {
+				sampleLock.unlock();
+			}
+		}
+	}
+
+	BulkheadStatistics getStatistics() {
+		return new BulkheadStatistics(name, limit, inflight.get(), queued.get(), baseline / 1000,
+				acceptedCount.sum(), rejectedCount.sum());
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+	// Helper methods
+
+	private boolean tryAcquire() {
+		int current;
+		do {
+			current = inflight.get();
+			if(current >= limit) {
+				return false;
+			}
+		} while(!inflight.compareAndSet(current, current + 1));
+		return true;
+	}
+
+	private void await() {
+		long remaining = maxWait;
+		Deadline deadline = Deadline.current();
+		if(deadline != null) {
+			remaining = Math.min(remaining, deadline.remaining(TimeUnit.NANOSECONDS));
+		}
+		waitLock.lock();
+		try {
+			while(!tryAcquire()) {
+				if(remaining <= 0) {
+					reject("timed out waiting for admission");
+				}
+				remaining = released.awaitNanos(remaining);
+			}
+		}
+		catch(InterruptedException exep) {
+			Thread.currentThread().interrupt();
+			reject("interrupted waiting for admission");
+		}
+		finally {
+			waitLock.unlock();
+		}
+	}
+
+	private void reject(String reason) {
+		rejectedCount.increment();
+		throw new BulkheadRejectedException(String.format("%s, rejecting %s (limit = %d)",
+				reason, name, limit));
+	}
+
+	private void adapt(long latency, int current) {
+		long base = baseline;
+		if(base == 0 || latency < base) {
+			base = latency;
+		}
+		else {
+			base += (latency - base) / DRIFT;
+		}
+		baseline = base;
+
+		if(latency > base * tolerance) {
+			long now = System.nanoTime();
+			if(now - lastDecrease > latency) {
+				exactLimit = Math.max(minLimit, exactLimit * BACKOFF);
+				lastDecrease = now;
+			}
+		}
+		else if(current * 2 >= limit) {
+			exactLimit = Math.min(maxLimit, exactLimit + 1 / exactLimit);
+		}
+		limit = (int) exactLimit;
+	}
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package com.hashvoid.crossbinder.interceptors.bulkhead;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+import com.hashvoid.crossbinder.dilm.Configuration;
+import com.hashvoid.crossbinder.dilm.ConfigurationProvider;
+import com.hashvoid.crossbinder.dilm.Invocation;
+import com.hashvoid.crossbinder.dilm.MethodInterceptor;
+import com.hashvoid.crossbinder.dilm.Order;
+import com.hashvoid.crossbinder.dilm.Pointcut;
+
+/**
+ * Method interceptor that limits the number of concurrent invocations of each method annotated
+ * with {@link Bulkhead}, so that a slow downstream dependency cannot absorb all request threads.
+ * The limit adapts to the latency of the method: it grows while the method responds as fast as
+ * usual, and shrinks when it slows down. Invocations beyond the limit are rejected with a
+ * {@link BulkheadRejectedException}, or wait for a bounded time to be admitted. For methods
+ * returning a <tt>CompletionStage</tt>, an invocation counts against the limit until the stage
+ * completes.
+ * <p>
+ *
+ * The settings are read from the following configuration keys, prefixed with
+ * <tt>crossbinder.bulkhead.</tt>, via the configuration providers of the Crossbinder instance:
+ * <ul>
+ * <li><tt>initialLimit</tt>: the limit before any adaptation, 20 by default.</li>
+ * <li><tt>minLimit</tt> and <tt>maxLimit</tt>: the range of the limit, 1 and 200 by default.</li>
+ * <li><tt>tolerance</tt>: the factor by which the latency may exceed its baseline before the
+ * limit is reduced, 2 by default.</li>
+ * <li><tt>maxWait</tt>: the time in milliseconds for which invocations may wait to be admitted,
+ * zero by default, in which case they are rejected right away.</li>
+ * <li><tt>maxQueue</tt>: the maximum number of waiting invocations, 100 by default.</li>
+ * </ul>
+ * Each setting can be overridden per managed entity or per method via the configuration provider
+ * given to this interceptor, with keys prefixed by <tt>crossbinder.bulkhead.&lt;class&gt;.</tt>
+ * or <tt>crossbinder.bulkhead.&lt;class&gt;.&lt;method&gt;.</tt> respectively, where the class is
+ * the implementation class of the managed entity.
+ * <p>
+ *
+ * This interceptor has an order of 150, so that it applies within the
+ * <tt>CoalescingInterceptor</tt>, and coalesced invocations take up a single place.
+ *
+ * @author poroshuram
+ */
+
+@Order(150)
+@Pointcut(annotatedWith = Bulkhead.class, wrapping = Pointcut.Wrapping.ALWAYS)
+public class BulkheadInterceptor implements MethodInterceptor {
+
+	private static final Logger LOGGER = Logger.getLogger(BulkheadInterceptor.class.getName());
+
+	private static final String PREFIX = "crossbinder.bulkhead.";
+
+	@Configuration(name = "crossbinder.bulkhead.initialLimit")
+	private Integer initialLimit = 20;
+
+	@Configuration(name = "crossbinder.bulkhead.minLimit")
+	private Integer minLimit = 1;
+
+	@Configuration(name = "crossbinder.bulkhead.maxLimit")
+	private Integer maxLimit = 200;
+
+	@Configuration(name = "crossbinder.bulkhead.tolerance")
+	private Double  tolerance = 2.0;
+
+	@Configuration(name = "crossbinder.bulkhead.maxWait")
+	private Long    maxWait = 0L;
+
+	@Configuration(name = "crossbinder.bulkhead.maxQueue")
+	private Integer maxQueue = 100;
+
+	private ConfigurationProvider                      config;
+	private ConcurrentHashMap<Method, AdaptiveLimiter> limiters;
+
+	public BulkheadInterceptor() {
+		this(null);
+	}
+
+/**
+ * @param	config the source of per-entity and per-method settings, <tt>null</tt> if none.
+ */
+
+	public BulkheadInterceptor(ConfigurationProvider config) {
+		this.config = config;
+		limiters = new ConcurrentHashMap<>();
+	}
+
+/**
+ * @return	the current limit, in-flight and queued invocations, and counters for each method
+ * 			invoked so far, keyed on the method name in the form <tt>class#method</tt>.
+ */
+
+	public Map<String, BulkheadStatistics> getStatistics() {
+		Map<String, BulkheadStatistics> result = new TreeMap<>();
+		for(AdaptiveLimiter limiter : limiters.values()) {
+			BulkheadStatistics stats = limiter.getStatistics();
+			result.put(stats.getName(), stats);
+		}
+		return result;
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+	// Methods of interface MethodInterceptor
+
+	@Override
+	public void before(Method method, Object target, Object[] parameters) {
+		// NOOP
+	}
+
+	@Override
+	public void after(Method method, Object target, Object retVal) {
+		// NOOP
+	}
+
+	@Override
+	public boolean isWrapped(Method method, Object target) {
+		return true;
+	}
+
+	@Override
+	public Object wrap(Invocation invocation) throws Throwable {
+		AdaptiveLimiter limiter = limiters.get(invocation.getMethod());
+		if(limiter == null) {
+			Class<?> implCls = invocation.getTarget().getClass();
+			limiter = limiters.computeIfAbsent(invocation.getMethod(), mthd -> createLimiter(implCls, mthd));
+		}
+		limiter.acquire();
+		long start = System.nanoTime();
+		Object result;
+		try {
+			result = invocation.proceed();
+		}
+		catch(Throwable exep) {
+			limiter.release(System.nanoTime() - start);
+			throw exep;
+		}
+		if(result instanceof CompletionStage) {
+			AdaptiveLimiter stageLimiter = limiter;
+			((CompletionStage<?>) result).whenComplete(
+					(value, exep) -> stageLimiter.release(System.nanoTime() - start));
+		}
+		else {
+			limiter.release(System.nanoTime() - start);
+		}
+		return result;
+	}
+
+	@Override
+	public void onError(Method method, Object target, Throwable exep) {
+		// NOOP
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+	// Helper methods
+
+	private AdaptiveLimiter createLimiter(Class<?> implCls, Method method) {
+		String clsPrefix = PREFIX + implCls.getName() + ".";
+		String mthdPrefix = clsPrefix + method.getName() + ".";
+		int initial = getSetting(clsPrefix, mthdPrefix, "initialLimit", Integer.class, initialLimit);
+		int min = getSetting(clsPrefix, mthdPrefix, "minLimit", Integer.class, minLimit);
+		int max = getSetting(clsPrefix, mthdPrefix, "maxLimit", Integer.class, maxLimit);
+		double tol = getSetting(clsPrefix, mthdPrefix, "tolerance", Double.class, tolerance);
+		int queue = getSetting(clsPrefix, mthdPrefix, "maxQueue", Integer.class, maxQueue);
+		long wait = getSetting(clsPrefix, mthdPrefix, "maxWait", Long.class, maxWait);
+
+		String name = implCls.getName() + "#" + method.getName();
+		LOGGER.fine(String.format("bulkhead_method = %s, limit = %d [%d, %d], tolerance = %f, "
+				+ "max_wait = %d, max_queue = %d", name, initial, min, max, tol, wait, queue));
+		return new AdaptiveLimiter(name, initial, min, max, tol, queue, wait);
+	}
+
+	private <T> T getSetting(String clsPrefix, String mthdPrefix, String key, Class<T> type, T defValue) {
+		T result = getConfigValue(mthdPrefix + key, type);
+		if(result == null) {
+			result = getConfigValue(clsPrefix + key, type);
+		}
+		return (result != null) ? result : defValue;
+	}
+
+	private <T> T getConfigValue(String path, Class<T> type) {
+		if(config == null || !config.contains(path)) {
+			return null;
+		}
+		Object value = config.getValue(path, type);
+		if(!type.isInstance(value)) {
+			LOGGER.warning(String.format("configuration %s not of required type %s", path, type.getName()));
+			return null;
+		}
+		return type.cast(value);
+	}
+}
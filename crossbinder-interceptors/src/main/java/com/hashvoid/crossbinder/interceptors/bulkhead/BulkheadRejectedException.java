@@ -0,0 +1,34 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package com.hashvoid.crossbinder.interceptors.bulkhead;
+
+import com.hashvoid.crossbinder.dilm.CrossbinderException;
+
+/**
+ * Exception that is thrown when an invocation of a method is rejected by the
+ * {@link BulkheadInterceptor}, since the concurrency limit of the method is reached, and the
+ * invocation could not be queued or waited for too long. The method is not executed in that case.
+ *
+ * @author poroshuram
+ */
+
+@SuppressWarnings("serial")
+public class BulkheadRejectedException extends CrossbinderException {
+
+	public BulkheadRejectedException(String message) {
+		super(message);
+	}
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package com.hashvoid.crossbinder.interceptors.bulkhead;
+
+/**
+ * Snapshot of the gauges and counters of the bulkhead of a method.
+ *
+ * @author poroshuram
+ */
+
+public class BulkheadStatistics {
+
+	private String name;
+	private int    limit;
+	private int    inflight;
+	private int    queued;
+	private long   baselineLatency;
+	private long   acceptedCount;
+	private long   rejectedCount;
+
+	BulkheadStatistics(String name, int limit, int inflight, int queued, long baselineLatency,
+			long accepted, long rejected) {
+		this.name = name;
+		this.limit = limit;
+		this.inflight = inflight;
+		this.queued = queued;
+		this.baselineLatency = baselineLatency;
+		acceptedCount = accepted;
+		rejectedCount = rejected;
+	}
+
+/**
+ * @return	the name of the method, in the form <tt>class#method</tt>.
+ */
+
+	public String getName() {
+		return name;
+	}
+
+/**
+ * @return	the current concurrency limit of the method.
+ */
+
+	public int getLimit() {
+		return limit;
+	}
+
+/**
+ * @return	the number of invocations of the method currently executing.
+ */
+
+	public int getInflight() {
+		return inflight;
+	}
+
+/**
+ * @return	the number of invocations of the method currently waiting to execute.
+ */
+
+	public int getQueued() {
+		return queued;
+	}
+
+/**
+ * @return	the latency of the method when not congested, in microseconds, against which the
+ * 			observed latency is compared.
+ */
+
+	public long getBaselineLatency() {
+		return baselineLatency;
+	}
+
+	public long getAcceptedCount() {
+		return acceptedCount;
+	}
+
+	public long getRejectedCount() {
+		return rejectedCount;
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+	// Methods of base class Object
+
+	@Override
+	public String toString() {
+		return String.format("%s [limit = %d, inflight = %d, queued = %d, baseline_us = %d, "
+				+ "accepted = %d, rejected = %d]", name, limit, inflight, queued, baselineLatency,
+				acceptedCount, rejectedCount);
+	}
+}
@@ -0,0 +1,253 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package com.hashvoid.crossbinder.interceptors.cache;
+
+import java.io.File;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+import com.hashvoid.crossbinder.dilm.Configuration;
+import com.hashvoid.crossbinder.dilm.ConfigurationProvider;
+import com.hashvoid.crossbinder.dilm.Invocation;
+import com.hashvoid.crossbinder.dilm.MethodInterceptor;
+import com.hashvoid.crossbinder.dilm.Pointcut;
+import com.hashvoid.crossbinder.interceptors.support.InvocationKey;
+
+/**
+ * Method interceptor that caches the results of methods annotated with {@link Cacheable}, keyed
+ * on the parameter values of each invocation. An invocation whose result is cached is answered
+ * from the cache, without calling the method on the managed entity or any interceptors further
+ * down the chain. Exceptions are not cached. Each method has its own cache, shared by all the
+ * instances of the managed entity, which is bounded and evicts results as per the W-TinyLFU
+ * policy.
+ * <p>
+ *
+ * For methods returning a <tt>CompletionStage</tt> or <tt>Future</tt>, the result is cached once
+ * the returned stage completes successfully, and cached results are answered with a completed
+ * <tt>CompletableFuture</tt>. Stages that fail are not cached, nor are results of methods whose
+ * return type a <tt>CompletableFuture</tt> cannot be assigned to, or futures that are not
+ * completion stages.
+ * <p>
+ *
+ * The defaults for cache sizes and expiry are taken from the configuration keys
+ * <tt>crossbinder.cache.maxSize</tt> and <tt>crossbinder.cache.ttl</tt> (in milliseconds), if
+ * available from the configuration providers of the Crossbinder instance.
+ * <p>
+ *
+ * Caches can further be configured per method via the configuration provider given to this
+ * interceptor, with keys prefixed by <tt>crossbinder.cache.&lt;class&gt;.&lt;method&gt;.</tt>,
+ * which take precedence over the {@link Cacheable} annotation:
+ * <ul>
+ * <li><tt>maxSize</tt>: the maximum number of results held on-heap.</li>
+ * <li><tt>ttl</tt>: the time to live of results, in milliseconds.</li>
+ * <li><tt>offHeap</tt>: the number of bytes to be allocated outside the Java heap for results
+ * evicted on-heap, enabling a second tier for methods with large results. Such results are
+ * serialized via the {@link ValueSerializer} of this interceptor, and stored in direct byte
+ * buffers, or in a memory-mapped file if <tt>crossbinder.cache.offHeap.dir</tt> names a
+ * directory for it.</li>
+ * </ul>
+ *
+ * @author poroshuram
+ */
+
+@Pointcut(annotatedWith = Cacheable.class, wrapping = Pointcut.Wrapping.ALWAYS)
+public class CacheInterceptor implements MethodInterceptor {
+
+	private static final Logger LOGGER = Logger.getLogger(CacheInterceptor.class.getName());
+
+	@Configuration(name = "crossbinder.cache.maxSize")
+	private Integer maxSize = 10000;
+
+	@Configuration(name = "crossbinder.cache.ttl")
+	private Long    ttl = 0L;
+
+	@Configuration(name = "crossbinder.cache.offHeap.dir")
+	private String  offHeapDir;
+
+	private ConfigurationProvider                  config;
+	private ValueSerializer                        serializer;
+	private ConcurrentHashMap<Method, ResultCache> caches;
+
+	public CacheInterceptor() {
+		this(null, new JavaSerializer());
+	}
+
+/**
+ * @param	config the source of per-method cache configuration.
+ */
+
+	public CacheInterceptor(ConfigurationProvider config) {
+		this(config, new JavaSerializer());
+	}
+
+/**
+ * @param	config the source of per-method cache configuration, <tt>null</tt> if none.
+ * @param	serializer converts results to be held off-heap to and from bytes.
+ */
+
+	public CacheInterceptor(ConfigurationProvider config, ValueSerializer serializer) {
+		this.config = config;
+		this.serializer = serializer;
+		caches = new ConcurrentHashMap<>();
+	}
+
+/**
+ * @return	statistics for the cache of each method invoked so far, keyed on the method name in
+ * 			the form <tt>class#method</tt>.
+ */
+
+	public Map<String, CacheStatistics> getStatistics() {
+		Map<String, CacheStatistics> result = new TreeMap<>();
+		for(ResultCache cache : caches.values()) {
+			CacheStatistics stats = cache.getStatistics();
+			result.put(stats.getName(), stats);
+		}
+		return result;
+	}
+
+/**
+ * Discards all cached results.
+ */
+
+	public void clear() {
+		for(ResultCache cache : caches.values()) {
+			cache.clear();
+		}
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+	// Methods of interface MethodInterceptor
+
+	@Override
+	public void before(Method method, Object target, Object[] parameters) {
+		// NOOP
+	}
+
+	@Override
+	public void after(Method method, Object target, Object retVal) {
+		// NOOP
+	}
+
+	@Override
+	public boolean isWrapped(Method method, Object target) {
+		return true;
+	}
+
+	@Override
+	public Object wrap(Invocation invocation) throws Throwable {
+		Class<?> returnType = invocation.getMethod().getReturnType();
+		boolean staged = CompletionStage.class.isAssignableFrom(returnType)
+				|| Future.class.isAssignableFrom(returnType);
+		if(staged && !returnType.isAssignableFrom(CompletableFuture.class)) {
+			// cached results could not be handed out as the declared type
+			return invocation.proceed();
+		}
+		ResultCache cache = caches.computeIfAbsent(invocation.getMethod(), this::createCache);
+		InvocationKey key = new InvocationKey(invocation.getArguments());
+		Object value = cache.get(key);
+		if(value != null) {
+			Object result = (value == ResultCache.NULL_VALUE) ? null : value;
+			return staged ? CompletableFuture.completedFuture(result) : result;
+		}
+
+		value = invocation.proceed();
+		if(!staged) {
+			cache.put(key, (value == null) ? ResultCache.NULL_VALUE : value);
+		}
+		else if(value instanceof CompletionStage) {
+			// the outcome is cached rather than the stage, so that failures and pending stages are not
+			((CompletionStage<?>) value).whenComplete((result, exep) -> {
+				if(exep == null) {
+					cache.put(key, (result == null) ? ResultCache.NULL_VALUE : result);
+				}
+			});
+		}
+		return value;
+	}
+
+	@Override
+	public void onError(Method method, Object target, Throwable exep) {
+		// NOOP
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+	// Helper methods
+
+	private ResultCache createCache(Method method) {
+		Cacheable cacheable = findCacheable(method);
+		int size = maxSize;
+		long expiry = ttl;
+		if(cacheable != null && cacheable.maxSize() > 0) {
+			size = cacheable.maxSize();
+		}
+		if(cacheable != null && cacheable.ttl() != 0) {
+			expiry = cacheable.ttl();
+		}
+		String prefix = "crossbinder.cache." + method.getDeclaringClass().getName() + "."
+				+ method.getName() + ".";
+		size = getConfigValue(prefix + "maxSize", Integer.class, size);
+		expiry = getConfigValue(prefix + "ttl", Long.class, expiry);
+		long offHeapSize = getConfigValue(prefix + "offHeap", Long.class, 0L);
+
+		String name = method.getDeclaringClass().getName() + "#" + method.getName();
+		LOGGER.fine(String.format("cached_method = %s, max_size = %d, ttl = %d, off_heap = %d",
+				name, size, expiry, offHeapSize));
+		OffHeapStore offHeap = null;
+		if(offHeapSize > 0) {
+			offHeap = new OffHeapStore(offHeapSize, expiry, serializer,
+					(offHeapDir != null) ? new File(offHeapDir) : null);
+		}
+		return new ResultCache(name, size, expiry, offHeap);
+	}
+
+	private <T> T getConfigValue(String path, Class<T> type, T defValue) {
+		if(config == null || !config.contains(path)) {
+			return defValue;
+		}
+		Object value = config.getValue(path, type);
+		if(!type.isInstance(value)) {
+			LOGGER.warning(String.format("configuration %s not of required type %s", path, type.getName()));
+			return defValue;
+		}
+		return type.cast(value);
+	}
+
+	private Cacheable findCacheable(Method method) {
+		Cacheable result = method.getAnnotation(Cacheable.class);
+		if(result != null) {
+			return result;
+		}
+		for(Class<?> iface : method.getDeclaringClass().getInterfaces()) {
+			try {
+				result = iface.getMethod(method.getName(), method.getParameterTypes())
+						.getAnnotation(Cacheable.class);
+				if(result != null) {
+					return result;
+				}
+			}
+			catch(NoSuchMethodException exep) {
+				// NOOP
+			}
+		}
+		return method.getDeclaringClass().getAnnotation(Cacheable.class);
+	}
+}
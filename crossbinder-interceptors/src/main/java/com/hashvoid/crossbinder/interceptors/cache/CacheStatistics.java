@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package com.hashvoid.crossbinder.interceptors.cache;
+
+/**
+ * Snapshot of the counters of the cache of a method, for sizing the caches.
+ *
+ * @author poroshuram
+ */
+
+public class CacheStatistics {
+
+	private String name;
+	private int    size;
+	private int    maxSize;
+	private int    offHeapSize;
+	private long   hitCount;
+	private long   missCount;
+	private long   offHeapHitCount;
+	private long   evictionCount;
+	private long   expirationCount;
+
+	CacheStatistics(String name, int size, int maxSize, int offHeapSize, long hits, long misses,
+			long offHeapHits, long evictions, long expirations) {
+		this.name = name;
+		this.size = size;
+		this.maxSize = maxSize;
+		this.offHeapSize = offHeapSize;
+		hitCount = hits;
+		missCount = misses;
+		offHeapHitCount = offHeapHits;
+		evictionCount = evictions;
+		expirationCount = expirations;
+	}
+
+/**
+ * @return	the name of the cached method, in the form <tt>class#method</tt>.
+ */
+
+	public String getName() {
+		return name;
+	}
+
+/**
+ * @return	the number of results currently held on-heap.
+ */
+
+	public int getSize() {
+		return size;
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+/**
+ * @return	the number of results currently held off-heap, zero if the method has no off-heap tier.
+ */
+
+	public int getOffHeapSize() {
+		return offHeapSize;
+	}
+
+	public long getHitCount() {
+		return hitCount;
+	}
+
+	public long getMissCount() {
+		return missCount;
+	}
+
+/**
+ * @return	the number of hits served from the off-heap tier, included in the hit count.
+ */
+
+	public long getOffHeapHitCount() {
+		return offHeapHitCount;
+	}
+
+/**
+ * @return	the number of results evicted to keep the cache within its maximum size, not counting
+ * 			results moved off-heap.
+ */
+
+	public long getEvictionCount() {
+		return evictionCount;
+	}
+
+/**
+ * @return	the number of results removed after their time to live.
+ */
+
+	public long getExpirationCount() {
+		return expirationCount;
+	}
+
+/**
+ * @return	the ratio of hits to lookups, zero if there were no lookups.
+ */
+
+	public double getHitRate() {
+		long total = hitCount + missCount;
+		return (total == 0) ? 0 : (double) hitCount / total;
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+	// Methods of base class Object
+
+	@Override
+	public String toString() {
+		return String.format("%s [size = %d/%d, off_heap_size = %d, hits = %d, misses = %d, "
+				+ "off_heap_hits = %d, evictions = %d, expirations = %d]", name, size, maxSize,
+				offHeapSize, hitCount, missCount, offHeapHitCount, evictionCount, expirationCount);
+	}
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package com.hashvoid.crossbinder.interceptors.cache;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Decorates a method on a managed entity for its results to be cached by the
+ * {@link CacheInterceptor}. When present on the class, all its methods are cached. The method
+ * must be a pure function of its parameters: results are cached by parameter values alone, and
+ * shared across all instances of the managed entity. Exceptions raised by the method are not
+ * cached.
+ * <p>
+ *
+ * Each annotated method has its own cache. Unless specified on the annotation, the maximum size
+ * and the time to live of the cache are as configured on the interceptor.
+ *
+ * @author poroshuram
+ */
+
+@Target({ ElementType.METHOD, ElementType.TYPE })
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Cacheable {
+
+/**
+ * @return	the maximum number of results to be cached for the method, zero to use the configured
+ * 			default.
+ */
+
+	int maxSize() default 0;
+
+/**
+ * @return	the time in milliseconds after which a cached result expires, zero to use the
+ * 			configured default, and a negative value for results to never expire.
+ */
+
+	long ttl() default 0;
+}
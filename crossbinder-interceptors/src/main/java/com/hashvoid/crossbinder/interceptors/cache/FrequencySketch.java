@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package com.hashvoid.crossbinder.interceptors.cache;
+
+/**
+ * Approximates the access frequency of cache keys, as the admission filter of the
+ * {@link ResultCache}. This is a count-min sketch of four rows, with 4-bit counters packed sixteen
+ * to a <tt>long</tt>, so that the frequency of a key is capped at 15. Once the number of recorded
+ * accesses reaches ten times the maximum size of the cache, all counters are halved, so that keys
+ * that were popular a long time ago do not stay in the cache forever.
+ * <p>
+ *
+ * Not thread-safe, access is guarded by the owning cache.
+ *
+ * @author poroshuram
+ */
+
+final class FrequencySketch {
+
+	private static final long[] SEEDS = {
+			0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+
+	private static final long RESET_MASK = 0x7777777777777777L;
+	private static final long ONE_MASK   = 0x1111111111111111L;
+
+	private long[] table;
+	private int    tableMask;
+	private int    sampleSize;
+	private int    additions;
+
+	FrequencySketch(int maxSize) {
+		int capacity = Integer.highestOneBit(Math.max(maxSize, 8) - 1) << 1;
+		table = new long[capacity];
+		tableMask = capacity - 1;
+		sampleSize = (maxSize > Integer.MAX_VALUE / 10) ? Integer.MAX_VALUE : maxSize * 10;
+	}
+
+/**
+ * @param	hash the hash code of the key.
+ * @return	the estimated number of times the key was accessed, between 0 and 15.
+ */
+
+	int frequency(int hash) {
+		int spread = spread(hash);
+		int start = (spread & 3) << 2;
+		int result = Integer.MAX_VALUE;
+		for(int i = 0; i < 4; i++) {
+			int count = (int) ((table[indexOf(spread, i)] >>> ((start + i) << 2)) & 0xfL);
+			result = Math.min(result, count);
+		}
+		return result;
+	}
+
+/**
+ * Records an access of a key.
+ * <p>
+ *
+ * @param	hash the hash code of the key.
+ */
+
+	void increment(int hash) {
+		int spread = spread(hash);
+		int start = (spread & 3) << 2;
+		boolean added = false;
+		for(int i = 0; i < 4; i++) {
+			added |= incrementAt(indexOf(spread, i), start + i);
+		}
+		if(added && ++additions == sampleSize) {
+			reset();
+		}
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+	// Helper methods
+
+	private boolean incrementAt(int index, int counter) {
+		int offset = counter << 2;
+		long mask = 0xfL << offset;
+		if((table[index] & mask) != mask) {
+			table[index] += 1L << offset;
+			return true;
+		}
+		return false;
+	}
+
+	private void reset() {
+		// halve all counters, accounting for the truncation of odd counts
+		int oddCount = 0;
+		for(int i = 0; i < table.length; i++) {
+			oddCount += Long.bitCount(table[i] & ONE_MASK);
+			table[i] = (table[i] >>> 1) & RESET_MASK;
+		}
+		additions = (additions >>> 1) - (oddCount >>> 2);
+	}
+
+	private int indexOf(int spread, int row) {
+		long hash = (spread + SEEDS[row]) * SEEDS[row];
+		hash += hash >>> 32;
+		return ((int) hash) & tableMask;
+	}
+
+	private static int spread(int hash) {
+		int result = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+		result = ((result >>> 16) ^ result) * 0x45d9f3b;
+		return (result >>> 16) ^ result;
+	}
+}
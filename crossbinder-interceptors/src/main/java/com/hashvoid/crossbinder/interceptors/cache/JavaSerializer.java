@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package com.hashvoid.crossbinder.interceptors.cache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+/**
+ * Value serializer based on Java object serialization, the default of the {@link CacheInterceptor}.
+ * Method results that do not implement <tt>java.io.Serializable</tt> are kept on-heap only.
+ *
+ * @author poroshuram
+ */
+
+public class JavaSerializer implements ValueSerializer {
+
+	////////////////////////////////////////////////////////////////////////////
+	// Methods of interface ValueSerializer
+
+	@Override
+	public byte[] serialize(Object value) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try(ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+			out.writeObject(value);
+		}
+		return bytes.toByteArray();
+	}
+
+	@Override
+	public Object deserialize(byte[] data) throws IOException {
+		try(ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(data))) {
+			return in.readObject();
+		}
+		catch(ClassNotFoundException exep) {
+			throw new IOException(exep);
+		}
+	}
+}
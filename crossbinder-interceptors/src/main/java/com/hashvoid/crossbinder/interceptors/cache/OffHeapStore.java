@@ -0,0 +1,325 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package com.hashvoid.crossbinder.interceptors.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.StampedLock;
+import java.util.logging.Logger;
+
+/**
+ * Second tier of a {@link ResultCache}, holding serialized method results outside the Java heap,
+ * so that large results do not add to garbage collection pauses. The store is made up of a ring of
+ * fixed size slabs, either direct byte buffers or regions of a memory-mapped file. Values are
+ * appended to the current slab; once it is full, the next slab in the ring is emptied and reused,
+ * which evicts the oldest values wholesale. Only the index of the store is kept on-heap.
+ * <p>
+ *
+ * Reads do not block writes: a reader copies the value out of its slab optimistically, and
+ * discards the copy if the slab was reused in the meantime.
+ *
+ * @author poroshuram
+ */
+
+final class OffHeapStore {
+
+	private static final Logger LOGGER = Logger.getLogger(OffHeapStore.class.getName());
+
+	private static final int MIN_SLAB_SIZE = 64 * 1024;
+	private static final int MAX_SLABS     = 16;
+
+	private ValueSerializer                  serializer;
+	private long                             ttlNanos;
+	private ConcurrentHashMap<Object, Entry> index;
+	private Slab[]                           slabs;
+	private int                              slabSize;
+
+	// guards appends, and the current slab
+	private ReentrantLock appendLock;
+	private int           current;
+
+	// exclusively held while a slab is reused
+	private StampedLock recycleLock;
+
+	private LongAdder evictionCount;
+	private LongAdder expirationCount;
+
+/**
+ * @param	capacity the number of bytes to be allocated for values.
+ * @param	ttlMillis the time to live of values, zero or negative for values to never expire.
+ * @param	serializer converts values to and from bytes.
+ * @param	dir the directory in which to create the file to be memory-mapped, <tt>null</tt> for
+ * 			direct byte buffers.
+ */
+
+	OffHeapStore(long capacity, long ttlMillis, ValueSerializer serializer, File dir) {
+		this.serializer = serializer;
+		ttlNanos = (ttlMillis > 0) ? ttlMillis * 1000000L : 0;
+		index = new ConcurrentHashMap<>();
+
+		int count = (int) Math.max(2, Math.min(MAX_SLABS, capacity / MIN_SLAB_SIZE));
+		slabSize = (int) Math.min(Integer.MAX_VALUE, Math.max(MIN_SLAB_SIZE, capacity / count));
+		slabs = new Slab[count];
+		ByteBuffer[] buffers = null;
+		if(dir != null) {
+			buffers = mapFile(dir, count);
+		}
+		for(int i = 0; i < count; i++) {
+			slabs[i] = new Slab((buffers != null) ? buffers[i] : ByteBuffer.allocateDirect(slabSize));
+		}
+
+		appendLock = new ReentrantLock();
+		recycleLock = new StampedLock();
+		evictionCount = new LongAdder();
+		expirationCount = new LongAdder();
+	}
+
+/**
+ * Stores a value, replacing any value previously stored under the same key. Values which cannot
+ * be serialized, or do not fit into a slab, are not stored.
+ * <p>
+ *
+ * @param	key the key of the value.
+ * @param	value the value, {@link ResultCache#NULL_VALUE} for <tt>null</tt>.
+ * @param	writeTime the time at which the value was originally cached, as per
+ * 			<tt>System.nanoTime()</tt>.
+ * @return	<tt>true</tt> if the value was stored, <tt>false</tt> otherwise.
+ */
+
+	boolean put(Object key, Object value, long writeTime) {
+		byte[] data = null;
+		if(value != ResultCache.NULL_VALUE) {
+			try {
+				data = serializer.serialize(value);
+			}
+			catch(IOException | RuntimeException exep) {
+				LOGGER.fine(String.format("unserializable_value = %s, reason = %s",
+						value.getClass().getName(), exep.getMessage()));
+				return false;
+			}
+			if(data.length > slabSize) {
+				return false;
+			}
+		}
+		int length = (data == null) ? 0 : data.length;
+
+		appendLock.lock();
+		try {
+			Slab slab = slabs[current];
+			if(slab.position + length > slabSize) {
+				current = (current + 1) % slabs.length;
+				slab = slabs[current];
+				recycle(slab);
+			}
+			if(data != null) {
+				ByteBuffer view = slab.buffer.duplicate();
+				view.position(slab.position);
+				view.put(data);
+			}
+			Entry entry = new Entry(key, current, slab.generation, slab.position,
+					(data == null) ? -1 : length, writeTime);
+			slab.position += length;
+			slab.entries.add(entry);
+			index.put(key, entry);
+		}
+		finally {
+			appendLock.unlock();
+		}
+		return true;
+	}
+
+/**
+ * Moves a value from this store into the first tier, keeping the time at which it was originally
+ * cached.
+ * <p>
+ *
+ * @param	key the key of the value.
+ * @param	target the first tier cache.
+ * @return	the value, {@link ResultCache#NULL_VALUE} for <tt>null</tt>, or <tt>null</tt> if not
+ * 			present, expired, or not readable.
+ */
+
+	Object take(Object key, ResultCache target) {
+		Entry entry = index.get(key);
+		if(entry == null) {
+			return null;
+		}
+		index.remove(key, entry);
+		if(ttlNanos > 0 && System.nanoTime() - entry.writeTime >= ttlNanos) {
+			expirationCount.increment();
+			return null;
+		}
+		Object value = ResultCache.NULL_VALUE;
+		if(entry.length >= 0) {
+			byte[] data = read(entry);
+			if(data == null) {
+				return null;
+			}
+			try {
+				value = serializer.deserialize(data);
+			}
+			catch(IOException | RuntimeException exep) {
+				LOGGER.fine(String.format("undeserializable_value, reason = %s", exep.getMessage()));
+				return null;
+			}
+		}
+		target.put(key, value, entry.writeTime);
+		return value;
+	}
+
+	void clear() {
+		appendLock.lock();
+		try {
+			for(Slab slab : slabs) {
+				recycle(slab);
+			}
+			current = 0;
+			index.clear();
+		}
+		finally {
+			appendLock.unlock();
+		}
+	}
+
+	int size() {
+		return index.size();
+	}
+
+	long getEvictionCount() {
+		return evictionCount.sum();
+	}
+
+	long getExpirationCount() {
+		return expirationCount.sum();
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+	// Helper methods
+
+	private byte[] read(Entry entry) {
+		Slab slab = slabs[entry.slab];
+		byte[] result = new byte[entry.length];
+		long stamp = recycleLock.tryOptimisticRead();
+		if(stamp != 0 && copy(slab, entry, result) && recycleLock.validate(stamp)) {
+			return result;
+		}
+		stamp = recycleLock.readLock();
+		try {
+			return copy(slab, entry, result) ? result : null;
+		}
+		finally {
+			recycleLock.unlockRead(stamp);
+		}
+	}
+
+	private boolean copy(Slab slab, Entry entry, byte[] dest) {
+		if(slab.generation != entry.generation) {
+			return false;
+		}
+		ByteBuffer view = slab.buffer.duplicate();
+		view.position(entry.offset);
+		view.get(dest);
+		return true;
+	}
+
+	private void recycle(Slab slab) {
+		long stamp = recycleLock.writeLock();
+		try {
+			slab.generation++;
+		}
+		finally {
+			recycleLock.unlockWrite(stamp);
+		}
+		for(Entry entry : slab.entries) {
+			if(index.remove(entry.key, entry)) {
+				evictionCount.increment();
+			}
+		}
+		slab.entries.clear();
+		slab.position = 0;
+	}
+
+	private ByteBuffer[] mapFile(File dir, int count) {
+		try {
+			File file = File.createTempFile("crossbinder-cache-", ".slabs", dir);
+			file.deleteOnExit();
+			ByteBuffer[] result = new ByteBuffer[count];
+			try(RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+				FileChannel channel = raf.getChannel();
+				for(int i = 0; i < count; i++) {
+					result[i] = channel.map(FileChannel.MapMode.READ_WRITE, (long) i * slabSize, slabSize);
+				}
+			}
+			LOGGER.fine(String.format("mapped_file = %s, size = %d", file, (long) count * slabSize));
+			return result;
+		}
+		catch(IOException exep) {
+			LOGGER.warning(String.format("cannot map cache file in %s, using direct buffers: %s",
+					dir, exep.getMessage()));
+			return null;
+		}
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+	// Inner class for a region of memory holding values
+
+	private static final class Slab {
+
+		private ByteBuffer      buffer;
+		private List<Entry>     entries;
+
+		// modified under the recycle lock, read under it or optimistically
+		private volatile int    generation;
+
+		// guarded by the append lock
+		private int             position;
+
+		Slab(ByteBuffer buffer) {
+			this.buffer = buffer;
+			entries = new ArrayList<>();
+		}
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+	// Inner class for the location of a value
+
+	private static final class Entry {
+
+		private Object key;
+		private int    slab;
+		private int    generation;
+		private int    offset;
+		private int    length;
+		private long   writeTime;
+
+		Entry(Object key, int slab, int generation, int offset, int length, long writeTime) {
+			this.key = key;
+			this.slab = slab;
+			this.generation = generation;
+			this.offset = offset;
+			this.length = length;
+			this.writeTime = writeTime;
+		}
+	}
+}
@@ -0,0 +1,408 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package com.hashvoid.crossbinder.interceptors.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded, concurrent cache of method results with W-TinyLFU eviction. New entries are admitted
+ * into a small LRU window (1% of the capacity). Entries leaving the window compete for a place in
+ * the main space, a segmented LRU made up of a probation and a protected segment: the entry
+ * leaving the window is kept only if its estimated access frequency is higher than that of the
+ * entry it would displace. Entries accessed while on probation move to the protected segment.
+ * This keeps frequently used results in the cache in the face of scans and one-off keys.
+ * <p>
+ *
+ * Lookups do not block: entries are held in a concurrent map, while the eviction policy is guarded
+ * by a lock. A lookup updates the policy only if the lock is free, so that under contention some
+ * accesses are not recorded, which only affects the precision of the policy. Entries may also
+ * expire a fixed time after they were written; expired entries are removed when looked up, or
+ * evicted by the policy like any other entry.
+ * <p>
+ *
+ * Optionally, entries evicted by the policy are moved to a second tier held off-heap, from where
+ * they are moved back into this cache when looked up again.
+ *
+ * @author poroshuram
+ */
+
+final class ResultCache {
+
+	static final Object NULL_VALUE = new Object();
+
+	private static final int MAX_CAPACITY = 1 << 30;
+
+	private static final int WINDOW   = 0;
+	private static final int PROBATION = 1;
+	private static final int PROTECTED = 2;
+
+	private String                      name;
+	private int                         maxSize;
+	private long                        ttlNanos;
+	private ConcurrentHashMap<Object, Node> entries;
+	private OffHeapStore                offHeap;
+
+	// guards the eviction policy
+	private ReentrantLock   policyLock;
+	private FrequencySketch sketch;
+	private AccessQueue     window;
+	private AccessQueue     probation;
+	private AccessQueue     protect;
+	private int             maxWindow;
+	private int             maxProtected;
+
+	private LongAdder hitCount;
+	private LongAdder missCount;
+	private LongAdder evictionCount;
+	private LongAdder expirationCount;
+	private LongAdder offHeapHitCount;
+
+/**
+ * @param	name the name of the cached method.
+ * @param	maxSize the maximum number of entries held on-heap.
+ * @param	ttlMillis the time to live of entries, zero or negative for entries to never expire.
+ * @param	offHeap the second tier for evicted entries, <tt>null</tt> if none.
+ */
+
+	ResultCache(String name, int maxSize, long ttlMillis, OffHeapStore offHeap) {
+		this.name = name;
+		this.maxSize = Math.min(Math.max(maxSize, 1), MAX_CAPACITY);
+		ttlNanos = (ttlMillis > 0) ? ttlMillis * 1000000L : 0;
+		entries = new ConcurrentHashMap<>();
+		this.offHeap = offHeap;
+
+		policyLock = new ReentrantLock();
+		sketch = new FrequencySketch(this.maxSize);
+		window = new AccessQueue();
+		probation = new AccessQueue();
+		protect = new AccessQueue();
+		maxWindow = Math.max(1, this.maxSize / 100);
+		maxProtected = (int) ((this.maxSize - maxWindow) * 0.8);
+
+		hitCount = new LongAdder();
+		missCount = new LongAdder();
+		evictionCount = new LongAdder();
+		expirationCount = new LongAdder();
+		offHeapHitCount = new LongAdder();
+	}
+
+/**
+ * Looks up a cached value.
+ * <p>
+ *
+ * @param	key the key of the value.
+ * @return	the cached value, {@link #NULL_VALUE} for <tt>null</tt>, or <tt>null</tt> if not
+ * 			present or expired.
+ */
+
+	Object get(Object key) {
+		Node node = entries.get(key);
+		if(node == null) {
+			if(offHeap != null) {
+				Object value = offHeap.take(key, this);
+				if(value != null) {
+					hitCount.increment();
+					offHeapHitCount.increment();
+					return value;
+				}
+			}
+			missCount.increment();
+			recordMiss(key);
+			return null;
+		}
+		if(isExpired(node, System.nanoTime())) {
+			missCount.increment();
+			expire(node);
+			return null;
+		}
+		hitCount.increment();
+		recordHit(node);
+		return node.value;
+	}
+
+/**
+ * Caches a value, evicting other values if the cache grows beyond its maximum size. The value
+ * itself may be evicted right away, if it is not deemed worth keeping.
+ * <p>
+ *
+ * @param	key the key of the value.
+ * @param	value the value to be cached, {@link #NULL_VALUE} for <tt>null</tt>.
+ */
+
+	void put(Object key, Object value) {
+		put(key, value, System.nanoTime());
+	}
+
+	void put(Object key, Object value, long writeTime) {
+		List<Node> evicted = (offHeap != null) ? new ArrayList<>(2) : null;
+		policyLock.lock();
+		try {
+			Node node = entries.get(key);
+			if(node != null) {
+				node.value = value;
+				node.writeTime = writeTime;
+				onAccess(node);
+				return;
+			}
+			node = new Node(key, value, writeTime);
+			entries.put(key, node);
+			onAdd(node, evicted);
+		}
+		finally {
+			policyLock.unlock();
+		}
+		// serialization is expensive, so evicted entries are moved off-heap outside the lock
+		if(evicted != null) {
+			long now = System.nanoTime();
+			for(Node node : evicted) {
+				if(isExpired(node, now)) {
+					expirationCount.increment();
+				}
+				else if(!offHeap.put(node.key, node.value, node.writeTime)) {
+					evictionCount.increment();
+				}
+			}
+		}
+	}
+
+	void clear() {
+		policyLock.lock();
+		try {
+			entries.clear();
+			window.clear();
+			probation.clear();
+			protect.clear();
+		}
+		finally {
+			policyLock.unlock();
+		}
+		if(offHeap != null) {
+			offHeap.clear();
+		}
+	}
+
+	CacheStatistics getStatistics() {
+		if(offHeap == null) {
+			return new CacheStatistics(name, entries.size(), maxSize, 0, hitCount.sum(),
+					missCount.sum(), 0, evictionCount.sum(), expirationCount.sum());
+		}
+		return new CacheStatistics(name, entries.size(), maxSize, offHeap.size(), hitCount.sum(),
+				missCount.sum(), offHeapHitCount.sum(), evictionCount.sum() + offHeap.getEvictionCount(),
+				expirationCount.sum() + offHeap.getExpirationCount());
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+	// Helper methods
+
+	private boolean isExpired(Node node, long now) {
+		return ttlNanos > 0 && now - node.writeTime >= ttlNanos;
+	}
+
+	private void recordHit(Node node) {
+		if(policyLock.tryLock()) {
+			try {
+				// skip if evicted or replaced since the lookup
+				if(node.queue != null) {
+					onAccess(node);
+				}
+			}
+			finally {
+				policyLock.unlock();
+			}
+		}
+	}
+
+	private void recordMiss(Object key) {
+		if(policyLock.tryLock()) {
+			try {
+				sketch.increment(key.hashCode());
+			}
+			finally {
+				policyLock.unlock();
+			}
+		}
+	}
+
+	private void expire(Node node) {
+		policyLock.lock();
+		try {
+			// another thread may have refreshed or removed the entry in the meantime
+			if(node.queue != null && isExpired(node, System.nanoTime())) {
+				remove(node);
+				expirationCount.increment();
+			}
+		}
+		finally {
+			policyLock.unlock();
+		}
+	}
+
+	private void onAccess(Node node) {
+		sketch.increment(node.key.hashCode());
+		if(node.queueType == WINDOW || node.queueType == PROTECTED) {
+			node.queue.moveToTail(node);
+			return;
+		}
+		// promote from probation to protected, demoting the least recently used if full
+		probation.remove(node);
+		protect.add(node, PROTECTED);
+		while(protect.size > maxProtected) {
+			Node demoted = protect.head();
+			protect.remove(demoted);
+			probation.add(demoted, PROBATION);
+		}
+	}
+
+	private void onAdd(Node node, List<Node> evicted) {
+		sketch.increment(node.key.hashCode());
+		window.add(node, WINDOW);
+		if(window.size <= maxWindow) {
+			return;
+		}
+		Node candidate = window.head();
+		window.remove(candidate);
+		probation.add(candidate, PROBATION);
+		while(entries.size() > maxSize) {
+			Node victim = evictOne(candidate);
+			if(evicted != null) {
+				evicted.add(victim);
+			}
+			else {
+				evictionCount.increment();
+			}
+		}
+	}
+
+	private Node evictOne(Node candidate) {
+		Node victim = probation.head();
+		if(victim == null) {
+			victim = protect.head();
+		}
+		if(victim == null) {
+			victim = window.head();
+		}
+		if(candidate.queue != null && victim != candidate) {
+			// the candidate from the window is admitted only if it is more popular than the victim
+			if(sketch.frequency(candidate.key.hashCode()) <= sketch.frequency(victim.key.hashCode())) {
+				victim = candidate;
+			}
+		}
+		remove(victim);
+		return victim;
+	}
+
+	private void remove(Node node) {
+		entries.remove(node.key, node);
+		node.queue.remove(node);
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+	// Inner class that holds a cached value
+
+	private static final class Node {
+
+		private Object          key;
+		private volatile Object value;
+		private volatile long   writeTime;
+
+		// guarded by the policy lock
+		private AccessQueue queue;
+		private int         queueType;
+		private Node        prev;
+		private Node        next;
+
+		Node(Object key, Object value, long writeTime) {
+			this.key = key;
+			this.value = value;
+			this.writeTime = writeTime;
+		}
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+	// Inner class for a doubly linked list of nodes in order of access
+
+	private static final class AccessQueue {
+
+		private Node head;
+		private Node tail;
+		private int  size;
+
+		Node head() {
+			return head;
+		}
+
+		void add(Node node, int type) {
+			node.queue = this;
+			node.queueType = type;
+			node.prev = tail;
+			node.next = null;
+			if(tail == null) {
+				head = node;
+			}
+			else {
+				tail.next = node;
+			}
+			tail = node;
+			size++;
+		}
+
+		void remove(Node node) {
+			if(node.prev == null) {
+				head = node.next;
+			}
+			else {
+				node.prev.next = node.next;
+			}
+			if(node.next == null) {
+				tail = node.prev;
+			}
+			else {
+				node.next.prev = node.prev;
+			}
+			node.queue = null;
+			node.prev = null;
+			node.next = null;
+			size--;
+		}
+
+		void moveToTail(Node node) {
+			if(node == tail) {
+				return;
+			}
+			int type = node.queueType;
+			remove(node);
+			add(node, type);
+		}
+
+		void clear() {
+			// detached, so that hits and expiries on nodes looked up before are skipped
+			for(Node node = head; node != null; ) {
+				Node next = node.next;
+				node.queue = null;
+				node.prev = null;
+				node.next = null;
+				node = next;
+			}
+			head = null;
+			tail = null;
+			size = 0;
+		}
+	}
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package com.hashvoid.crossbinder.interceptors.cache;
+
+import java.io.IOException;
+
+/**
+ * Converts cached method results to and from bytes, for results held off the Java heap by the
+ * {@link CacheInterceptor}. Implementations must be thread-safe.
+ *
+ * @author poroshuram
+ */
+
+public interface ValueSerializer {
+
+/**
+ * @param	value the method result to be converted, never <tt>null</tt>.
+ * @return	the serialized form of the value.
+ * @throws	IOException if the value cannot be serialized, in which case it is not cached off-heap.
+ */
+
+	byte[] serialize(Object value) throws IOException;
+
+/**
+ * @param	data the serialized form of a value, as returned by {@link #serialize(Object)}.
+ * @return	a value equivalent to the one serialized.
+ * @throws	IOException if the value cannot be reconstructed, in which case it is treated as not
+ * 			cached.
+ */
+
+	Object deserialize(byte[] data) throws IOException;
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package com.hashvoid.crossbinder.interceptors.coalesce;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Decorates a method on a managed entity for concurrent invocations with equal parameter values
+ * to be coalesced by the {@link CoalescingInterceptor}: only one of them executes the method,
+ * while the others wait for and share its outcome. When present on the class, this applies to all
+ * its methods.
+ * <p>
+ *
+ * Since the result is shared by all the coalesced callers, it should not be modified by them.
+ *
+ * @author poroshuram
+ */
+
+@Target({ ElementType.METHOD, ElementType.TYPE })
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Coalesced {
+
+}
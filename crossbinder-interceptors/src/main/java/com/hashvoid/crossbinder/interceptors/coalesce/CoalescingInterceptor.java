@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package com.hashvoid.crossbinder.interceptors.coalesce;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.hashvoid.crossbinder.dilm.CrossbinderException;
+import com.hashvoid.crossbinder.dilm.Deadline;
+import com.hashvoid.crossbinder.dilm.DeadlineExceededException;
+import com.hashvoid.crossbinder.dilm.Invocation;
+import com.hashvoid.crossbinder.dilm.MethodInterceptor;
+import com.hashvoid.crossbinder.dilm.Order;
+import com.hashvoid.crossbinder.dilm.Pointcut;
+import com.hashvoid.crossbinder.interceptors.support.InvocationKey;
+
+/**
+ * Method interceptor that coalesces concurrent invocations of methods annotated with
+ * {@link Coalesced}. The first invocation with a given set of parameter values proceeds to the
+ * method on the managed entity; invocations with equal parameter values arriving while it is in
+ * flight do not proceed, but wait for it to finish, and then return the same result or raise the
+ * same exception. Invocations arriving afterwards proceed afresh. For methods returning a
+ * <tt>CompletionStage</tt>, an invocation is in flight until the returned stage completes, and the
+ * coalesced callers receive the same stage.
+ * <p>
+ *
+ * Waiting invocations give up with a {@link DeadlineExceededException} once the {@link Deadline}
+ * of their thread passes, and are interruptible. An invocation made by the thread of the in-flight
+ * invocation itself, from within it, proceeds rather than waiting for itself.
+ * <p>
+ *
+ * This interceptor has an order of 100, so that it applies within interceptors of the default
+ * order, such as a result cache: only invocations that miss the cache are coalesced.
+ *
+ * @author poroshuram
+ */
+
+@Order(100)
+@Pointcut(annotatedWith = Coalesced.class, wrapping = Pointcut.Wrapping.ALWAYS)
+public class CoalescingInterceptor implements MethodInterceptor {
+
+	private ConcurrentHashMap<InvocationKey, InflightCall> inflight;
+	private LongAdder                                     coalescedCount;
+
+	public CoalescingInterceptor() {
+		inflight = new ConcurrentHashMap<>();
+		coalescedCount = new LongAdder();
+	}
+
+/**
+ * @return	the number of invocations that waited for another in-flight invocation instead of
+ * 			proceeding themselves.
+ */
+
+	public long getCoalescedCount() {
+		return coalescedCount.sum();
+	}
+
+/**
+ * @return	the number of invocations currently in flight.
+ */
+
+	public int getInflightCount() {
+		return inflight.size();
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+	// Methods of interface MethodInterceptor
+
+	@Override
+	public void before(Method method, Object target, Object[] parameters) {
+		// NOOP
+	}
+
+	@Override
+	public void after(Method method, Object target, Object retVal) {
+		// NOOP
+	}
+
+	@Override
+	public boolean isWrapped(Method method, Object target) {
+		return true;
+	}
+
+	@Override
+	public Object wrap(Invocation invocation) throws Throwable {
+		InvocationKey key = new InvocationKey(invocation.getMethod(), invocation.getArguments());
+		InflightCall call = new InflightCall();
+		InflightCall leader = inflight.putIfAbsent(key, call);
+		if(leader != null) {
+			if(leader.thread == Thread.currentThread() && !leader.isDone()) {
+				// re-entered from within the in-flight invocation, which cannot complete before this
+				return invocation.proceed();
+			}
+			coalescedCount.increment();
+			return await(leader);
+		}
+
+		Object result;
+		try {
+			result = invocation.proceed();
+		}
+		catch(Throwable exep) {
+			inflight.remove(key, call);
+			call.completeExceptionally(exep);
+			throw exep;
+		}
+		if(result instanceof CompletionStage) {
+			// remains in flight until the stage completes, which may be right away
+			((CompletionStage<?>) result).whenComplete((value, exep) -> inflight.remove(key, call));
+		}
+		else {
+			inflight.remove(key, call);
+		}
+		call.complete(result);
+		return result;
+	}
+
+	@Override
+	public void onError(Method method, Object target, Throwable exep) {
+		// NOOP
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+	// Helper methods
+
+	private static Object await(InflightCall leader) throws Throwable {
+		Deadline deadline = Deadline.current();
+		try {
+			if(deadline == null) {
+				return leader.get();
+			}
+			return leader.get(deadline.remaining(TimeUnit.NANOSECONDS), TimeUnit.NANOSECONDS);
+		}
+		catch(ExecutionException exep) {
+			throw exep.getCause();
+		}
+		catch(TimeoutException exep) {
+			throw new DeadlineExceededException("deadline exceeded, waiting for coalesced invocation");
+		}
+		catch(InterruptedException exep) {
+			Thread.currentThread().interrupt();
+			throw new CrossbinderException("interrupted, waiting for coalesced invocation", exep);
+		}
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+	// Inner class for the outcome of an in-flight invocation
+
+	private static class InflightCall extends CompletableFuture<Object> {
+
+		// the thread executing the invocation, which must not wait for it
+		private Thread thread;
+
+		InflightCall() {
+			thread = Thread.currentThread();
+		}
+	}
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package com.hashvoid.crossbinder.interceptors.hedge;
+
+/**
+ * Snapshot of the counters of a hedged method, for tuning the hedging delay and budget.
+ *
+ * @author poroshuram
+ */
+
+public class HedgeStatistics {
+
+	private String name;
+	private long   callCount;
+	private long   hedgeCount;
+	private long   hedgeWinCount;
+	private long   delay;
+
+	HedgeStatistics(String name, long calls, long hedges, long hedgeWins, long delay) {
+		this.name = name;
+		callCount = calls;
+		hedgeCount = hedges;
+		hedgeWinCount = hedgeWins;
+		this.delay = delay;
+	}
+
+/**
+ * @return	the name of the hedged method, in the form <tt>class#method</tt>.
+ */
+
+	public String getName() {
+		return name;
+	}
+
+	public long getCallCount() {
+		return callCount;
+	}
+
+/**
+ * @return	the number of invocations for which a redundant invocation was started.
+ */
+
+	public long getHedgeCount() {
+		return hedgeCount;
+	}
+
+/**
+ * @return	the number of hedged invocations in which the redundant invocation completed first.
+ */
+
+	public long getHedgeWinCount() {
+		return hedgeWinCount;
+	}
+
+/**
+ * @return	the current hedging delay in microseconds, <tt>-1</tt> while the latency of the method
+ * 			is still being observed.
+ */
+
+	public long getDelay() {
+		return delay;
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+	// Methods of base class Object
+
+	@Override
+	public String toString() {
+		return String.format("%s [calls = %d, hedges = %d, hedge_wins = %d, delay_us = %d]",
+				name, callCount, hedgeCount, hedgeWinCount, delay);
+	}
+}
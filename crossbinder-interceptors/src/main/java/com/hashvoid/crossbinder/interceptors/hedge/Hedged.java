@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package com.hashvoid.crossbinder.interceptors.hedge;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Decorates an idempotent method on a managed entity for its slow invocations to be hedged by the
+ * {@link HedgingInterceptor}: if an invocation has not completed after a delay, a second,
+ * redundant invocation is started, and the result of whichever completes first is returned. When
+ * present on the class, this applies to all its methods.
+ * <p>
+ *
+ * Since an invocation may be executed twice, and the slower execution is cancelled by interrupting
+ * it, the method must be safe to execute more than once and to interrupt.
+ *
+ * @author poroshuram
+ */
+
+@Target({ ElementType.METHOD, ElementType.TYPE })
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Hedged {
+
+/**
+ * @return	the delay in milliseconds after which an invocation is hedged, zero for the delay to be
+ * 			derived from the observed latency of the method.
+ */
+
+	long delay() default 0;
+
+/**
+ * @return	the percentile of the observed latency of the method after which an invocation is
+ * 			hedged, between 0 and 1, if no fixed delay is given.
+ */
+
+	double percentile() default 0.95;
+}
@@ -0,0 +1,371 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package com.hashvoid.crossbinder.interceptors.hedge;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+import com.hashvoid.crossbinder.dilm.Configuration;
+import com.hashvoid.crossbinder.dilm.Deadline;
+import com.hashvoid.crossbinder.dilm.Invocation;
+import com.hashvoid.crossbinder.dilm.MethodInterceptor;
+import com.hashvoid.crossbinder.dilm.Order;
+import com.hashvoid.crossbinder.dilm.Pointcut;
+
+/**
+ * Method interceptor that hedges invocations of methods annotated with {@link Hedged}, to cut
+ * their tail latency. Each invocation is executed on the executor of this interceptor, while the
+ * calling thread waits for it. If it has not completed after the hedging delay, a redundant
+ * invocation is started via {@link Invocation#fork()}, and the caller receives the outcome of
+ * whichever completes first; the other one is cancelled, interrupting its thread. An exception
+ * is raised only if both invocations fail. Both invocations run under the {@link Deadline} of the
+ * caller, if any.
+ * <p>
+ *
+ * The hedging delay is either fixed on the annotation, or the observed latency of the method at a
+ * percentile, 95 by default. Until enough invocations are observed, invocations are not hedged,
+ * and execute on the calling thread.
+ * To cap the extra load, each invocation earns a fraction of a hedge, and an invocation is hedged
+ * only if a whole hedge has been earned. Invocations made while no hedge is available execute on
+ * the calling thread as well. The fraction is read from the configuration key
+ * <tt>crossbinder.hedge.budget</tt>, 0.05 by default, allowing 5% extra invocations.
+ * <p>
+ *
+ * Methods returning a <tt>CompletionStage</tt> are not hedged, since they return before they
+ * complete. This interceptor has an order of 200, so that it applies within the
+ * <tt>CacheInterceptor</tt> and <tt>CoalescingInterceptor</tt>.
+ *
+ * @author poroshuram
+ */
+
+@Order(200)
+@Pointcut(annotatedWith = Hedged.class, wrapping = Pointcut.Wrapping.ALWAYS)
+public class HedgingInterceptor implements MethodInterceptor {
+
+	private static final Logger LOGGER = Logger.getLogger(HedgingInterceptor.class.getName());
+
+	// budget credits are counted in thousandths of a hedge
+	private static final long HEDGE_COST = 1000;
+	private static final long MAX_CREDIT = 10 * HEDGE_COST;
+
+	@Configuration(name = "crossbinder.hedge.budget")
+	private Double budget = 0.05;
+
+	private ExecutorService                          executor;
+	private ConcurrentHashMap<Method, HedgedMethod>  methods;
+
+/**
+ * Creates a hedging interceptor executing invocations on its own pool of daemon threads.
+ */
+
+	public HedgingInterceptor() {
+		this(Executors.newCachedThreadPool(new HedgeThreadFactory()));
+	}
+
+/**
+ * @param	executor the executor on which invocations of hedged methods are executed.
+ */
+
+	public HedgingInterceptor(ExecutorService executor) {
+		this.executor = executor;
+		methods = new ConcurrentHashMap<>();
+	}
+
+/**
+ * @return	statistics for each hedged method invoked so far, keyed on the method name in the form
+ * 			<tt>class#method</tt>.
+ */
+
+	public Map<String, HedgeStatistics> getStatistics() {
+		Map<String, HedgeStatistics> result = new TreeMap<>();
+		for(HedgedMethod method : methods.values()) {
+			HedgeStatistics stats = method.getStatistics();
+			result.put(stats.getName(), stats);
+		}
+		return result;
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+	// Methods of interface MethodInterceptor
+
+	@Override
+	public void before(Method method, Object target, Object[] parameters) {
+		// NOOP
+	}
+
+	@Override
+	public void after(Method method, Object target, Object retVal) {
+		// NOOP
+	}
+
+	@Override
+	public boolean isWrapped(Method method, Object target) {
+		return true;
+	}
+
+	@Override
+	public Object wrap(Invocation invocation) throws Throwable {
+		Method method = invocation.getMethod();
+		if(CompletionStage.class.isAssignableFrom(method.getReturnType())) {
+			return invocation.proceed();
+		}
+		HedgedMethod hedged = methods.computeIfAbsent(method, this::createMethod);
+		hedged.callCount.increment();
+		hedged.earnCredit();
+		long delay = hedged.getDelay();
+		if(delay < 0 || !hedged.hasCredit()) {
+			// still observing the latency of the method, or unable to hedge it anyway, so there is no
+			// need to leave the calling thread
+			long start = System.nanoTime();
+			Object result = invocation.proceed();
+			hedged.record((System.nanoTime() - start) / 1000);
+			return result;
+		}
+
+		// the losing attempt may outlive this call, so neither attempt proceeds the caller's
+		// invocation; both are forked up front, as an invocation cannot be forked while proceeded
+		Invocation first = invocation.fork();
+		Invocation redundant = invocation.fork();
+		// the attempts run on other threads, which carry the deadline of the caller into nested calls
+		Attempts attempts = new Attempts(Deadline.current());
+		Future<?> primary = executor.submit(() -> attempts.run(first, hedged, false));
+		try {
+			try {
+				return attempts.await(delay);
+			}
+			catch(TimeoutException exep) {
+				// too slow, fall through to hedging
+			}
+			if(!hedged.spendCredit() || !attempts.add()) {
+				return attempts.await();
+			}
+			hedged.hedgeCount.increment();
+			Future<?> secondary = executor.submit(() -> attempts.run(redundant, hedged, true));
+			try {
+				return attempts.await();
+			}
+			finally {
+				secondary.cancel(true);
+			}
+		}
+		finally {
+			primary.cancel(true);
+		}
+	}
+
+	@Override
+	public void onError(Method method, Object target, Throwable exep) {
+		// NOOP
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+	// Helper methods
+
+	private HedgedMethod createMethod(Method method) {
+		Hedged hedged = method.getAnnotation(Hedged.class);
+		if(hedged == null) {
+			hedged = method.getDeclaringClass().getAnnotation(Hedged.class);
+		}
+		long delay = (hedged != null) ? hedged.delay() : 0;
+		double percentile = (hedged != null) ? hedged.percentile() : 0.95;
+		String name = method.getDeclaringClass().getName() + "#" + method.getName();
+		long credit = Math.round(Math.max(0, Math.min(1, budget)) * HEDGE_COST);
+		LOGGER.fine(String.format("hedged_method = %s, delay = %d, percentile = %f, budget = %f",
+				name, delay, percentile, budget));
+		return new HedgedMethod(name, delay * 1000, percentile, credit);
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+	// Inner class that holds the state of a hedged method
+
+	private static class HedgedMethod {
+
+		private static final int MIN_SAMPLES = 100;
+
+		private String         name;
+		private long           fixedDelay;
+		private LatencyTracker latency;
+		private long           creditPerCall;
+		private AtomicLong     credit;
+		private AtomicInteger  samples;
+		private LongAdder      callCount;
+		private LongAdder      hedgeCount;
+		private LongAdder      hedgeWinCount;
+
+		HedgedMethod(String name, long fixedDelay, double percentile, long creditPerCall) {
+			this.name = name;
+			this.fixedDelay = fixedDelay;
+			latency = new LatencyTracker(percentile);
+			this.creditPerCall = creditPerCall;
+			credit = new AtomicLong();
+			samples = new AtomicInteger();
+			callCount = new LongAdder();
+			hedgeCount = new LongAdder();
+			hedgeWinCount = new LongAdder();
+		}
+
+		long getDelay() {
+			if(fixedDelay > 0) {
+				return fixedDelay;
+			}
+			return (samples.get() < MIN_SAMPLES) ? -1 : latency.getThreshold();
+		}
+
+		void record(long micros) {
+			latency.record(micros);
+			if(samples.get() < MIN_SAMPLES) {
+				samples.incrementAndGet();
+			}
+		}
+
+		void earnCredit() {
+			if(credit.get() < MAX_CREDIT) {
+				credit.addAndGet(creditPerCall);
+			}
+		}
+
+		boolean hasCredit() {
+			return credit.get() >= HEDGE_COST;
+		}
+
+		boolean spendCredit() {
+			long current;
+			do {
+				current = credit.get();
+				if(current < HEDGE_COST) {
+					return false;
+				}
+			} while(!credit.compareAndSet(current, current - HEDGE_COST));
+			return true;
+		}
+
+		HedgeStatistics getStatistics() {
+			return new HedgeStatistics(name, callCount.sum(), hedgeCount.sum(), hedgeWinCount.sum(),
+					getDelay());
+		}
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+	// Inner class that collects the outcome of the attempts of an invocation
+
+	private static class Attempts {
+
+		private Deadline                   deadline;
+		private CompletableFuture<Object>  outcome;
+		private AtomicInteger              running;
+		private AtomicReference<Throwable> failure;
+
+		Attempts(Deadline deadline) {
+			this.deadline = deadline;
+			outcome = new CompletableFuture<>();
+			running = new AtomicInteger(1);
+			failure = new AtomicReference<>();
+		}
+
+		void run(Invocation invocation, HedgedMethod method, boolean hedge) {
+			Deadline.Scope scope = (deadline != null) ? deadline.enter() : null;
+			long start = System.nanoTime();
+			try {
+				Object result = invocation.proceed();
+				method.record((System.nanoTime() - start) / 1000);
+				if(outcome.complete(result) && hedge) {
+					method.hedgeWinCount.increment();
+				}
+			}
+			catch(Throwable exep) {
+				// the first failure is raised only if the other attempt fails as well
+				failure.compareAndSet(null, exep);
+				if(running.decrementAndGet() == 0) {
+					outcome.completeExceptionally(failure.get());
+				}
+			}
+			finally {
+				if(scope != null) {
+					scope.close();
+				}
+			}
+		}
+
+/**
+ * Registers a second attempt, unless the first has already failed or completed.
+ */
+
+		boolean add() {
+			int current;
+			do {
+				current = running.get();
+				if(current == 0 || outcome.isDone()) {
+					return false;
+				}
+			} while(!running.compareAndSet(current, current + 1));
+			return true;
+		}
+
+		Object await() throws Throwable {
+			try {
+				return outcome.join();
+			}
+			catch(CompletionException exep) {
+				throw exep.getCause();
+			}
+		}
+
+		Object await(long micros) throws Throwable {
+			try {
+				return outcome.get(micros, TimeUnit.MICROSECONDS);
+			}
+			catch(InterruptedException exep) {
+				Thread.currentThread().interrupt();
+				return await();
+			}
+			catch(ExecutionException exep) {
+				throw exep.getCause();
+			}
+		}
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+	// Inner class that creates daemon threads for hedged invocations
+
+	private static class HedgeThreadFactory implements ThreadFactory {
+
+		private AtomicInteger threadCounter = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable task) {
+			Thread thread = new Thread(task, "crossbinder-hedge-" + threadCounter.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package com.hashvoid.crossbinder.interceptors.hedge;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Tracks the latency of a method in a histogram of logarithmic buckets, eight to each power of
+ * two, so that percentiles are accurate to within 12.5%. Recording is lock-free. Once a number of
+ * samples have been recorded, all counts are halved, so that the histogram follows changes in
+ * latency; halving races with concurrent recording, which only affects precision.
+ * <p>
+ *
+ * The percentile used for hedging is recomputed periodically rather than on every invocation.
+ *
+ * @author poroshuram
+ */
+
+final class LatencyTracker {
+
+	private static final int SUB_BITS      = 3;
+	private static final int SUB_COUNT     = 1 << SUB_BITS;
+	private static final int LINEAR_LIMIT  = 2 * SUB_COUNT;
+	private static final int BUCKET_COUNT  = LINEAR_LIMIT + (64 - SUB_BITS - 1) * SUB_COUNT;
+	private static final int RECOMPUTE     = 128;
+	private static final int DECAY         = 8192;
+
+	private AtomicLongArray buckets;
+	private AtomicInteger   samples;
+	private double          percentile;
+	private volatile long   threshold;
+
+	LatencyTracker(double percentile) {
+		buckets = new AtomicLongArray(BUCKET_COUNT);
+		samples = new AtomicInteger();
+		this.percentile = percentile;
+		threshold = -1;
+	}
+
+/**
+ * @param	micros the latency of an invocation, in microseconds.
+ */
+
+	void record(long micros) {
+		buckets.incrementAndGet(indexOf(Math.max(0, micros)));
+		int count = samples.incrementAndGet();
+		if(count % RECOMPUTE == 0) {
+			threshold = compute(percentile);
+		}
+		if(count % DECAY == 0) {
+			for(int i = 0; i < BUCKET_COUNT; i++) {
+				long value = buckets.get(i);
+				if(value > 0) {
+					buckets.addAndGet(i, -(value >>> 1));
+				}
+			}
+		}
+	}
+
+/**
+ * @return	the latency at the tracked percentile in microseconds, <tt>-1</tt> if not enough
+ * 			samples were recorded yet.
+ */
+
+	long getThreshold() {
+		return threshold;
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+	// Helper methods
+
+	private long compute(double pct) {
+		long total = 0;
+		for(int i = 0; i < BUCKET_COUNT; i++) {
+			total += buckets.get(i);
+		}
+		long rank = (long) Math.ceil(pct * total);
+		long seen = 0;
+		for(int i = 0; i < BUCKET_COUNT; i++) {
+			seen += buckets.get(i);
+			if(seen >= rank && seen > 0) {
+				return upperBoundOf(i);
+			}
+		}
+		return -1;
+	}
+
+	private static int indexOf(long value) {
+		if(value < LINEAR_LIMIT) {
+			return (int) value;
+		}
+		int exp = 63 - Long.numberOfLeadingZeros(value);
+		int sub = (int) (value >>> (exp - SUB_BITS)) & (SUB_COUNT - 1);
+		return LINEAR_LIMIT + (exp - SUB_BITS - 1) * SUB_COUNT + sub;
+	}
+
+	private static long upperBoundOf(int index) {
+		if(index < LINEAR_LIMIT) {
+			return index;
+		}
+		int exp = (index - LINEAR_LIMIT) / SUB_COUNT + SUB_BITS + 1;
+		int sub = (index - LINEAR_LIMIT) % SUB_COUNT;
+		long width = 1L << (exp - SUB_BITS);
+		return ((SUB_COUNT + sub) * width) + width - 1;
+	}
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package com.hashvoid.crossbinder.interceptors.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Histogram of latencies in nanoseconds, with logarithmic buckets in the manner of HDR
+ * histograms: sixteen linear buckets, followed by eight buckets for each power of two, so that
+ * values are resolved to within 12.5%. Latencies beyond about 36 minutes fall into the last
+ * bucket.
+ * <p>
+ *
+ * Recording is lock-free and does not allocate. Counts are held in stripes, each a complete set
+ * of buckets, which are added up when a snapshot is taken. There is a single stripe to begin with;
+ * whenever recording finds a bucket contended, the number of stripes is doubled, up to the number
+ * of processors, and threads spread over the stripes by their identity, as done by
+ * <tt>LongAdder</tt>.
+ *
+ * @author poroshuram
+ */
+
+final class LatencyHistogram {
+
+	private static final int  SUB_BITS     = 3;
+	private static final int  SUB_COUNT    = 1 << SUB_BITS;
+	private static final int  LINEAR_LIMIT = 2 * SUB_COUNT;
+	private static final int  MAX_EXP      = 41;
+	private static final long MAX_VALUE    = (1L << MAX_EXP) - 1;
+
+	static final int BUCKET_COUNT = LINEAR_LIMIT + (MAX_EXP - SUB_BITS - 1) * SUB_COUNT;
+
+	private static final int MAX_STRIPES = Integer.highestOneBit(
+			Math.max(1, Math.min(16, Runtime.getRuntime().availableProcessors())) * 2 - 1);
+
+	private volatile AtomicLongArray[] stripes;
+
+	LatencyHistogram() {
+		stripes = new AtomicLongArray[] {new AtomicLongArray(BUCKET_COUNT)};
+	}
+
+/**
+ * @param	nanos the latency to be recorded.
+ */
+
+	void record(long nanos) {
+		int index = indexOf(nanos);
+		AtomicLongArray[] current = stripes;
+		AtomicLongArray stripe = current[stripeOf(current.length)];
+		long count = stripe.get(index);
+		if(!stripe.compareAndSet(index, count, count + 1)) {
+			stripe.incrementAndGet(index);
+			if(current.length < MAX_STRIPES) {
+				expand(current);
+			}
+		}
+	}
+
+/**
+ * Adds the counts of all stripes to the given array, optionally resetting them.
+ * <p>
+ *
+ * @param	counts the array of {@link #BUCKET_COUNT} counts to be added to.
+ * @param	reset <tt>true</tt> to reset the counts to zero, <tt>false</tt> otherwise.
+ */
+
+	void collect(long[] counts, boolean reset) {
+		for(AtomicLongArray stripe : stripes) {
+			for(int i = 0; i < BUCKET_COUNT; i++) {
+				counts[i] += reset ? stripe.getAndSet(i, 0) : stripe.get(i);
+			}
+		}
+	}
+
+/**
+ * @param	index the index of a bucket.
+ * @return	the highest value that falls into the bucket.
+ */
+
+	static long upperBoundOf(int index) {
+		if(index < LINEAR_LIMIT) {
+			return index;
+		}
+		int exp = (index - LINEAR_LIMIT) / SUB_COUNT + SUB_BITS + 1;
+		int sub = (index - LINEAR_LIMIT) % SUB_COUNT;
+		long width = 1L << (exp - SUB_BITS);
+		return ((SUB_COUNT + sub) * width) + width - 1;
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+	// Helper methods
+
+	private synchronized void expand(AtomicLongArray[] current) {
+		if(stripes != current) {
+			return;
+		}
+		AtomicLongArray[] expanded = new AtomicLongArray[current.length * 2];
+		System.arraycopy(current, 0, expanded, 0, current.length);
+		for(int i = current.length; i < expanded.length; i++) {
+			expanded[i] = new AtomicLongArray(BUCKET_COUNT);
+		}
+		stripes = expanded;
+	}
+
+	@SuppressWarnings("deprecation")
+	private static int stripeOf(int count) {
+		if(count == 1) {
+			return 0;
+		}
+		long id = Thread.currentThread().getId();
+		return (int) ((id * 0x9e3779b97f4a7c15L) >>> 32) & (count - 1);
+	}
+
+	private static int indexOf(long value) {
+		if(value < LINEAR_LIMIT) {
+			return (int) Math.max(0, value);
+		}
+		long clamped = Math.min(value, MAX_VALUE);
+		int exp = 63 - Long.numberOfLeadingZeros(clamped);
+		int sub = (int) (clamped >>> (exp - SUB_BITS)) & (SUB_COUNT - 1);
+		return LINEAR_LIMIT + (exp - SUB_BITS - 1) * SUB_COUNT + sub;
+	}
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package com.hashvoid.crossbinder.interceptors.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records the invocations of a method on the instances of a managed entity: the number of calls
+ * and errors, their total time, and the histogram of their latencies.
+ *
+ * @author poroshuram
+ */
+
+final class MethodMetrics {
+
+	private String           name;
+	private Class<?>         implCls;
+	private boolean          timed;
+	private LatencyHistogram histogram;
+	private LongAdder        callCount;
+	private LongAdder        errorCount;
+	private LongAdder        totalTime;
+
+/**
+ * @param	name the name of the method, reported in its statistics.
+ * @param	implCls the implementation class of the managed entity.
+ * @param	timed <tt>true</tt> if calls of the method are timed, <tt>false</tt> if only counted.
+ */
+
+	MethodMetrics(String name, Class<?> implCls, boolean timed) {
+		this.name = name;
+		this.implCls = implCls;
+		this.timed = timed;
+		histogram = new LatencyHistogram();
+		callCount = new LongAdder();
+		errorCount = new LongAdder();
+		totalTime = new LongAdder();
+	}
+
+	Class<?> getImplClass() {
+		return implCls;
+	}
+
+	boolean isTimed() {
+		return timed;
+	}
+
+/**
+ * @param	nanos the latency of the call, negative if not measured.
+ * @param	error <tt>true</tt> if the call raised an exception, <tt>false</tt> otherwise.
+ */
+
+	void record(long nanos, boolean error) {
+		callCount.increment();
+		if(error) {
+			errorCount.increment();
+		}
+		if(nanos >= 0) {
+			histogram.record(nanos);
+			totalTime.add(nanos);
+		}
+	}
+
+	MethodStatistics snapshot(boolean reset) {
+		long[] counts = new long[LatencyHistogram.BUCKET_COUNT];
+		histogram.collect(counts, reset);
+		long calls = reset ? callCount.sumThenReset() : callCount.sum();
+		long errors = reset ? errorCount.sumThenReset() : errorCount.sum();
+		long time = reset ? totalTime.sumThenReset() : totalTime.sum();
+		return new MethodStatistics(name, calls, errors, time, counts);
+	}
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package com.hashvoid.crossbinder.interceptors.metrics;
+
+/**
+ * Snapshot of the metrics of a method of a managed entity. Percentiles are taken from a
+ * logarithmic histogram, and are accurate to within 12.5%, erring on the high side.
+ *
+ * @author poroshuram
+ */
+
+public class MethodStatistics {
+
+	private String name;
+	private long   callCount;
+	private long   errorCount;
+	private long   timedCount;
+	private long   totalTime;
+	private long[] counts;
+
+	MethodStatistics(String name, long calls, long errors, long totalTime, long[] counts) {
+		this.name = name;
+		callCount = calls;
+		errorCount = errors;
+		this.totalTime = totalTime;
+		this.counts = counts;
+		for(long count : counts) {
+			timedCount += count;
+		}
+	}
+
+/**
+ * @return	the name of the method, in the form <tt>class#method</tt>, where the class is the
+ * 			implementation class of the managed entity.
+ */
+
+	public String getName() {
+		return name;
+	}
+
+	public long getCallCount() {
+		return callCount;
+	}
+
+/**
+ * @return	the number of calls that raised an exception.
+ */
+
+	public long getErrorCount() {
+		return errorCount;
+	}
+
+/**
+ * @return	the mean latency in nanoseconds, zero if no calls were timed.
+ */
+
+	public long getMean() {
+		return (timedCount == 0) ? 0 : totalTime / timedCount;
+	}
+
+/**
+ * @param	percentile the percentile, between 0 and 1.
+ * @return	the latency in nanoseconds at the given percentile, zero if no calls were timed.
+ */
+
+	public long getPercentile(double percentile) {
+		if(timedCount == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(percentile * timedCount));
+		long seen = 0;
+		for(int i = 0; i < counts.length; i++) {
+			seen += counts[i];
+			if(seen >= rank) {
+				return LatencyHistogram.upperBoundOf(i);
+			}
+		}
+		return getMax();
+	}
+
+	public long getP50() {
+		return getPercentile(0.5);
+	}
+
+	public long getP99() {
+		return getPercentile(0.99);
+	}
+
+	public long getP999() {
+		return getPercentile(0.999);
+	}
+
+/**
+ * @return	the highest latency in nanoseconds, zero if no calls were timed.
+ */
+
+	public long getMax() {
+		for(int i = counts.length - 1; i >= 0; i--) {
+			if(counts[i] > 0) {
+				return LatencyHistogram.upperBoundOf(i);
+			}
+		}
+		return 0;
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+	// Methods of base class Object
+
+	@Override
+	public String toString() {
+		return String.format("%s [calls = %d, errors = %d, mean_us = %.3f, p50_us = %.3f, "
+				+ "p99_us = %.3f, p999_us = %.3f, max_us = %.3f]", name, callCount, errorCount,
+				getMean() / 1e3, getP50() / 1e3, getP99() / 1e3, getP999() / 1e3, getMax() / 1e3);
+	}
+}
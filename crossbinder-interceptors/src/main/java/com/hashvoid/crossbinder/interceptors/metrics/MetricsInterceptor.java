@@ -0,0 +1,232 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package com.hashvoid.crossbinder.interceptors.metrics;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.TreeMap;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.hashvoid.crossbinder.dilm.MethodInterceptor;
+import com.hashvoid.crossbinder.dilm.Order;
+import com.hashvoid.crossbinder.dilm.Pointcut;
+
+/**
+ * Method interceptor that records the number of calls and errors, and a histogram of latencies,
+ * for every method invoked on managed entities, per implementation class and method. Snapshots of
+ * the metrics, with percentiles of the latency, are available via {@link #getStatistics()}.
+ * <p>
+ *
+ * This interceptor never wraps methods, so that its callbacks are linked into the generated
+ * proxies, and recording allocates no memory once the metrics of a method exist. The start time
+ * of each call is held on a stack per thread, matched up by method when the call completes. Calls
+ * of methods returning a <tt>CompletionStage</tt> are counted, but not timed, since they complete
+ * on another thread. This interceptor has an order of -1000, so that its timing includes the
+ * <tt>before</tt> callbacks and the wrapping of all other interceptors. Their <tt>after</tt> and
+ * <tt>onError</tt> callbacks are called in the same order, after those of this interceptor, and so
+ * are not timed.
+ *
+ * @author poroshuram
+ */
+
+@Order(-1000)
+@Pointcut(wrapping = Pointcut.Wrapping.NEVER)
+public class MetricsInterceptor implements MethodInterceptor {
+
+	private ConcurrentHashMap<Method, MethodMetrics>                            metrics;
+	private ConcurrentHashMap<Class<?>, ConcurrentHashMap<Method, MethodMetrics>> otherMetrics;
+	private ThreadLocal<CallStack>                                              stacks;
+
+	public MetricsInterceptor() {
+		metrics = new ConcurrentHashMap<>();
+		otherMetrics = new ConcurrentHashMap<>();
+		stacks = ThreadLocal.withInitial(CallStack::new);
+	}
+
+/**
+ * @return	snapshots of the metrics of each method invoked so far, keyed on the method name in
+ * 			the form <tt>class#method(parameter types)</tt>.
+ */
+
+	public Map<String, MethodStatistics> getStatistics() {
+		return getStatistics(false);
+	}
+
+/**
+ * @param	reset <tt>true</tt> to reset the metrics as the snapshots are taken, so that the next
+ * 			snapshots cover the calls made after this one, <tt>false</tt> otherwise.
+ * @return	snapshots of the metrics of each method invoked so far, keyed on the method name in
+ * 			the form <tt>class#method(parameter types)</tt>.
+ */
+
+	public Map<String, MethodStatistics> getStatistics(boolean reset) {
+		Map<String, MethodStatistics> result = new TreeMap<>();
+		for(MethodMetrics mthdMetrics : metrics.values()) {
+			MethodStatistics stats = mthdMetrics.snapshot(reset);
+			result.put(stats.getName(), stats);
+		}
+		for(ConcurrentHashMap<Method, MethodMetrics> clsMetrics : otherMetrics.values()) {
+			for(MethodMetrics mthdMetrics : clsMetrics.values()) {
+				MethodStatistics stats = mthdMetrics.snapshot(reset);
+				result.put(stats.getName(), stats);
+			}
+		}
+		return result;
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+	// Methods of interface MethodInterceptor
+
+	@Override
+	public void before(Method method, Object target, Object[] parameters) {
+		MethodMetrics mthdMetrics = metricsOf(method, target);
+		if(mthdMetrics.isTimed()) {
+			stacks.get().push(method, mthdMetrics, System.nanoTime());
+		}
+	}
+
+	@Override
+	public void after(Method method, Object target, Object retVal) {
+		complete(method, target, false);
+	}
+
+	@Override
+	public boolean isWrapped(Method method, Object target) {
+		return false;
+	}
+
+	@Override
+	public void onError(Method method, Object target, Throwable exep) {
+		complete(method, target, true);
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+	// Helper methods
+
+	private void complete(Method method, Object target, boolean error) {
+		long end = System.nanoTime();
+		CallStack stack = stacks.get();
+		int index = stack.pop(method);
+		if(index >= 0) {
+			stack.metrics[index].record(end - stack.starts[index], error);
+		}
+		else {
+			// stage methods are never pushed, and neither are calls whose start was dropped
+			recordUntimed(method, target, error);
+		}
+	}
+
+	private void recordUntimed(Method method, Object target, boolean error) {
+		metricsOf(method, target).record(-1, error);
+	}
+
+/**
+ * Looks up the metrics of the given method on the given target.
+ */
+
+	private MethodMetrics metricsOf(Method method, Object target) {
+		MethodMetrics result = metrics.get(method);
+		if(result == null || result.getImplClass() != target.getClass()) {
+			result = slowMetricsOf(method, target.getClass());
+		}
+		return result;
+	}
+
+/**
+ * Looks up or creates the metrics of the given method. An interface method is most often
+ * implemented by a single managed entity, so metrics are keyed on the method alone for the first
+ * implementation class seen, and on both for any other. Kept apart from {@link #metricsOf} so that
+ * the common path stays small enough to be inlined into the proxies.
+ */
+
+	private MethodMetrics slowMetricsOf(Method method, Class<?> implCls) {
+		MethodMetrics result = metrics.computeIfAbsent(method, mthd -> newMetrics(implCls, mthd));
+		if(result.getImplClass() == implCls) {
+			return result;
+		}
+		ConcurrentHashMap<Method, MethodMetrics> clsMetrics =
+				otherMetrics.computeIfAbsent(implCls, cls -> new ConcurrentHashMap<>());
+		return clsMetrics.computeIfAbsent(method, mthd -> newMetrics(implCls, mthd));
+	}
+
+	private static MethodMetrics newMetrics(Class<?> implCls, Method method) {
+		boolean timed = !CompletionStage.class.isAssignableFrom(method.getReturnType());
+		return new MethodMetrics(nameOf(implCls, method), implCls, timed);
+	}
+
+	private static String nameOf(Class<?> implCls, Method method) {
+		StringJoiner params = new StringJoiner(",", "(", ")");
+		for(Class<?> paramType : method.getParameterTypes()) {
+			params.add(paramType.getSimpleName());
+		}
+		return implCls.getName() + "#" + method.getName() + params;
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+	// Inner class for the calls in progress on a thread
+
+	private static final class CallStack {
+
+		// calls left behind by callbacks that were not made are dropped beyond this depth
+		private static final int MAX_DEPTH = 1024;
+
+		private Method[]        methods = new Method[16];
+		private MethodMetrics[] metrics = new MethodMetrics[16];
+		private long[]          starts = new long[16];
+		private int             depth;
+
+		void push(Method method, MethodMetrics mthdMetrics, long start) {
+			if(depth == methods.length) {
+				grow();
+			}
+			methods[depth] = method;
+			metrics[depth] = mthdMetrics;
+			starts[depth] = start;
+			depth++;
+		}
+
+		private void grow() {
+			if(depth == MAX_DEPTH) {
+				depth = 0;
+				return;
+			}
+			methods = Arrays.copyOf(methods, depth * 2);
+			metrics = Arrays.copyOf(metrics, depth * 2);
+			starts = Arrays.copyOf(starts, depth * 2);
+		}
+
+/**
+ * Removes the latest call of the given method from the stack, along with any calls above it.
+ *
+ * @return	the index of the call, its start time and metrics remaining accessible until the next
+ * 			push, or <tt>-1</tt> if not found.
+ */
+
+		int pop(Method method) {
+			for(int i = depth - 1; i >= 0; i--) {
+				if(methods[i] == method) {
+					depth = i;
+					methods[i] = null;
+					return i;
+				}
+			}
+			return -1;
+		}
+	}
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package com.hashvoid.crossbinder.interceptors.support;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Key of an invocation, made up of the parameter values with which a method was invoked, and
+ * optionally the method itself, for keys of different methods to be held in the same map. The
+ * parameter values are copied, so that later changes to the caller's array do not affect the key.
+ *
+ * @author poroshuram
+ */
+
+public final class InvocationKey {
+
+	// null if the key is made up of the parameter values alone
+	private Method   method;
+	private Object[] params;
+	private int      hash;
+
+	public InvocationKey(Object[] params) {
+		this(null, params);
+	}
+
+	public InvocationKey(Method method, Object[] params) {
+		this.method = method;
+		this.params = params.clone();
+		hash = 31 * Objects.hashCode(method) + Arrays.deepHashCode(this.params);
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+	// Methods of base class Object
+
+	@Override
+	public int hashCode() {
+		return hash;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if(obj == this) {
+			return true;
+		}
+		if(obj instanceof InvocationKey) {
+			InvocationKey key = (InvocationKey) obj;
+			return key.hash == hash && Objects.equals(key.method, method)
+					&& Arrays.deepEquals(key.params, params);
+		}
+		return false;
+	}
+
+	@Override
+	public String toString() {
+		if(method == null) {
+			return Arrays.deepToString(params);
+		}
+		return method.getName() + Arrays.deepToString(params);
+	}
+}
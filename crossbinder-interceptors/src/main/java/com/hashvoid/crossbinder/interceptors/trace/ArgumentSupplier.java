@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.hashvoid.crossbinder.interceptors.trace;
+
+import java.lang.reflect.Method;
+
+/**
+ * Supplies the parameter values with which recorded invocations are replayed by a
+ * {@link TraceReplayer}. Trace files only hold a digest of the original parameter values, from
+ * which an implementation may select a value out of a pool of representative ones, so as to
+ * reproduce the spread of distinct values seen in production.
+ *
+ * @author poroshuram
+ */
+
+public interface ArgumentSupplier {
+
+/**
+ * @param	method the interface method to be invoked.
+ * @param	argDigest the digest of the parameter values of the recorded invocation.
+ * @return	the parameter values for the invocation.
+ */
+
+	Object[] supply(Method method, long argDigest);
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.hashvoid.crossbinder.interceptors.trace;
+
+/**
+ * Outcome of replaying a trace via {@link TraceReplayer}.
+ *
+ * @author poroshuram
+ */
+
+public class ReplayStatistics {
+
+	private long callCount;
+	private long errorCount;
+	private long skipCount;
+	private long elapsedTime;
+	private long totalLatency;
+	private long maxLatency;
+
+	ReplayStatistics(long calls, long errors, long skips, long elapsedTime, long totalLatency,
+			long maxLatency) {
+		callCount = calls;
+		errorCount = errors;
+		skipCount = skips;
+		this.elapsedTime = elapsedTime;
+		this.totalLatency = totalLatency;
+		this.maxLatency = maxLatency;
+	}
+
+/**
+ * @return	the number of invocations replayed.
+ */
+
+	public long getCallCount() {
+		return callCount;
+	}
+
+/**
+ * @return	the number of replayed invocations that raised an exception.
+ */
+
+	public long getErrorCount() {
+		return errorCount;
+	}
+
+/**
+ * @return	the number of recorded invocations that were not replayed, since their managed entity
+ * 			or method could not be found.
+ */
+
+	public long getSkipCount() {
+		return skipCount;
+	}
+
+/**
+ * @return	the time taken by the replay, in nanoseconds.
+ */
+
+	public long getElapsedTime() {
+		return elapsedTime;
+	}
+
+/**
+ * @return	the mean latency of the replayed invocations, in nanoseconds.
+ */
+
+	public long getMeanLatency() {
+		return (callCount == 0) ? 0 : totalLatency / callCount;
+	}
+
+/**
+ * @return	the highest latency of the replayed invocations, in nanoseconds.
+ */
+
+	public long getMaxLatency() {
+		return maxLatency;
+	}
+
+/**
+ * @return	the number of invocations replayed per second.
+ */
+
+	public double getThroughput() {
+		return (elapsedTime == 0) ? 0 : callCount * 1e9 / elapsedTime;
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+	// Methods of base class Object
+
+	@Override
+	public String toString() {
+		return String.format("calls = %d, errors = %d, skipped = %d, elapsed_ms = %d, throughput = %.1f/s, "
+				+ "mean_us = %.3f, max_us = %.3f", callCount, errorCount, skipCount, elapsedTime / 1000000,
+				getThroughput(), getMeanLatency() / 1e3, maxLatency / 1e3);
+	}
+}
@@ -0,0 +1,283 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.hashvoid.crossbinder.interceptors.trace;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.hashvoid.crossbinder.dilm.Prototype;
+import com.hashvoid.crossbinder.dilm.Singleton;
+
+/**
+ * Ring of fixed size invocation records in a memory-mapped file. The file starts with a header of
+ * {@value #HEADER_SIZE} bytes, followed by the slots of the ring, each holding one record of
+ * {@value #RECORD_SIZE} bytes:
+ * <pre>
+ *  0  long  sequence number of the record, plus one (zero for an empty slot)
+ *  8  int   binder id, that of the implementation class
+ * 12  int   method id, with the sign bit set if the invocation failed
+ * 16  long  digest of the parameter values
+ * 24  long  id of the invoking thread
+ * 32  long  start time, as per System.nanoTime()
+ * 40  long  duration in nanoseconds
+ * 48  int   depth, the number of traced invocations in progress on the thread when invoked
+ * 52  int   reserved
+ * </pre>
+ * Records are appended lock-free, each writer claiming the next sequence number and writing the
+ * record into its slot, sequence number last. Once the ring is full, the oldest records are
+ * overwritten. The binder and method ids are resolved in a text file next to the ring, with the
+ * suffix <tt>.methods</tt>, which is rewritten whenever a new id is assigned, so that the trace is
+ * readable even if the process ends without closing it.
+ *
+ * @author poroshuram
+ */
+
+final class TraceFile {
+
+	static final int HEADER_SIZE = 64;
+	static final int RECORD_SIZE = 56;
+
+	private static final long MAGIC   = 0x4342545241434531L; // "CBTRACE1"
+	private static final int  VERSION = 2;
+
+	private File                                 file;
+	private RandomAccessFile                     raf;
+	private MappedByteBuffer                     buffer;
+	private int                                  capacity;
+	private AtomicLong                           sequence;
+	private ConcurrentHashMap<Class<?>, Integer> binderIds;
+	private ConcurrentHashMap<Method, Integer>   methodIds;
+	private List<String>                         definitions;
+
+/**
+ * Creates the file, replacing any existing one.
+ * <p>
+ *
+ * @param	file the file.
+ * @param	capacity the number of records held by the ring.
+ * @throws	IOException if the file cannot be created and mapped.
+ */
+
+	TraceFile(File file, int capacity) throws IOException {
+		this.file = file;
+		this.capacity = capacity;
+		long size = HEADER_SIZE + (long) capacity * RECORD_SIZE;
+		if(size > Integer.MAX_VALUE) {
+			throw new IOException("trace capacity too large " + capacity);
+		}
+		raf = new RandomAccessFile(file, "rw");
+		try {
+			raf.setLength(0);
+			raf.setLength(size);
+			buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+		}
+		catch(IOException exep) {
+			raf.close();
+			throw exep;
+		}
+		buffer.putLong(0, MAGIC);
+		buffer.putInt(8, VERSION);
+		buffer.putInt(12, RECORD_SIZE);
+		buffer.putInt(16, capacity);
+		buffer.putLong(24, System.currentTimeMillis());
+		buffer.putLong(32, System.nanoTime());
+
+		sequence = new AtomicLong();
+		binderIds = new ConcurrentHashMap<>();
+		methodIds = new ConcurrentHashMap<>();
+		definitions = new ArrayList<>();
+		writeDefinitions();
+	}
+
+	File getFile() {
+		return file;
+	}
+
+	int binderId(Class<?> implCls) {
+		Integer result = binderIds.get(implCls);
+		return (result != null) ? result : define(implCls, null);
+	}
+
+	int methodId(Method method) {
+		Integer result = methodIds.get(method);
+		return (result != null) ? result : define(null, method);
+	}
+
+	void append(int binderId, int methodId, boolean failed, int depth, long digest, long threadId,
+			long start, long duration) {
+		long seq = sequence.getAndIncrement();
+		int offset = HEADER_SIZE + (int) (seq % capacity) * RECORD_SIZE;
+		ByteBuffer buf = buffer;
+		buf.putLong(offset, 0);
+		buf.putInt(offset + 8, binderId);
+		buf.putInt(offset + 12, failed ? methodId | Integer.MIN_VALUE : methodId);
+		buf.putLong(offset + 16, digest);
+		buf.putLong(offset + 24, threadId);
+		buf.putLong(offset + 32, start);
+		buf.putLong(offset + 40, duration);
+		buf.putInt(offset + 48, depth);
+		buf.putLong(offset, seq + 1);
+	}
+
+/**
+ * @return	the number of records appended so far, including those overwritten.
+ */
+
+	long getCount() {
+		return sequence.get();
+	}
+
+	synchronized void close() throws IOException {
+		if(raf != null) {
+			buffer.force();
+			raf.close();
+			raf = null;
+		}
+	}
+
+/**
+ * Reads the records of a trace file, in the order in which they were appended.
+ * <p>
+ *
+ * @param	file the file.
+ * @return	the records held by the ring.
+ * @throws	IOException if the file cannot be read, or is not a trace file.
+ */
+
+	static List<TraceRecord> read(File file) throws IOException {
+		Map<Integer, String[]> binders = new HashMap<>();
+		Map<Integer, String[]> methods = new HashMap<>();
+		readDefinitions(file, binders, methods);
+
+		List<TraceRecord> result = new ArrayList<>();
+		try(RandomAccessFile in = new RandomAccessFile(file, "r")) {
+			ByteBuffer buf = in.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, in.length());
+			if(buf.limit() < HEADER_SIZE || buf.getLong(0) != MAGIC || buf.getInt(8) != VERSION) {
+				throw new IOException("not a trace file " + file);
+			}
+			int recordSize = buf.getInt(12);
+			int slots = buf.getInt(16);
+			for(int i = 0; i < slots; i++) {
+				int offset = HEADER_SIZE + i * recordSize;
+				long seq = buf.getLong(offset);
+				String[] binder = binders.get(buf.getInt(offset + 8));
+				int methodId = buf.getInt(offset + 12);
+				String[] method = methods.get(methodId & Integer.MAX_VALUE);
+				if(seq == 0 || binder == null || method == null) {
+					continue;
+				}
+				result.add(new TraceRecord(seq - 1, binder[0], binder[1], method[0], method[1],
+						methodId < 0, buf.getInt(offset + 48), buf.getLong(offset + 16),
+						buf.getLong(offset + 24), buf.getLong(offset + 32), buf.getLong(offset + 40)));
+			}
+		}
+		result.sort(Comparator.comparingLong(TraceRecord::getSequence));
+		return result;
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+	// Helper methods
+
+	private synchronized int define(Class<?> implCls, Method method) {
+		Integer existing = (implCls != null) ? binderIds.get(implCls) : methodIds.get(method);
+		if(existing != null) {
+			return existing;
+		}
+		int result;
+		if(implCls != null) {
+			result = binderIds.size();
+			definitions.add(String.format("B\t%d\t%s\t%s", result, implCls.getName(), binderNameOf(implCls)));
+		}
+		else {
+			result = methodIds.size();
+			StringJoiner params = new StringJoiner(",");
+			for(Class<?> paramType : method.getParameterTypes()) {
+				params.add(paramType.getName());
+			}
+			definitions.add(String.format("M\t%d\t%s\t%s", result, method.getName(), params));
+		}
+		try {
+			writeDefinitions();
+		}
+		catch(IOException exep) {
+			throw new IllegalStateException("unable to write trace definitions " + file, exep);
+		}
+		// published only once written out, so that every record refers to a known id
+		if(implCls != null) {
+			binderIds.put(implCls, result);
+		}
+		else {
+			methodIds.put(method, result);
+		}
+		return result;
+	}
+
+	private void writeDefinitions() throws IOException {
+		File target = definitionsOf(file);
+		File temp = new File(target.getPath() + ".tmp");
+		try(PrintWriter out = new PrintWriter(Files.newBufferedWriter(temp.toPath(), StandardCharsets.UTF_8))) {
+			for(String definition : definitions) {
+				out.println(definition);
+			}
+		}
+		Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+	}
+
+	private static void readDefinitions(File file, Map<Integer, String[]> binders,
+			Map<Integer, String[]> methods) throws IOException {
+		try(BufferedReader in = Files.newBufferedReader(definitionsOf(file).toPath(), StandardCharsets.UTF_8)) {
+			String line;
+			while((line = in.readLine()) != null) {
+				String[] parts = line.split("\t", -1);
+				if(parts.length != 4) {
+					continue;
+				}
+				Map<Integer, String[]> target = parts[0].equals("B") ? binders : methods;
+				target.put(Integer.valueOf(parts[1]), new String[] {parts[2], parts[3]});
+			}
+		}
+	}
+
+	private static File definitionsOf(File file) {
+		return new File(file.getPath() + ".methods");
+	}
+
+	private static String binderNameOf(Class<?> implCls) {
+		Singleton singleton = implCls.getAnnotation(Singleton.class);
+		if(singleton != null) {
+			return singleton.name().trim();
+		}
+		Prototype prototype = implCls.getAnnotation(Prototype.class);
+		return (prototype != null) ? prototype.name().trim() : "";
+	}
+}
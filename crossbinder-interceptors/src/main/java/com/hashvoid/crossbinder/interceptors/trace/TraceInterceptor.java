@@ -0,0 +1,309 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.hashvoid.crossbinder.interceptors.trace;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.concurrent.CompletionStage;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.hashvoid.crossbinder.dilm.Configuration;
+import com.hashvoid.crossbinder.dilm.MethodInterceptor;
+import com.hashvoid.crossbinder.dilm.Order;
+import com.hashvoid.crossbinder.dilm.Pointcut;
+
+/**
+ * Method interceptor that records the invocations of methods on managed entities into a trace
+ * file, for the production mix of calls to be analyzed or replayed via {@link TraceReplayer}. Each
+ * record holds the implementation class and method invoked, a digest of the parameter values, the
+ * invoking thread, the depth at which the invocation is nested in other traced invocations on that
+ * thread, and the start time and duration of the invocation. The trace file is a ring
+ * of fixed size records in a memory-mapped file, so that only the latest invocations are kept,
+ * and appending a record takes neither a lock nor a system call.
+ * <p>
+ *
+ * The trace file is created on the first invocation, replacing any existing file. It is taken
+ * from the constructor, or else from the configuration key <tt>crossbinder.trace.file</tt>, and
+ * defaults to <tt>crossbinder.trace</tt> in the temporary directory. Further configuration keys
+ * are:
+ * <ul>
+ * <li><tt>crossbinder.trace.capacity</tt>: the number of records held by the ring, 1048576 by
+ * default, taking up 56 bytes each.</li>
+ * <li><tt>crossbinder.trace.sampling</tt>: records one in so many invocations on each thread, 1 by
+ * default to record all of them.</li>
+ * <li><tt>crossbinder.trace.digest</tt>: whether to compute the digest of the parameter values from
+ * their hash codes, <tt>true</tt> by default.</li>
+ * </ul>
+ * Like the {@link com.hashvoid.crossbinder.interceptors.metrics.MetricsInterceptor}, this
+ * interceptor never wraps methods, and holds the start times of invocations on a stack per thread.
+ * Since methods returning a <tt>CompletionStage</tt> complete on another thread, their invocations
+ * are recorded as soon as they are made, with a duration of zero, and never as failed.
+ *
+ * @author poroshuram
+ */
+
+@Order(-900)
+@Pointcut(wrapping = Pointcut.Wrapping.NEVER)
+public class TraceInterceptor implements MethodInterceptor {
+
+	private static final Logger LOGGER = Logger.getLogger(TraceInterceptor.class.getName());
+
+	@Configuration(name = "crossbinder.trace.file")
+	private String  fileName;
+
+	@Configuration(name = "crossbinder.trace.capacity")
+	private Integer capacity = 1 << 20;
+
+	@Configuration(name = "crossbinder.trace.sampling")
+	private Integer sampling = 1;
+
+	@Configuration(name = "crossbinder.trace.digest")
+	private Boolean digest = true;
+
+	private File                   file;
+	private ThreadLocal<CallStack> stacks;
+	private volatile TraceFile     traceFile;
+	private volatile boolean       closed;
+
+	public TraceInterceptor() {
+		this(null);
+	}
+
+/**
+ * @param	file the trace file, <tt>null</tt> to take it from the configuration.
+ */
+
+	public TraceInterceptor(File file) {
+		this.file = file;
+		stacks = ThreadLocal.withInitial(CallStack::new);
+	}
+
+/**
+ * @return	the trace file, <tt>null</tt> if not created yet.
+ */
+
+	public File getFile() {
+		TraceFile current = traceFile;
+		return (current != null) ? current.getFile() : null;
+	}
+
+/**
+ * @return	the number of invocations recorded so far, including those since overwritten in the
+ * 			ring.
+ */
+
+	public long getRecordCount() {
+		TraceFile current = traceFile;
+		return (current != null) ? current.getCount() : 0;
+	}
+
+/**
+ * Stops recording, and flushes the trace file to disk.
+ */
+
+	public synchronized void close() {
+		closed = true;
+		if(traceFile != null) {
+			try {
+				traceFile.close();
+			}
+			catch(IOException exep) {
+				LOGGER.log(Level.WARNING, String.format("error closing trace file %s", traceFile.getFile()), exep);
+			}
+		}
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+	// Methods of interface MethodInterceptor
+
+	@Override
+	public void before(Method method, Object target, Object[] parameters) {
+		CallStack stack = stacks.get();
+		boolean sampled = stack.sample(sampling);
+		if(isStaged(method)) {
+			if(sampled) {
+				append(method, target, false, stack.depth, digest ? digestOf(parameters) : 0,
+						stack.threadId, System.nanoTime(), 0);
+			}
+		}
+		else if(sampled) {
+			long argDigest = digest ? digestOf(parameters) : 0;
+			stack.push(method, argDigest, System.nanoTime());
+		}
+		else {
+			stack.push(method, 0, -1);
+		}
+	}
+
+	@Override
+	public void after(Method method, Object target, Object retVal) {
+		if(!isStaged(method)) {
+			complete(method, target, false);
+		}
+	}
+
+	@Override
+	public boolean isWrapped(Method method, Object target) {
+		return false;
+	}
+
+	@Override
+	public void onError(Method method, Object target, Throwable exep) {
+		if(!isStaged(method)) {
+			complete(method, target, true);
+		}
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+	// Helper methods
+
+	private void complete(Method method, Object target, boolean failed) {
+		long end = System.nanoTime();
+		CallStack stack = stacks.get();
+		int index = stack.pop(method);
+		if(index < 0 || stack.starts[index] < 0) {
+			return;
+		}
+		long start = stack.starts[index];
+		// the index of the call on the stack is the depth at which it was made
+		append(method, target, failed, index, stack.digests[index], stack.threadId, start, end - start);
+	}
+
+	private void append(Method method, Object target, boolean failed, int depth, long argDigest,
+			long threadId, long start, long duration) {
+		// nothing is appended once the mapping is flushed
+		if(closed) {
+			return;
+		}
+		TraceFile current = traceFile;
+		if(current == null) {
+			current = open();
+			if(current == null) {
+				return;
+			}
+		}
+		current.append(current.binderId(target.getClass()), current.methodId(method), failed, depth,
+				argDigest, threadId, start, duration);
+	}
+
+	private synchronized TraceFile open() {
+		if(traceFile != null || closed) {
+			return traceFile;
+		}
+		File target = file;
+		if(target == null) {
+			target = (fileName != null) ? new File(fileName)
+					: new File(System.getProperty("java.io.tmpdir"), "crossbinder.trace");
+		}
+		try {
+			traceFile = new TraceFile(target, capacity);
+			LOGGER.info(String.format("trace_file = %s, capacity = %d, sampling = %d",
+					target.getAbsolutePath(), capacity, sampling));
+		}
+		catch(IOException exep) {
+			LOGGER.log(Level.WARNING, String.format("unable to create trace file %s, not recording", target), exep);
+			closed = true;
+		}
+		return traceFile;
+	}
+
+	private static boolean isStaged(Method method) {
+		// the after and onError callbacks of such methods run on the thread completing the stage
+		return CompletionStage.class.isAssignableFrom(method.getReturnType());
+	}
+
+	private static long digestOf(Object[] parameters) {
+		if(parameters == null) {
+			return 0;
+		}
+		long result = 0xcbf29ce484222325L;
+		for(Object param : parameters) {
+			int hash = 0;
+			if(param instanceof Object[]) {
+				hash = Arrays.deepHashCode((Object[]) param);
+			}
+			else if(param != null) {
+				hash = param.hashCode();
+			}
+			result = (result ^ hash) * 0x100000001b3L;
+		}
+		return result;
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+	// Inner class for the calls in progress on a thread
+
+	private static final class CallStack {
+
+		// calls left behind by callbacks that were not made are dropped beyond this depth
+		private static final int MAX_DEPTH = 1024;
+
+		private long     threadId = Thread.currentThread().getId();
+		private int      calls;
+		private Method[] methods = new Method[16];
+		private long[]   digests = new long[16];
+		private long[]   starts = new long[16];
+		private int      depth;
+
+		boolean sample(int rate) {
+			if(++calls < rate) {
+				return false;
+			}
+			calls = 0;
+			return true;
+		}
+
+		void push(Method method, long digest, long start) {
+			if(depth == methods.length) {
+				grow();
+			}
+			methods[depth] = method;
+			digests[depth] = digest;
+			starts[depth] = start;
+			depth++;
+		}
+
+/**
+ * Removes the latest call of the given method from the stack, along with any calls above it.
+ *
+ * @return	the index of the call, its start time and digest remaining accessible until the next
+ * 			push, or <tt>-1</tt> if not found.
+ */
+
+		int pop(Method method) {
+			for(int i = depth - 1; i >= 0; i--) {
+				if(methods[i] == method) {
+					depth = i;
+					methods[i] = null;
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		private void grow() {
+			if(depth == MAX_DEPTH) {
+				depth = 0;
+				return;
+			}
+			methods = Arrays.copyOf(methods, depth * 2);
+			digests = Arrays.copyOf(digests, depth * 2);
+			starts = Arrays.copyOf(starts, depth * 2);
+		}
+	}
+}
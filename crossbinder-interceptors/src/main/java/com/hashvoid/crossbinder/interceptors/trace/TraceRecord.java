@@ -0,0 +1,140 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.hashvoid.crossbinder.interceptors.trace;
+
+/**
+ * Invocation of a method on a managed entity, as read from a trace file written by
+ * {@link TraceInterceptor}.
+ *
+ * @author poroshuram
+ */
+
+public class TraceRecord {
+
+	private long    sequence;
+	private String  implClsName;
+	private String  binderName;
+	private String  methodName;
+	private String  paramTypes;
+	private boolean failed;
+	private int     depth;
+	private long    argDigest;
+	private long    threadId;
+	private long    startTime;
+	private long    duration;
+
+	TraceRecord(long sequence, String implClsName, String binderName, String methodName,
+			String paramTypes, boolean failed, int depth, long argDigest, long threadId, long startTime,
+			long duration) {
+		this.sequence = sequence;
+		this.implClsName = implClsName;
+		this.binderName = binderName;
+		this.methodName = methodName;
+		this.paramTypes = paramTypes;
+		this.failed = failed;
+		this.depth = depth;
+		this.argDigest = argDigest;
+		this.threadId = threadId;
+		this.startTime = startTime;
+		this.duration = duration;
+	}
+
+/**
+ * @return	the position of this record in the trace, counting from zero.
+ */
+
+	public long getSequence() {
+		return sequence;
+	}
+
+	public String getImplementationClassName() {
+		return implClsName;
+	}
+
+/**
+ * @return	the name of the singleton or prototype, empty if unnamed.
+ */
+
+	public String getBinderName() {
+		return binderName;
+	}
+
+	public String getMethodName() {
+		return methodName;
+	}
+
+/**
+ * @return	the fully qualified names of the parameter types of the method, separated by commas.
+ */
+
+	public String getParameterTypes() {
+		return paramTypes;
+	}
+
+/**
+ * @return	<tt>true</tt> if the method raised an exception, <tt>false</tt> otherwise.
+ */
+
+	public boolean isFailed() {
+		return failed;
+	}
+
+/**
+ * @return	the number of traced invocations in progress on the invoking thread when this one was
+ * 			made, zero for a top-level invocation.
+ */
+
+	public int getDepth() {
+		return depth;
+	}
+
+/**
+ * @return	a digest of the parameter values, equal for equal parameter values.
+ */
+
+	public long getArgumentDigest() {
+		return argDigest;
+	}
+
+	public long getThreadId() {
+		return threadId;
+	}
+
+/**
+ * @return	the time at which the method was invoked, as per <tt>System.nanoTime()</tt> of the
+ * 			recording process.
+ */
+
+	public long getStartTime() {
+		return startTime;
+	}
+
+/**
+ * @return	the time taken by the invocation, in nanoseconds.
+ */
+
+	public long getDuration() {
+		return duration;
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+	// Methods of base class Object
+
+	@Override
+	public String toString() {
+		return String.format("%s#%s(%s) [thread = %d, depth = %d, start = %d, duration = %d, failed = %s]",
+				implClsName, methodName, paramTypes, threadId, depth, startTime, duration, failed);
+	}
+}
@@ -0,0 +1,372 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.hashvoid.crossbinder.interceptors.trace;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Logger;
+
+import com.hashvoid.crossbinder.dilm.Crossbinder;
+import com.hashvoid.crossbinder.dilm.Locator;
+
+/**
+ * Replays the invocations recorded in a trace file by {@link TraceInterceptor} against the managed
+ * entities of a Crossbinder instance, typically a freshly started one, for load testing with the
+ * mix of calls seen in production. Each recorded invocation is replayed through the proxy of its
+ * managed entity, looked up by interface and binder name, and with parameter values taken from an
+ * {@link ArgumentSupplier}.
+ * <p>
+ *
+ * Only top-level invocations are replayed by default, since replaying an invocation also repeats
+ * the invocations it made on other managed entities; replaying the nested invocations as well
+ * inflates the load on the entities invoked by others.
+ * <p>
+ *
+ * Invocations recorded on the same thread are replayed in order on the same replay thread, the
+ * recorded threads being spread over the given number of replay threads. The pace of the
+ * recording is kept, optionally sped up, or else invocations are replayed back to back.
+ * <p>
+ *
+ * The replayer can also be run from the command line, against a Crossbinder instance that scans
+ * the class path, with parameter values defaulting to <tt>null</tt>, zero or <tt>false</tt>:
+ * <pre>
+ * java com.hashvoid.crossbinder.interceptors.trace.TraceReplayer &lt;trace file&gt; [threads] [speed]
+ * </pre>
+ *
+ * @author poroshuram
+ */
+
+public class TraceReplayer {
+
+	private static final Logger LOGGER = Logger.getLogger(TraceReplayer.class.getName());
+
+/**
+ * Supplies the default values of the parameter types: <tt>null</tt>, zero or <tt>false</tt>.
+ */
+
+	public static final ArgumentSupplier DEFAULT_ARGUMENTS = new DefaultArguments();
+
+	private List<TraceRecord> records;
+
+/**
+ * @param	file the trace file written by a {@link TraceInterceptor}.
+ * @throws	IOException if the trace file cannot be read.
+ */
+
+	public TraceReplayer(File file) throws IOException {
+		records = TraceFile.read(file);
+	}
+
+/**
+ * @return	the recorded invocations, in the order in which they completed.
+ */
+
+	public List<TraceRecord> getRecords() {
+		return Collections.unmodifiableList(records);
+	}
+
+/**
+ * Replays the recorded top-level invocations, returning once all of them have completed.
+ * <p>
+ *
+ * @param	crossbinder the started Crossbinder instance with the managed entities to be invoked.
+ * @param	arguments supplies the parameter values of the invocations.
+ * @param	threads the number of replay threads.
+ * @param	speed the factor by which to speed up the pace of the recording, zero or negative to
+ * 			replay invocations back to back.
+ * @return	the outcome of the replay.
+ * @throws	InterruptedException if interrupted while waiting for the replay to complete.
+ */
+
+	public ReplayStatistics replay(Crossbinder crossbinder, ArgumentSupplier arguments, int threads,
+			double speed) throws InterruptedException {
+		return replay(crossbinder, arguments, threads, speed, false);
+	}
+
+/**
+ * Replays the recorded invocations, returning once all of them have completed.
+ * <p>
+ *
+ * @param	crossbinder the started Crossbinder instance with the managed entities to be invoked.
+ * @param	arguments supplies the parameter values of the invocations.
+ * @param	threads the number of replay threads.
+ * @param	speed the factor by which to speed up the pace of the recording, zero or negative to
+ * 			replay invocations back to back.
+ * @param	nested <tt>true</tt> to also replay the invocations made from within other traced
+ * 			invocations, <tt>false</tt> to replay top-level invocations only.
+ * @return	the outcome of the replay.
+ * @throws	InterruptedException if interrupted while waiting for the replay to complete.
+ */
+
+	public ReplayStatistics replay(Crossbinder crossbinder, ArgumentSupplier arguments, int threads,
+			double speed, boolean nested) throws InterruptedException {
+		Map<String, Target> targets = new HashMap<>();
+		Map<Long, Integer> workerIds = new HashMap<>();
+		List<List<Call>> workload = new ArrayList<>();
+		for(int i = 0; i < Math.max(1, threads); i++) {
+			workload.add(new ArrayList<>());
+		}
+		long origin = Long.MAX_VALUE;
+		long skips = 0;
+		for(TraceRecord record : records) {
+			if(!nested && record.getDepth() > 0) {
+				continue;
+			}
+			Target target = resolve(crossbinder.locator(), record, targets);
+			if(target == null) {
+				skips++;
+				continue;
+			}
+			Integer workerId = workerIds.get(record.getThreadId());
+			if(workerId == null) {
+				workerId = workerIds.size() % workload.size();
+				workerIds.put(record.getThreadId(), workerId);
+			}
+			workload.get(workerId).add(new Call(target, record));
+			origin = Math.min(origin, record.getStartTime());
+		}
+		for(List<Call> calls : workload) {
+			calls.sort((call1, call2) -> Long.compare(call1.record.getStartTime(), call2.record.getStartTime()));
+		}
+
+		LongAdder callCount = new LongAdder();
+		LongAdder errorCount = new LongAdder();
+		LongAdder totalLatency = new LongAdder();
+		AtomicLong maxLatency = new AtomicLong();
+		CountDownLatch done = new CountDownLatch(workload.size());
+		long begin = System.nanoTime();
+		long recordingOrigin = origin;
+		for(int i = 0; i < workload.size(); i++) {
+			List<Call> calls = workload.get(i);
+			Thread worker = new Thread(() -> {
+				try {
+					for(Call call : calls) {
+						if(speed > 0) {
+							long due = begin + (long) ((call.record.getStartTime() - recordingOrigin) / speed);
+							for(long wait = due - System.nanoTime(); wait > 0; wait = due - System.nanoTime()) {
+								LockSupport.parkNanos(wait);
+							}
+						}
+						long latency = call.execute(arguments);
+						if(latency < 0) {
+							errorCount.increment();
+							latency = -latency;
+						}
+						callCount.increment();
+						totalLatency.add(latency);
+						long max = maxLatency.get();
+						while(latency > max && !maxLatency.compareAndSet(max, latency)) {
+							max = maxLatency.get();
+						}
+					}
+				}
+				finally {
+					done.countDown();
+				}
+			}, "crossbinder-replay-" + i);
+			worker.setDaemon(true);
+			worker.start();
+		}
+		done.await();
+		ReplayStatistics result = new ReplayStatistics(callCount.sum(), errorCount.sum(), skips,
+				System.nanoTime() - begin, totalLatency.sum(), maxLatency.get());
+		LOGGER.fine(String.format("trace replayed %s", result));
+		return result;
+	}
+
+	public static void main(String[] args) throws Exception {
+		if(args.length < 1) {
+			System.err.println("usage: TraceReplayer <trace file> [threads] [speed]");
+			System.exit(1);
+		}
+		TraceReplayer replayer = new TraceReplayer(new File(args[0]));
+		int threads = (args.length > 1) ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+		double speed = (args.length > 2) ? Double.parseDouble(args[2]) : 1.0;
+		Crossbinder crossbinder = Crossbinder.create().start();
+		try {
+			System.out.println(replayer.replay(crossbinder, DEFAULT_ARGUMENTS, threads, speed));
+		}
+		finally {
+			crossbinder.stop();
+		}
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+	// Helper methods
+
+	private static Target resolve(Locator locator, TraceRecord record, Map<String, Target> targets) {
+		String key = record.getImplementationClassName() + "/" + record.getBinderName() + "#"
+				+ record.getMethodName() + "(" + record.getParameterTypes() + ")";
+		if(targets.containsKey(key)) {
+			return targets.get(key);
+		}
+		Target result = null;
+		try {
+			Class<?> implCls = Class.forName(record.getImplementationClassName(), false,
+					Thread.currentThread().getContextClassLoader());
+			Set<Class<?>> ifaces = new HashSet<>();
+			collectInterfaces(implCls, ifaces);
+			for(Class<?> iface : ifaces) {
+				Method method = findMethod(iface, record.getMethodName(), record.getParameterTypes());
+				if(method == null) {
+					continue;
+				}
+				Object proxy = record.getBinderName().isEmpty() ? locator.get(iface)
+						: locator.get(record.getBinderName(), iface);
+				if(proxy != null) {
+					result = new Target(proxy, method);
+					break;
+				}
+			}
+		}
+		catch(ClassNotFoundException | LinkageError exep) {
+			LOGGER.fine(String.format("class not found %s", record.getImplementationClassName()));
+		}
+		if(result == null) {
+			LOGGER.warning(String.format("not replaying invocations of %s, no managed entity found", key));
+		}
+		targets.put(key, result);
+		return result;
+	}
+
+	private static void collectInterfaces(Class<?> cls, Set<Class<?>> ifaces) {
+		for(Class<?> iface : cls.getInterfaces()) {
+			if(ifaces.add(iface)) {
+				collectInterfaces(iface, ifaces);
+			}
+		}
+		if(cls.getSuperclass() != null) {
+			collectInterfaces(cls.getSuperclass(), ifaces);
+		}
+	}
+
+	private static Method findMethod(Class<?> iface, String name, String paramTypes) {
+		for(Method method : iface.getMethods()) {
+			if(!method.getName().equals(name)) {
+				continue;
+			}
+			StringJoiner params = new StringJoiner(",");
+			for(Class<?> paramType : method.getParameterTypes()) {
+				params.add(paramType.getName());
+			}
+			if(params.toString().equals(paramTypes)) {
+				return method;
+			}
+		}
+		return null;
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+	// Inner class for a managed entity and method to be invoked
+
+	private static class Target {
+
+		private Object proxy;
+		private Method method;
+
+		Target(Object proxy, Method method) {
+			this.proxy = proxy;
+			this.method = method;
+		}
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+	// Inner class for an invocation to be replayed
+
+	private static class Call {
+
+		private Target      target;
+		private TraceRecord record;
+
+		Call(Target target, TraceRecord record) {
+			this.target = target;
+			this.record = record;
+		}
+
+/**
+ * @return	the latency of the invocation in nanoseconds, negated if it failed.
+ */
+
+		long execute(ArgumentSupplier arguments) {
+			Object[] params = arguments.supply(target.method, record.getArgumentDigest());
+			long start = System.nanoTime();
+			try {
+				target.method.invoke(target.proxy, params);
+				return System.nanoTime() - start;
+			}
+			catch(InvocationTargetException | IllegalAccessException | IllegalArgumentException exep) {
+				return -(System.nanoTime() - start);
+			}
+		}
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+	// Inner class for the default parameter values
+
+	private static class DefaultArguments implements ArgumentSupplier {
+
+		@Override
+		public Object[] supply(Method method, long argDigest) {
+			Class<?>[] paramTypes = method.getParameterTypes();
+			Object[] result = new Object[paramTypes.length];
+			for(int i = 0; i < paramTypes.length; i++) {
+				Class<?> paramType = paramTypes[i];
+				if(paramType == boolean.class) {
+					result[i] = false;
+				}
+				else if(paramType == char.class) {
+					result[i] = '\0';
+				}
+				else if(paramType.isPrimitive()) {
+					result[i] = convert(paramType);
+				}
+			}
+			return result;
+		}
+
+		private static Object convert(Class<?> numType) {
+			if(numType == int.class) {
+				return 0;
+			}
+			if(numType == long.class) {
+				return 0L;
+			}
+			if(numType == double.class) {
+				return 0.0;
+			}
+			if(numType == float.class) {
+				return 0.0f;
+			}
+			if(numType == short.class) {
+				return (short) 0;
+			}
+			return (byte) 0;
+		}
+	}
+}
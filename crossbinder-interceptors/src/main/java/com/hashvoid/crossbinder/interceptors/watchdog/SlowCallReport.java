@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.hashvoid.crossbinder.interceptors.watchdog;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.StringJoiner;
+
+/**
+ * Report of an invocation that exceeded its threshold, with samples of the stack of the invoking
+ * thread taken while the invocation was running.
+ *
+ * @author poroshuram
+ */
+
+public class SlowCallReport {
+
+	private String                    binderName;
+	private Class<?>                  implCls;
+	private Method                    method;
+	private String                    threadName;
+	private long                      elapsedTime;
+	private boolean                   completed;
+	private List<StackTraceElement[]> stacks;
+
+	SlowCallReport(String binderName, Class<?> implCls, Method method, String threadName,
+			long elapsedTime, boolean completed, List<StackTraceElement[]> stacks) {
+		this.binderName = binderName;
+		this.implCls = implCls;
+		this.method = method;
+		this.threadName = threadName;
+		this.elapsedTime = elapsedTime;
+		this.completed = completed;
+		this.stacks = Collections.unmodifiableList(new ArrayList<>(stacks));
+	}
+
+/**
+ * @return	the name of the singleton or prototype, empty if unnamed.
+ */
+
+	public String getBinderName() {
+		return binderName;
+	}
+
+	public Class<?> getImplementationClass() {
+		return implCls;
+	}
+
+	public Method getMethod() {
+		return method;
+	}
+
+	public String getThreadName() {
+		return threadName;
+	}
+
+/**
+ * @return	the time for which the invocation had been running when last seen, in milliseconds,
+ * 			accurate to within the interval of the watchdog.
+ */
+
+	public long getElapsedTime() {
+		return elapsedTime;
+	}
+
+/**
+ * @return	<tt>true</tt> if the invocation completed before all stack samples were taken,
+ * 			<tt>false</tt> if it was still running when reported.
+ */
+
+	public boolean isCompleted() {
+		return completed;
+	}
+
+/**
+ * @return	the samples of the stack of the invoking thread, oldest first.
+ */
+
+	public List<StackTraceElement[]> getStacks() {
+		return stacks;
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+	// Methods of base class Object
+
+	@Override
+	public String toString() {
+		StringJoiner params = new StringJoiner(",", "(", ")");
+		for(Class<?> paramType : method.getParameterTypes()) {
+			params.add(paramType.getSimpleName());
+		}
+		StringBuilder builder = new StringBuilder("slow call: ")
+			.append(implCls.getName()).append('#').append(method.getName()).append(params)
+			.append(" [binder = ").append(binderName.isEmpty() ? "-" : binderName)
+			.append(", thread = ").append(threadName)
+			.append(", elapsed_ms = ").append(elapsedTime)
+			.append(", completed = ").append(completed)
+			.append(", samples = ").append(stacks.size()).append(']');
+		StackTraceElement[] previous = null;
+		for(int i = 0; i < stacks.size(); i++) {
+			StackTraceElement[] stack = stacks.get(i);
+			builder.append(System.lineSeparator()).append("  sample ").append(i + 1);
+			if(Arrays.equals(stack, previous)) {
+				builder.append(": same as previous");
+				continue;
+			}
+			for(StackTraceElement frame : stack) {
+				builder.append(System.lineSeparator()).append("    at ").append(frame);
+			}
+			previous = stack;
+		}
+		return builder.toString();
+	}
+}
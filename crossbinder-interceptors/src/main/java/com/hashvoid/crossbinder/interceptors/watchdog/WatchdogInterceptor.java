@@ -0,0 +1,423 @@
+/*
+ * Copyright (c) The original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package com.hashvoid.crossbinder.interceptors.watchdog;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.hashvoid.crossbinder.dilm.Configuration;
+import com.hashvoid.crossbinder.dilm.ConfigurationProvider;
+import com.hashvoid.crossbinder.dilm.MethodInterceptor;
+import com.hashvoid.crossbinder.dilm.Order;
+import com.hashvoid.crossbinder.dilm.Pointcut;
+import com.hashvoid.crossbinder.dilm.Prototype;
+import com.hashvoid.crossbinder.dilm.Singleton;
+
+/**
+ * Method interceptor that watches the invocations in progress on managed entities, and reports
+ * those that exceed their threshold, along with samples of the stack of the invoking thread, so as
+ * to show where the invocation is stuck. Reports are logged as warnings, and handed to the
+ * {@link SlowCallListener}s of this interceptor.
+ * <p>
+ *
+ * Each thread publishes the invocations it has in progress in a table of its own, which is read by
+ * a watchdog thread, without locking on either side. The watchdog wakes up at a regular interval,
+ * advancing the clock by which invocations are timed, and checks the invocations in progress
+ * against their thresholds. Once an invocation is over its threshold, the watchdog samples the
+ * stack of its thread on every wake up, and reports the invocation once it has taken enough
+ * samples, or once the invocation completes, whichever comes first. Calls that finish quickly thus
+ * cost no more than writing their method and start time into the table of their thread.
+ * <p>
+ *
+ * The settings are read from the following configuration keys, prefixed with
+ * <tt>crossbinder.watchdog.</tt>, via the configuration providers of the Crossbinder instance:
+ * <ul>
+ * <li><tt>threshold</tt>: the time in milliseconds beyond which an invocation is slow, 1000 by
+ * default.</li>
+ * <li><tt>interval</tt>: the interval in milliseconds at which the watchdog checks invocations and
+ * samples stacks, 100 by default.</li>
+ * <li><tt>samples</tt>: the number of stack samples taken for a slow invocation, 5 by default.</li>
+ * </ul>
+ * The threshold can be overridden per managed entity or per method via the configuration provider
+ * given to this interceptor, with the keys <tt>crossbinder.watchdog.&lt;class&gt;.threshold</tt>
+ * or <tt>crossbinder.watchdog.&lt;class&gt;.&lt;method&gt;.threshold</tt> respectively, where
+ * the class is the implementation class of the managed entity.
+ * <p>
+ *
+ * This interceptor never wraps methods, and has an order of -800, so that the time spent in the
+ * <tt>before</tt> callbacks and the wrapping of interceptors of higher order counts towards the
+ * thresholds; their <tt>after</tt> and <tt>onError</tt> callbacks are called after those of this
+ * interceptor, and do not count. Methods returning a <tt>CompletionStage</tt> are not watched,
+ * since they complete on another thread than the one that invoked them.
+ *
+ * @author poroshuram
+ */
+
+@Order(-800)
+@Pointcut(wrapping = Pointcut.Wrapping.NEVER)
+public class WatchdogInterceptor implements MethodInterceptor {
+
+	private static final Logger LOGGER = Logger.getLogger(WatchdogInterceptor.class.getName());
+
+	private static final String PREFIX = "crossbinder.watchdog.";
+
+	@Configuration(name = "crossbinder.watchdog.threshold")
+	private Long    threshold = 1000L;
+
+	@Configuration(name = "crossbinder.watchdog.interval")
+	private Long    interval = 100L;
+
+	@Configuration(name = "crossbinder.watchdog.samples")
+	private Integer samples = 5;
+
+	private ConfigurationProvider                 config;
+	private ThreadLocal<CallTable>                tables;
+	private ConcurrentLinkedQueue<CallTable>      allTables;
+	private CopyOnWriteArrayList<SlowCallListener> listeners;
+	private LongAdder                             reportCount;
+	private Thread                                watchdog;
+	private volatile boolean                      closed;
+
+	// advanced by the watchdog on every wake up, read by the invoking threads
+	private volatile long clock;
+
+	public WatchdogInterceptor() {
+		this(null);
+	}
+
+/**
+ * @param	config the source of per-entity and per-method thresholds, <tt>null</tt> if none.
+ */
+
+	public WatchdogInterceptor(ConfigurationProvider config) {
+		this.config = config;
+		tables = ThreadLocal.withInitial(this::register);
+		allTables = new ConcurrentLinkedQueue<>();
+		listeners = new CopyOnWriteArrayList<>();
+		reportCount = new LongAdder();
+		clock = System.nanoTime();
+	}
+
+	public void addListener(SlowCallListener listener) {
+		listeners.add(listener);
+	}
+
+	public void removeListener(SlowCallListener listener) {
+		listeners.remove(listener);
+	}
+
+/**
+ * @return	the number of slow invocations reported so far.
+ */
+
+	public long getReportCount() {
+		return reportCount.sum();
+	}
+
+/**
+ * Stops the watchdog thread. Invocations are no longer watched after this.
+ */
+
+	public synchronized void close() {
+		closed = true;
+		if(watchdog != null) {
+			watchdog.interrupt();
+			watchdog = null;
+		}
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+	// Methods of interface MethodInterceptor
+
+	@Override
+	public void before(Method method, Object target, Object[] parameters) {
+		if(isWatched(method)) {
+			tables.get().push(method, target.getClass(), clock);
+		}
+	}
+
+	@Override
+	public void after(Method method, Object target, Object retVal) {
+		if(isWatched(method)) {
+			tables.get().pop(method);
+		}
+	}
+
+	@Override
+	public boolean isWrapped(Method method, Object target) {
+		return false;
+	}
+
+	@Override
+	public void onError(Method method, Object target, Throwable exep) {
+		if(isWatched(method)) {
+			tables.get().pop(method);
+		}
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+	// Helper methods
+
+	private static boolean isWatched(Method method) {
+		// the callbacks of stage methods run on the thread completing the stage, not the invoking one
+		return !CompletionStage.class.isAssignableFrom(method.getReturnType());
+	}
+
+	private CallTable register() {
+		CallTable result = new CallTable(Thread.currentThread());
+		allTables.add(result);
+		startWatchdog();
+		return result;
+	}
+
+	private synchronized void startWatchdog() {
+		if(watchdog != null || closed) {
+			return;
+		}
+		// the clock has not been advanced since construction
+		clock = System.nanoTime();
+		watchdog = new Thread(new Watchdog(), "crossbinder-watchdog");
+		watchdog.setDaemon(true);
+		watchdog.start();
+		LOGGER.fine(String.format("watchdog started threshold = %d, interval = %d, samples = %d",
+				threshold, interval, samples));
+	}
+
+	private void report(Watch watch, boolean completed) {
+		SlowCallReport report = new SlowCallReport(binderNameOf(watch.implCls), watch.implCls,
+				watch.method, watch.thread.getName(), TimeUnit.NANOSECONDS.toMillis(watch.lastSeen - watch.start),
+				completed, watch.stacks);
+		reportCount.increment();
+		LOGGER.warning(report.toString());
+		for(SlowCallListener listener : listeners) {
+			try {
+				listener.slowCall(report);
+			}
+			catch(RuntimeException exep) {
+				LOGGER.log(Level.WARNING, String.format("slow call listener failed %s", listener), exep);
+			}
+		}
+	}
+
+	private static String binderNameOf(Class<?> implCls) {
+		Singleton singleton = implCls.getAnnotation(Singleton.class);
+		if(singleton != null) {
+			return singleton.name().trim();
+		}
+		Prototype prototype = implCls.getAnnotation(Prototype.class);
+		return (prototype != null) ? prototype.name().trim() : "";
+	}
+
+	private <T> T getConfigValue(String path, Class<T> type) {
+		if(config == null || !config.contains(path)) {
+			return null;
+		}
+		Object value = config.getValue(path, type);
+		if(!type.isInstance(value)) {
+			LOGGER.warning(String.format("configuration %s not of required type %s", path, type.getName()));
+			return null;
+		}
+		return type.cast(value);
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+	// Inner class for the invocations in progress on a thread
+
+	private static final class CallTable {
+
+		private static final AtomicIntegerFieldUpdater<CallTable> DEPTH =
+				AtomicIntegerFieldUpdater.newUpdater(CallTable.class, "depth");
+
+		// invocations nested deeper than this are not watched
+		private static final int MAX_DEPTH = 64;
+
+		private Thread     thread;
+		private Method[]   methods = new Method[MAX_DEPTH];
+		private Class<?>[] classes = new Class<?>[MAX_DEPTH];
+		private long[]     starts = new long[MAX_DEPTH];
+		private int        size;
+
+		// the number of published invocations, written by the owning thread only
+		private volatile int depth;
+
+		CallTable(Thread thread) {
+			this.thread = thread;
+		}
+
+		void push(Method method, Class<?> implCls, long start) {
+			int index = size++;
+			if(index < MAX_DEPTH) {
+				methods[index] = method;
+				classes[index] = implCls;
+				starts[index] = start;
+				// ordered after the entry, without the cost of a full fence
+				DEPTH.lazySet(this, index + 1);
+			}
+		}
+
+		void pop(Method method) {
+			if(size > MAX_DEPTH) {
+				size--;
+				return;
+			}
+			// matched by method, so that invocations left behind by callbacks not made are dropped
+			for(int i = size - 1; i >= 0; i--) {
+				if(methods[i] == method) {
+					size = i;
+					DEPTH.lazySet(this, i);
+					return;
+				}
+			}
+		}
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+	// Inner class for a slow invocation being sampled
+
+	private static final class Watch {
+
+		private Thread                    thread;
+		private int                       index;
+		private Method                    method;
+		private Class<?>                  implCls;
+		private long                      start;
+		private long                      lastSeen;
+		private List<StackTraceElement[]> stacks;
+		private boolean                   reported;
+
+		Watch(Thread thread, int index, Method method, Class<?> implCls, long start) {
+			this.thread = thread;
+			this.index = index;
+			this.method = method;
+			this.implCls = implCls;
+			this.start = start;
+			stacks = new ArrayList<>();
+		}
+
+		boolean matches(int index, Method method, long start) {
+			return this.index == index && this.method == method && this.start == start;
+		}
+	}
+
+	////////////////////////////////////////////////////////////////////////////
+	// Inner class for the watchdog thread
+
+	private class Watchdog implements Runnable {
+
+		// accessed by the watchdog thread only
+		private Map<CallTable, Watch>                   watches = new HashMap<>();
+		private Map<Class<?>, Map<Method, Long>>        thresholds = new HashMap<>();
+
+		@Override
+		public void run() {
+			while(!closed) {
+				try {
+					Thread.sleep(interval);
+				}
+				catch(InterruptedException exep) {
+					break;
+				}
+				long now = System.nanoTime();
+				clock = now;
+				try {
+					check(now);
+				}
+				catch(RuntimeException exep) {
+					LOGGER.log(Level.WARNING, "watchdog check failed", exep);
+				}
+			}
+			LOGGER.fine("watchdog stopped");
+		}
+
+		private void check(long now) {
+			for(Iterator<CallTable> iter = allTables.iterator(); iter.hasNext();) {
+				CallTable table = iter.next();
+				if(!table.thread.isAlive()) {
+					iter.remove();
+					watches.remove(table);
+					continue;
+				}
+				check(table, now);
+			}
+		}
+
+		private void check(CallTable table, long now) {
+			Watch watch = watches.get(table);
+			// the innermost slow invocation is the most specific one
+			for(int i = table.depth - 1; i >= 0; i--) {
+				Method method = table.methods[i];
+				Class<?> implCls = table.classes[i];
+				long start = table.starts[i];
+				if(method == null || now - start < thresholdOf(implCls, method)) {
+					continue;
+				}
+				if(table.depth <= i || table.methods[i] != method || table.starts[i] != start) {
+					// changed while being read, to be checked on the next wake up
+					return;
+				}
+				if(watch == null || !watch.matches(i, method, start)) {
+					if(watch != null && !watch.reported) {
+						report(watch, true);
+					}
+					watch = new Watch(table.thread, i, method, implCls, start);
+					watches.put(table, watch);
+				}
+				// a completed call is reported as lasting until it was last seen in progress
+				watch.lastSeen = now;
+				if(!watch.reported) {
+					watch.stacks.add(table.thread.getStackTrace());
+					if(watch.stacks.size() >= samples) {
+						watch.reported = true;
+						report(watch, false);
+					}
+				}
+				return;
+			}
+			if(watch != null) {
+				watches.remove(table);
+				if(!watch.reported) {
+					report(watch, true);
+				}
+			}
+		}
+
+		private long thresholdOf(Class<?> implCls, Method method) {
+			Map<Method, Long> clsThresholds = thresholds.computeIfAbsent(implCls, cls -> new HashMap<>());
+			Long result = clsThresholds.get(method);
+			if(result == null) {
+				String clsPrefix = PREFIX + implCls.getName() + ".";
+				Long millis = getConfigValue(clsPrefix + method.getName() + ".threshold", Long.class);
+				if(millis == null) {
+					millis = getConfigValue(clsPrefix + "threshold", Long.class);
+				}
+				result = TimeUnit.MILLISECONDS.toNanos((millis != null) ? millis : threshold);
+				clsThresholds.put(method, result);
+			}
+			return result;
+		}
+	}
+}